@@ -0,0 +1,113 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reproducible documents and texts used by benchmarks.
+ * 
+ * @author kotelnikov
+ */
+public class BenchmarkDocuments {
+
+    /**
+     * Document sizes used by benchmarks
+     */
+    public enum Size {
+
+        HUGE(200000),
+
+        MEDIUM(5000),
+
+        SMALL(100);
+
+        private final int fTagsNumber;
+
+        private Size(int tagsNumber) {
+            fTagsNumber = tagsNumber;
+        }
+
+        /**
+         * @return the number of tags in documents of this size
+         */
+        public int getTagsNumber() {
+            return fTagsNumber;
+        }
+
+    }
+
+    private static final String[] WORDS = {
+        "Lorem",
+        "ipsum",
+        "dolor",
+        "sit",
+        "amet,",
+        "consectetur",
+        "adipiscing",
+        "elit.",
+        "Read",
+        "more",
+        "2013" };
+
+    private static void collect(Element tag, List<Element> tags) {
+        tags.add(tag);
+        for (Node child = tag.getFirstChild(); child != null; child = child
+            .getNextSibling()) {
+            if (child instanceof Element) {
+                collect((Element) child, tags);
+            }
+        }
+    }
+
+    /**
+     * Returns all tags of the given tree in the document order.
+     * 
+     * @param root the root of the tree
+     * @return a list of tags
+     */
+    public static List<Element> getTags(Element root) {
+        List<Element> tags = new ArrayList<Element>();
+        collect(root, tags);
+        return tags;
+    }
+
+    /**
+     * Returns a new document with the specified number of tags.
+     * 
+     * @param tagsNumber the number of tags in the document body including
+     *        the body itself
+     * @param seed the seed of the document
+     * @return the body of the new document
+     */
+    public static Element newDocument(int tagsNumber, long seed) {
+        Document doc = new CorpusGenerator()
+            .setTagsNumber(tagsNumber - 1)
+            .setSeed(seed)
+            .newDocument();
+        return (Element) doc.getElementsByTagName("body").item(0);
+    }
+
+    /**
+     * Returns a new random text.
+     * 
+     * @param random the random generator
+     * @return a new text
+     */
+    public static String newText(Random random) {
+        StringBuilder buf = new StringBuilder();
+        int len = 1 + random.nextInt(20);
+        for (int i = 0; i < len; i++) {
+            if (i > 0) {
+                buf.append(' ');
+            }
+            buf.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return buf.toString();
+    }
+
+}
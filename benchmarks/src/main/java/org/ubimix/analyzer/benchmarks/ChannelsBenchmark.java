@@ -0,0 +1,104 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.impl.ChannelsManager;
+
+/**
+ * Arithmetic operations of {@link Channels}. The cost of the
+ * {@link Channels#set(double)} call is included in results of operations
+ * modifying channels. Three channels (the default model) are stored in
+ * fields; eight channels are stored in arrays.
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChannelsBenchmark {
+
+    @Param({ "3", "8" })
+    private int fChannelsNumber;
+
+    private Channels fFirst;
+
+    private Channels fSecond;
+
+    /**
+     * Accumulates results of the {@link #multiplyAndAddTo()} benchmark
+     */
+    private Channels fSum;
+
+    /**
+     * Operations modify this object; it is reset before each operation, so
+     * its values do not drift.
+     */
+    private Channels fTarget;
+
+    @Benchmark
+    public Channels add() {
+        return fTarget.set(0.5).add(fSecond);
+    }
+
+    @Benchmark
+    public boolean checkValuesInRange() {
+        return fFirst.checkValuesInRange(0, 1);
+    }
+
+    @Benchmark
+    public Channels getCopy() {
+        return fFirst.getCopy();
+    }
+
+    @Benchmark
+    public Channels max() {
+        return fTarget.set(0.5).max(fSecond);
+    }
+
+    @Benchmark
+    public Channels multiply() {
+        return fTarget.set(0.5).multiply(fSecond);
+    }
+
+    @Benchmark
+    public Channels multiplyAndAddTo() {
+        return fTarget.set(0.5).multiplyAndAddTo(fSecond, fSum);
+    }
+
+    @Benchmark
+    public Channels setProduct() {
+        return fTarget.setProduct(fFirst, fSecond);
+    }
+
+    @Setup
+    public void setUp() {
+        String[] names = { "content", "navigation", "media" };
+        if (fChannelsNumber != names.length) {
+            names = new String[fChannelsNumber];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "channel" + i;
+            }
+        }
+        ChannelsManager manager = new ChannelsManager(names);
+        fFirst = manager.newChannels(0.5);
+        fSecond = manager.newChannels(0.75).setLevel(1, 0.25);
+        fSum = manager.newChannels(0);
+        fTarget = manager.newChannels(0);
+    }
+
+}
@@ -0,0 +1,778 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.ubimix.analyzer.stream.HTMLTokenizer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A generator of reproducible synthetic HTML documents used to measure how
+ * the analyzer scales with the size and the shape of documents. Documents
+ * are defined by a seed and by the following parameters:
+ * <ul>
+ * <li>the number of tags in the body;</li>
+ * <li>the maximal depth of tags in the body;</li>
+ * <li>the fan-out - the maximal number of children of a tag;</li>
+ * <li>the leaf ratio - the probability that a tag has no child tags;</li>
+ * <li>the average number of attributes of a tag;</li>
+ * <li>the average length of text blocks;</li>
+ * <li>the boilerplate ratio - the part of tags in navigation menus, sidebars
+ * and footers; these blocks are the same in all documents.</li>
+ * </ul>
+ * The same parameters always give the same document, so documents could be
+ * re-created instead of being stored. Documents are generated as
+ * {@link HTMLTokenizer.IHandler} events; they could be scored directly from
+ * these events, built as DOM trees or written as XML files. The generator
+ * does not use recursion, so it supports pathological documents (see
+ * {@link #newDeepDocument(int)}, {@link #newWideDocument(int)} and
+ * {@link #newHugeTextDocument(int)}).
+ * <p>
+ * The {@link #main(String[])} method writes a corpus of XML files which could
+ * be analyzed by different versions of the analyzer.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class CorpusGenerator {
+
+    /**
+     * Builds DOM trees from events
+     */
+    private static class DocumentBuilder implements HTMLTokenizer.IHandler {
+
+        private final Document fDocument;
+
+        private Node fParent;
+
+        public DocumentBuilder(Document document) {
+            fDocument = document;
+            fParent = document;
+        }
+
+        @Override
+        public void onEndTag(String name) {
+            fParent = fParent.getParentNode();
+        }
+
+        @Override
+        public void onStartTag(
+            String name,
+            String[] attributes,
+            boolean selfClosing) {
+            Element element = fDocument.createElement(name);
+            for (int i = 0; i < attributes.length; i += 2) {
+                element.setAttribute(attributes[i], attributes[i + 1]);
+            }
+            fParent.appendChild(element);
+            if (!selfClosing) {
+                fParent = element;
+            }
+        }
+
+        @Override
+        public void onText(char[] buf, int start, int len) {
+            String text = new String(buf, start, len);
+            fParent.appendChild(fDocument.createTextNode(text));
+        }
+
+    }
+
+    /**
+     * This exception transports I/O errors through handler methods
+     */
+    private static class WriteException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public WriteException(IOException cause) {
+            super(cause);
+        }
+
+        public IOException getIOException() {
+            return (IOException) getCause();
+        }
+
+    }
+
+    /**
+     * Writes events as XML
+     */
+    private static class XMLWriter implements HTMLTokenizer.IHandler {
+
+        private final Writer fWriter;
+
+        public XMLWriter(Writer writer) {
+            fWriter = writer;
+        }
+
+        @Override
+        public void onEndTag(String name) {
+            try {
+                fWriter.write("</");
+                fWriter.write(name);
+                fWriter.write('>');
+            } catch (IOException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        @Override
+        public void onStartTag(
+            String name,
+            String[] attributes,
+            boolean selfClosing) {
+            try {
+                fWriter.write('<');
+                fWriter.write(name);
+                for (int i = 0; i < attributes.length; i += 2) {
+                    fWriter.write(' ');
+                    fWriter.write(attributes[i]);
+                    fWriter.write("=\"");
+                    String value = attributes[i + 1];
+                    write(value.toCharArray(), 0, value.length());
+                    fWriter.write('"');
+                }
+                fWriter.write(selfClosing ? "/>" : ">");
+            } catch (IOException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        @Override
+        public void onText(char[] buf, int start, int len) {
+            try {
+                write(buf, start, len);
+            } catch (IOException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        private void write(char[] buf, int start, int len) throws IOException {
+            int first = start;
+            for (int i = start, end = start + len; i < end; i++) {
+                String entity;
+                switch (buf[i]) {
+                    case '&':
+                        entity = "&amp;";
+                        break;
+                    case '<':
+                        entity = "&lt;";
+                        break;
+                    case '>':
+                        entity = "&gt;";
+                        break;
+                    case '"':
+                        entity = "&quot;";
+                        break;
+                    default:
+                        continue;
+                }
+                fWriter.write(buf, first, i - first);
+                fWriter.write(entity);
+                first = i + 1;
+            }
+            fWriter.write(buf, first, start + len - first);
+        }
+
+    }
+
+    private static final String[] ATTRIBUTES = {
+        "class",
+        "id",
+        "title",
+        "href",
+        "style",
+        "lang",
+        "role",
+        "data-id" };
+
+    /**
+     * Boilerplate blocks require this depth
+     */
+    private static final int BOILERPLATE_DEPTH = 4;
+
+    private static final String[] CLASSES = {
+        "content",
+        "article",
+        "text",
+        "comment",
+        "nav",
+        "menu",
+        "sidebar",
+        "footer",
+        "header",
+        "ad",
+        "related",
+        "main-body" };
+
+    private static final String[] EMPTY = {};
+
+    private static final String[] MENU = {
+        "Home",
+        "News",
+        "Sport",
+        "Culture",
+        "Science",
+        "Contact" };
+
+    private static final String[] RELATED = {
+        "Ten things you did not know",
+        "Read the full story",
+        "Most popular this week",
+        "Photos of the day",
+        "Subscribe to our newsletter" };
+
+    private static final String[] TAGS = {
+        "div",
+        "section",
+        "p",
+        "span",
+        "a",
+        "ul",
+        "li",
+        "h2",
+        "h3",
+        "table",
+        "tr",
+        "td",
+        "em",
+        "strong",
+        "blockquote" };
+
+    /**
+     * The probability of a text block before each child tag
+     */
+    private static final double TEXT_RATIO = 0.3;
+
+    private static final String[] WORDS = {
+        "Lorem",
+        "ipsum",
+        "dolor",
+        "sit",
+        "amet,",
+        "consectetur",
+        "adipiscing",
+        "elit.",
+        "Sed",
+        "do",
+        "eiusmod",
+        "tempor",
+        "incididunt",
+        "ut",
+        "labore",
+        "et",
+        "dolore",
+        "magna",
+        "aliqua.",
+        "Read",
+        "more",
+        "\u00BB",
+        "2013",
+        "&",
+        "<b>",
+        "\"quoted\"",
+        "\u00C9t\u00E9",
+        "\u00FCber" };
+
+    private static void checkRatio(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException(
+                "The ratio should be in the range [0..1].");
+        }
+    }
+
+    private static void checkSize(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(
+                "The value should be positive.");
+        }
+    }
+
+    /**
+     * Writes a corpus of XML files.
+     * 
+     * <pre>
+     * CorpusGenerator dir documents [tags [seed]]
+     * </pre>
+     * 
+     * @param args the output directory, the number of documents, the number
+     *        of tags in each document and the seed of the first document
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CorpusGenerator "
+                + "<dir> <documents> [<tags> [<seed>]]");
+            return;
+        }
+        CorpusGenerator generator = new CorpusGenerator();
+        if (args.length > 2) {
+            generator.setTagsNumber(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.setSeed(Long.parseLong(args[3]));
+        }
+        generator.writeCorpus(new File(args[0]), Integer.parseInt(args[1]));
+    }
+
+    /**
+     * Returns a generator of documents with a chain of nested tags.
+     * 
+     * @param depth the number of nested tags
+     * @return a new generator
+     */
+    public static CorpusGenerator newDeepDocument(int depth) {
+        return new CorpusGenerator()
+            .setTagsNumber(depth)
+            .setMaxDepth(depth)
+            .setFanOut(1)
+            .setLeafRatio(0)
+            .setBoilerplateRatio(0);
+    }
+
+    /**
+     * Returns a generator of documents with a few tags containing huge texts.
+     * 
+     * @param textLength the average length of texts
+     * @return a new generator
+     */
+    public static CorpusGenerator newHugeTextDocument(int textLength) {
+        return new CorpusGenerator()
+            .setTagsNumber(16)
+            .setTextLength(textLength)
+            .setBoilerplateRatio(0);
+    }
+
+    /**
+     * Returns a generator of documents where all tags are children of the
+     * body.
+     * 
+     * @param siblings the number of tags
+     * @return a new generator
+     */
+    public static CorpusGenerator newWideDocument(int siblings) {
+        return new CorpusGenerator()
+            .setTagsNumber(siblings)
+            .setMaxDepth(1)
+            .setBoilerplateRatio(0);
+    }
+
+    private double fAttributesNumber = 0.5;
+
+    private double fBoilerplateRatio = 0.2;
+
+    /**
+     * The buffer used to generate texts
+     */
+    private char[] fBuffer = new char[256];
+
+    private int fFanOut = 6;
+
+    private double fLeafRatio = 0.3;
+
+    private int fMaxDepth = 20;
+
+    private long fSeed;
+
+    private int fTagsNumber = 1000;
+
+    private int fTextLength = 40;
+
+    /**
+     * Generates events of the document with the current seed.
+     * 
+     * @param handler the handler notified about tags and texts
+     */
+    public void generate(HTMLTokenizer.IHandler handler) {
+        generate(handler, fSeed);
+    }
+
+    private void generate(HTMLTokenizer.IHandler handler, long seed) {
+        Random random = new Random(seed);
+        handler.onStartTag("html", EMPTY, false);
+        handler.onStartTag("head", EMPTY, false);
+        handler.onStartTag("title", EMPTY, false);
+        text(handler, "Document " + seed);
+        handler.onEndTag("title");
+        handler.onEndTag("head");
+        handler.onStartTag("body", EMPTY, false);
+        // Names of open tags and numbers of their remaining children; the
+        // body gets new children while the budget is not exhausted.
+        String[] names = new String[fMaxDepth + 1];
+        int[] children = new int[fMaxDepth + 1];
+        names[0] = "body";
+        children[0] = Integer.MAX_VALUE;
+        int depth = 0;
+        int budget = fTagsNumber;
+        int boilerplate = 0;
+        while (true) {
+            if (budget == 0 || children[depth] == 0) {
+                if (depth == 0) {
+                    break;
+                }
+                handler.onEndTag(names[depth--]);
+                continue;
+            }
+            children[depth]--;
+            if (random.nextDouble() < TEXT_RATIO) {
+                text(handler, random);
+            }
+            int count = fTagsNumber - budget;
+            if (depth == 0
+                && fMaxDepth >= BOILERPLATE_DEPTH
+                && boilerplate < fBoilerplateRatio * (count + 1)) {
+                int size = writeBoilerplate(handler, random, budget);
+                if (size > 0) {
+                    budget -= size;
+                    boilerplate += size;
+                    continue;
+                }
+            }
+            String name = TAGS[random.nextInt(TAGS.length)];
+            handler.onStartTag(name, newAttributes(random, count), false);
+            budget--;
+            if (depth + 1 >= fMaxDepth
+                || budget == 0
+                || random.nextDouble() < fLeafRatio) {
+                text(handler, random);
+                handler.onEndTag(name);
+            } else {
+                depth++;
+                names[depth] = name;
+                children[depth] = 1 + random.nextInt(fFanOut);
+            }
+        }
+        handler.onEndTag("body");
+        handler.onEndTag("html");
+    }
+
+    /**
+     * @return the average number of attributes of a tag
+     */
+    public double getAttributesNumber() {
+        return fAttributesNumber;
+    }
+
+    /**
+     * @return the part of tags in boilerplate blocks
+     */
+    public double getBoilerplateRatio() {
+        return fBoilerplateRatio;
+    }
+
+    /**
+     * @return the maximal number of children of a tag
+     */
+    public int getFanOut() {
+        return fFanOut;
+    }
+
+    /**
+     * @return the probability that a tag has no child tags
+     */
+    public double getLeafRatio() {
+        return fLeafRatio;
+    }
+
+    /**
+     * @return the maximal depth of tags in the body
+     */
+    public int getMaxDepth() {
+        return fMaxDepth;
+    }
+
+    /**
+     * @return the seed of generated documents
+     */
+    public long getSeed() {
+        return fSeed;
+    }
+
+    /**
+     * @return the number of tags in the body (the body itself is not counted)
+     */
+    public int getTagsNumber() {
+        return fTagsNumber;
+    }
+
+    /**
+     * @return the average length of text blocks
+     */
+    public int getTextLength() {
+        return fTextLength;
+    }
+
+    private String[] newAttributes(Random random, int tagPos) {
+        int n = (int) fAttributesNumber;
+        if (random.nextDouble() < fAttributesNumber - n) {
+            n++;
+        }
+        n = Math.min(n, ATTRIBUTES.length);
+        if (n == 0) {
+            return EMPTY;
+        }
+        String[] attributes = new String[n * 2];
+        int first = random.nextInt(ATTRIBUTES.length);
+        for (int i = 0; i < n; i++) {
+            String name = ATTRIBUTES[(first + i) % ATTRIBUTES.length];
+            String value;
+            if ("class".equals(name)) {
+                value = CLASSES[random.nextInt(CLASSES.length)];
+            } else if ("id".equals(name)) {
+                value = "id" + tagPos;
+            } else if ("href".equals(name)) {
+                value = "/page/" + random.nextInt(1000) + "?a=1&b=2";
+            } else {
+                value = WORDS[random.nextInt(WORDS.length)];
+            }
+            attributes[i * 2] = name;
+            attributes[i * 2 + 1] = value;
+        }
+        return attributes;
+    }
+
+    /**
+     * Returns a new DOM document with the current seed.
+     * 
+     * @return a new document
+     */
+    public Document newDocument() {
+        try {
+            Document document = DocumentBuilderFactory
+                .newInstance()
+                .newDocumentBuilder()
+                .newDocument();
+            generate(new DocumentBuilder(document));
+            return document;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param attributesNumber the average number of attributes of a tag
+     * @return this object
+     */
+    public CorpusGenerator setAttributesNumber(double attributesNumber) {
+        if (attributesNumber < 0) {
+            throw new IllegalArgumentException(
+                "The number of attributes should not be negative.");
+        }
+        fAttributesNumber = attributesNumber;
+        return this;
+    }
+
+    /**
+     * @param boilerplateRatio the part of tags in boilerplate blocks
+     * @return this object
+     */
+    public CorpusGenerator setBoilerplateRatio(double boilerplateRatio) {
+        checkRatio(boilerplateRatio);
+        fBoilerplateRatio = boilerplateRatio;
+        return this;
+    }
+
+    /**
+     * @param fanOut the maximal number of children of a tag
+     * @return this object
+     */
+    public CorpusGenerator setFanOut(int fanOut) {
+        checkSize(fanOut);
+        fFanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * @param leafRatio the probability that a tag has no child tags
+     * @return this object
+     */
+    public CorpusGenerator setLeafRatio(double leafRatio) {
+        checkRatio(leafRatio);
+        fLeafRatio = leafRatio;
+        return this;
+    }
+
+    /**
+     * @param maxDepth the maximal depth of tags in the body
+     * @return this object
+     */
+    public CorpusGenerator setMaxDepth(int maxDepth) {
+        checkSize(maxDepth);
+        fMaxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param seed the seed of generated documents
+     * @return this object
+     */
+    public CorpusGenerator setSeed(long seed) {
+        fSeed = seed;
+        return this;
+    }
+
+    /**
+     * @param tagsNumber the number of tags in the body
+     * @return this object
+     */
+    public CorpusGenerator setTagsNumber(int tagsNumber) {
+        checkSize(tagsNumber);
+        fTagsNumber = tagsNumber;
+        return this;
+    }
+
+    /**
+     * @param textLength the average length of text blocks
+     * @return this object
+     */
+    public CorpusGenerator setTextLength(int textLength) {
+        checkSize(textLength);
+        fTextLength = textLength;
+        return this;
+    }
+
+    /**
+     * Generates a text block with a random length.
+     */
+    private void text(HTMLTokenizer.IHandler handler, Random random) {
+        int len = 1 + random.nextInt(2 * fTextLength - 1);
+        if (fBuffer.length < len + 16) {
+            fBuffer = new char[len + 16];
+        }
+        int pos = 0;
+        while (pos < len) {
+            if (pos > 0) {
+                fBuffer[pos++] = ' ';
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            int n = Math.min(word.length(), fBuffer.length - pos);
+            word.getChars(0, n, fBuffer, pos);
+            pos += n;
+        }
+        handler.onText(fBuffer, 0, len);
+    }
+
+    private void text(HTMLTokenizer.IHandler handler, String text) {
+        handler.onText(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Returns the document with the current seed as an XML string.
+     * 
+     * @return an XML representation of the document
+     */
+    public String toXML() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the document with the current seed as XML.
+     * 
+     * @param writer the output writer; it is not closed by this method
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        write(writer, fSeed);
+    }
+
+    private void write(Writer writer, long seed) throws IOException {
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            generate(new XMLWriter(writer), seed);
+            writer.flush();
+        } catch (WriteException e) {
+            throw e.getIOException();
+        }
+    }
+
+    /**
+     * Writes a block of tags which is repeated on all pages of a site.
+     * 
+     * @return the number of written tags or 0 if the block is bigger than the
+     *         given budget
+     */
+    private int writeBoilerplate(
+        HTMLTokenizer.IHandler handler,
+        Random random,
+        int budget) {
+        int type = random.nextInt(3);
+        String[] links = type == 0 ? MENU : RELATED;
+        int size = type == 2 ? 5 : 2 + links.length * 2;
+        if (size > budget) {
+            return 0;
+        }
+        if (type == 2) {
+            String[] attributes = { "class", "footer" };
+            handler.onStartTag("div", attributes, false);
+            handler.onStartTag("p", EMPTY, false);
+            text(handler, "Copyright \u00A9 2013 Example.");
+            handler.onEndTag("p");
+            String[] names = { "Privacy", "Terms", "Contact" };
+            for (String name : names) {
+                String href = "/" + name.toLowerCase();
+                handler.onStartTag("a", new String[] { "href", href }, false);
+                text(handler, name);
+                handler.onEndTag("a");
+            }
+            handler.onEndTag("div");
+            return size;
+        }
+        String block = type == 0 ? "menu" : "sidebar";
+        handler.onStartTag("div", new String[] { "class", block }, false);
+        handler.onStartTag("ul", EMPTY, false);
+        for (int i = 0; i < links.length; i++) {
+            handler.onStartTag("li", EMPTY, false);
+            String href = "/" + block + "/" + i;
+            handler.onStartTag("a", new String[] { "href", href }, false);
+            text(handler, links[i]);
+            handler.onEndTag("a");
+            handler.onEndTag("li");
+        }
+        handler.onEndTag("ul");
+        handler.onEndTag("div");
+        return size;
+    }
+
+    /**
+     * Writes XML files of documents with consecutive seeds starting from the
+     * current one.
+     * 
+     * @param dir the output directory
+     * @param documentsNumber the number of documents
+     * @throws IOException
+     */
+    public void writeCorpus(File dir, int documentsNumber) throws IOException {
+        dir.mkdirs();
+        for (int i = 0; i < documentsNumber; i++) {
+            long seed = fSeed + i;
+            File file = new File(dir, String.format("doc-%05d.xml", seed));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file),
+                "UTF-8"));
+            try {
+                write(writer, seed);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+}
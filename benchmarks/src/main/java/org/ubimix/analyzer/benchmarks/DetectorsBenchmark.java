@@ -0,0 +1,74 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ubimix.analyzer.scores.ITagScoreDetector;
+import org.ubimix.analyzer.scores.ITagWeightDetector;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.scores.impl.ScoringModel;
+import org.ubimix.analyzer.server.ElementInfoProvider;
+import org.w3c.dom.Element;
+
+/**
+ * Tag score and tag weight detectors applied to all tags of a medium
+ * document. Results are reported per tag.
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorsBenchmark {
+
+    private static final int TAGS_NUMBER = 5000;
+
+    private ITagScoreDetector<Element> fTagScoreDetector;
+
+    private Element[] fTags;
+
+    private ITagWeightDetector<Element> fTagWeightDetector;
+
+    @Benchmark
+    @OperationsPerInvocation(TAGS_NUMBER)
+    public void getTagScore(Blackhole blackhole) {
+        for (Element tag : fTags) {
+            blackhole.consume(fTagScoreDetector.getTagScore(tag));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAGS_NUMBER)
+    public void getTagWeight(Blackhole blackhole) {
+        for (Element tag : fTags) {
+            blackhole.consume(fTagWeightDetector.getTagWeight(tag));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ScoringModel<Element> model = new ScoreGeneratorFactory<Element>(
+            new ElementInfoProvider()).compile();
+        fTagScoreDetector = model.getTagScoreDetector();
+        fTagWeightDetector = model.getTagWeightDetector();
+        Element body = BenchmarkDocuments.newDocument(TAGS_NUMBER, 1);
+        List<Element> tags = BenchmarkDocuments.getTags(body);
+        fTags = tags.toArray(new Element[tags.size()]);
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.server.ElementInfoProvider;
+import org.ubimix.analyzer.server.ElementScoreGenerator;
+import org.w3c.dom.Element;
+
+/**
+ * The end-to-end analysis of DOM documents of different sizes.
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ElementVisitBenchmark {
+
+    private Element fDocument;
+
+    private ScoreGenerator<Element> fGenerator;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    private BenchmarkDocuments.Size fSize;
+
+    private ElementScoreGenerator fVisitor;
+
+    @Setup
+    public void setUp() {
+        fGenerator = new ScoreGeneratorFactory<Element>(
+            new ElementInfoProvider()).compile().newScoreGenerator();
+        fVisitor = new ElementScoreGenerator(fGenerator);
+        fDocument = BenchmarkDocuments.newDocument(fSize.getTagsNumber(), 1);
+    }
+
+    @Benchmark
+    public Channels visit() {
+        fGenerator.reset();
+        fVisitor.visit(fDocument);
+        return fGenerator.getMaxScore();
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.server.ElementInfoProvider;
+import org.ubimix.analyzer.server.ElementScoreGenerator;
+import org.ubimix.analyzer.stream.TagDescriptor;
+import org.ubimix.analyzer.stream.TagDescriptorInfoProvider;
+import org.ubimix.analyzer.stream.XMLStreamScoreGenerator;
+import org.w3c.dom.Element;
+
+/**
+ * The analysis of synthetic documents of different shapes (see
+ * {@link CorpusGenerator}): a regular document, 10k nested tags, 100k
+ * siblings and megabyte texts. Documents are analyzed as DOM trees and as
+ * XML streams.
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalingBenchmark {
+
+    private Element fDocument;
+
+    private ScoreGenerator<Element> fElementGenerator;
+
+    private ElementScoreGenerator fElementVisitor;
+
+    @Param({ "regular", "deep", "wide", "text" })
+    private String fShape;
+
+    private ScoreGenerator<TagDescriptor> fStreamGenerator;
+
+    private XMLStreamScoreGenerator fStreamVisitor;
+
+    private String fXml;
+
+    @Setup
+    public void setUp() {
+        CorpusGenerator corpus;
+        if ("deep".equals(fShape)) {
+            corpus = CorpusGenerator.newDeepDocument(10000);
+        } else if ("wide".equals(fShape)) {
+            corpus = CorpusGenerator.newWideDocument(100000);
+        } else if ("text".equals(fShape)) {
+            corpus = CorpusGenerator.newHugeTextDocument(1 << 20);
+        } else {
+            corpus = new CorpusGenerator().setTagsNumber(5000);
+        }
+        fDocument = corpus.newDocument().getDocumentElement();
+        fXml = corpus.toXML();
+        fElementGenerator = new ScoreGeneratorFactory<Element>(
+            new ElementInfoProvider()).compile().newScoreGenerator();
+        fElementVisitor = new ElementScoreGenerator(fElementGenerator);
+        fStreamGenerator = new ScoreGeneratorFactory<TagDescriptor>(
+            new TagDescriptorInfoProvider()).compile().newScoreGenerator();
+        fStreamVisitor = new XMLStreamScoreGenerator(fStreamGenerator);
+    }
+
+    @Benchmark
+    public Channels visitElements() {
+        fElementGenerator.reset();
+        fElementVisitor.visit(fDocument);
+        return fElementGenerator.getMaxScore();
+    }
+
+    @Benchmark
+    public Channels visitStream() throws XMLStreamException {
+        fStreamGenerator.reset();
+        fStreamVisitor.visit(new StringReader(fXml));
+        return fStreamGenerator.getMaxScore();
+    }
+
+}
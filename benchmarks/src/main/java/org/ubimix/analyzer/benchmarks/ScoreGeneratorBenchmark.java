@@ -0,0 +1,93 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.scores.impl.ScoringModel;
+import org.ubimix.analyzer.server.ElementInfoProvider;
+import org.w3c.dom.Element;
+
+/**
+ * The event loop of score generators. Tags and texts are prepared in advance,
+ * so the DOM traversal is not measured. Results are reported per tag.
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreGeneratorBenchmark {
+
+    private static final int TAGS_NUMBER = 5000;
+
+    private ScoreGenerator<Element> fGenerator;
+
+    @Param({ "default", "buffered", "arena" })
+    private String fMode;
+
+    private Element[] fTags;
+
+    private String[] fTexts;
+
+    @Benchmark
+    @OperationsPerInvocation(TAGS_NUMBER)
+    public Channels scoreTags() {
+        fGenerator.reset();
+        // Tags are nested by groups of four
+        for (int i = 0; i < fTags.length; i++) {
+            fGenerator.beginTag(fTags[i]);
+            fGenerator.onText(fTexts[i]);
+            if (i % 4 == 3) {
+                fGenerator.endTag();
+                fGenerator.endTag();
+                fGenerator.endTag();
+                fGenerator.endTag();
+            }
+        }
+        while (fGenerator.getCurrentTagInfo() != null) {
+            fGenerator.endTag();
+        }
+        return fGenerator.getMaxScore();
+    }
+
+    @Setup
+    public void setUp() {
+        ScoringModel<Element> model = new ScoreGeneratorFactory<Element>(
+            new ElementInfoProvider()).compile();
+        if ("arena".equals(fMode)) {
+            fGenerator = model.newArenaScoreGenerator();
+        } else {
+            fGenerator = model.newScoreGenerator();
+            fGenerator.setBufferedPropagation("buffered".equals(fMode));
+        }
+        Element body = BenchmarkDocuments.newDocument(TAGS_NUMBER, 1);
+        List<Element> tags = BenchmarkDocuments.getTags(body);
+        fTags = tags.toArray(new Element[tags.size()]);
+        fTexts = new String[fTags.length];
+        for (int i = 0; i < fTags.length; i++) {
+            fTexts[i] = fTags[i].getTextContent();
+            if (fTexts[i].length() > 128) {
+                fTexts[i] = fTexts[i].substring(0, 128);
+            }
+        }
+    }
+
+}
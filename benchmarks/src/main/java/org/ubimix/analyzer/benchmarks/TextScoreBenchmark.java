@@ -0,0 +1,88 @@
+package org.ubimix.analyzer.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.impl.CachingTextScoreDetector;
+import org.ubimix.analyzer.scores.impl.ChannelsManager;
+import org.ubimix.analyzer.scores.impl.TextScoreDetector;
+
+/**
+ * Scores of texts of different lengths. The "auto" detector is created by the
+ * <code>TextScoreDetector.newInstance(...)</code> method; it is vectorized
+ * when the analyzer is built with Java 17 classes and the benchmark JVM is
+ * started with the <code>--add-modules=jdk.incubator.vector</code> option
+ * (see the <code>-jvmArgsAppend</code> option of JMH).
+ * 
+ * @author kotelnikov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextScoreBenchmark {
+
+    private char[] fBuffer;
+
+    private CachingTextScoreDetector fCache;
+
+    private TextScoreDetector fDetector;
+
+    @Param({ "scalar", "auto" })
+    private String fImplementation;
+
+    @Param({ "16", "256", "4096" })
+    private int fLength;
+
+    private String fText;
+
+    @Benchmark
+    public Channels getCachedTextScore() {
+        return fCache.getTextScore(fText);
+    }
+
+    @Benchmark
+    public Channels getTextScore() {
+        return fDetector.getTextScore(fText);
+    }
+
+    @Benchmark
+    public Channels getTextScoreFromBuffer() {
+        return fDetector.getTextScore(fBuffer, 0, fBuffer.length);
+    }
+
+    @Setup
+    public void setUp() {
+        ChannelsManager manager = new ChannelsManager(
+            "content",
+            "navigation",
+            "media");
+        fDetector = "scalar".equals(fImplementation)
+            ? new TextScoreDetector(manager)
+            : TextScoreDetector.newInstance(manager);
+        fCache = new CachingTextScoreDetector(fDetector, 1 << 20, 1 << 13, 16);
+        Random random = new Random(fLength);
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < fLength) {
+            buf.append(BenchmarkDocuments.newText(random)).append(' ');
+        }
+        buf.setLength(fLength);
+        fText = buf.toString();
+        fBuffer = fText.toCharArray();
+    }
+
+}
@@ -0,0 +1,563 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores;
+
+/**
+ * This score generator produces the same scores as the {@link ScoreGenerator}
+ * but it does not create {@link Channels} objects for individual tags. All
+ * channel values of all tags are stored in one flat growable array (the
+ * "arena") indexed by the tag position and by the channel number. So a full
+ * document is scored with a handful of allocations.
+ * <p>
+ * The {@link TagInfo} objects returned by the {@link #beginTag(Object)} and
+ * {@link #endTag()} methods are lightweight views over the arena. These views
+ * are re-used for all tags on the same depth, so they are valid only until the
+ * next tag on the same depth is opened. Use the {@link #getTagInfo(int)}
+ * method to get a view which is not re-used by this generator.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ArenaScoreGenerator<T> extends ScoreGenerator<T> {
+
+    /**
+     * A view over channel values stored in the arena for one tag. Channels
+     * returned by the getters of this class are copies of the arena values;
+     * setters copy the given values to the arena.
+     * 
+     * @author kotelnikov
+     */
+    public static class ArenaTagInfo<T> extends TagInfo<T> {
+
+        /**
+         * The generator owning the arena
+         */
+        private final ArenaScoreGenerator<T> fGenerator;
+
+        /**
+         * The position of the tag in the arena
+         */
+        private int fNode;
+
+        /**
+         * @param generator the generator owning the arena
+         * @param node the position of the tag in the arena
+         */
+        public ArenaTagInfo(ArenaScoreGenerator<T> generator, int node) {
+            super(null);
+            fGenerator = generator;
+            fNode = node;
+        }
+
+        @Override
+        public Channels getCumulatedWeight() {
+            return fGenerator.getChannels(fNode, CUMULATED_WEIGHT);
+        }
+
+        @Override
+        public Channels getFullScore() {
+            return fGenerator.getChannels(fNode, FULL_SCORE);
+        }
+
+        /**
+         * Returns the value of the specified channel of the full score without
+         * creating a new {@link Channels} instance.
+         * 
+         * @see org.ubimix.analyzer.scores.ScoreGenerator.TagInfo#getFullScoreLevel(int)
+         */
+        @Override
+        public double getFullScoreLevel(int channelId) {
+            return fGenerator.getLevel(fNode, FULL_SCORE, channelId);
+        }
+
+        @Override
+        public Channels getOwnScore() {
+            return fGenerator.getChannels(fNode, OWN_SCORE);
+        }
+
+        @Override
+        public T getTag() {
+            return fGenerator.getTag(fNode);
+        }
+
+        @Override
+        public int getTagPos() {
+            return fNode;
+        }
+
+        @Override
+        public Channels getWeight() {
+            return fGenerator.getChannels(fNode, WEIGHT);
+        }
+
+        @Override
+        public void setCumulatedWeight(Channels cumulatedWeight) {
+            fGenerator.setChannels(fNode, CUMULATED_WEIGHT, cumulatedWeight);
+        }
+
+        @Override
+        public void setFullScore(Channels fullScore) {
+            fGenerator.setChannels(fNode, FULL_SCORE, fullScore);
+        }
+
+        @Override
+        public void setOwnScore(Channels score) {
+            fGenerator.setChannels(fNode, OWN_SCORE, score);
+        }
+
+        /**
+         * Moves this view to the tag with the specified position.
+         * 
+         * @see org.ubimix.analyzer.scores.ScoreGenerator.TagInfo#setTagPos(int)
+         */
+        @Override
+        public void setTagPos(int pos) {
+            fNode = pos;
+        }
+
+        @Override
+        public void setTagWeight(Channels weight) {
+            fGenerator.setChannels(fNode, WEIGHT, weight);
+        }
+
+    }
+
+    /**
+     * Index of the cumulated weight of a tag in the arena.
+     */
+    private static final int CUMULATED_WEIGHT = 2;
+
+    /**
+     * Index of the full score of a tag in the arena.
+     */
+    private static final int FULL_SCORE = 3;
+
+    /**
+     * Index of the own score of a tag in the arena.
+     */
+    private static final int OWN_SCORE = 0;
+
+    /**
+     * Number of channel vectors stored in the arena for each tag.
+     */
+    private static final int SLOTS = 4;
+
+    /**
+     * Index of the weight of a tag in the arena.
+     */
+    private static final int WEIGHT = 1;
+
+    /**
+     * Channel values of all tags. Each tag takes <code>SLOTS</code> vectors of
+     * <code>fChannelsNumber</code> values.
+     */
+    private double[] fArena;
+
+    /**
+     * The number of channels
+     */
+    private final int fChannelsNumber;
+
+    /**
+     * Temporary buffer used to propagate scores
+     */
+    private final double[] fDelta;
+
+    /**
+     * Maximal full scores by channels
+     */
+    private final double[] fMax;
+
+    /**
+     * Number of tags stored in the arena
+     */
+    private int fNodeCount;
+
+    /**
+     * Reduction factors used to propagate scores
+     */
+    private final ScorePropagator fPropagator;
+
+    /**
+     * Positions of all open tags
+     */
+    private int[] fStack;
+
+    /**
+     * The number of open tags
+     */
+    private int fStackSize;
+
+    /**
+     * Tags by their positions
+     */
+    private Object[] fTags;
+
+    /**
+     * Re-used views over open tags by their depth
+     */
+    private ArenaTagInfo<T>[] fViews;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ArenaScoreGenerator(
+        IChannelsManager channelsManager,
+        ITagScoreDetector<T> tagScoreDetector,
+        ITagWeightDetector<T> tagWeightDetector,
+        ITextScoreDetector textScoreDetector,
+        IScoreReductionProvider scoreReductionProvider) {
+        super(
+            channelsManager,
+            tagScoreDetector,
+            tagWeightDetector,
+            textScoreDetector,
+            scoreReductionProvider);
+        fChannelsNumber = channelsManager.getChannelsNumber();
+        fDelta = new double[fChannelsNumber];
+        fMax = new double[fChannelsNumber];
+        fPropagator = getScorePropagator();
+        int capacity = 256;
+        fArena = new double[capacity * SLOTS * fChannelsNumber];
+        fTags = new Object[capacity];
+        fStack = new int[32];
+        fViews = new ArenaTagInfo[32];
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#addTextScore(org.ubimix.analyzer.scores.Channels)
+     */
+    @Override
+    protected void addTextScore(Channels score) {
+        int own = (fStack[fStackSize - 1] * SLOTS + OWN_SCORE)
+            * fChannelsNumber;
+        for (int i = 0; i < fChannelsNumber; i++) {
+            fArena[own + i] += score.getLevel(i);
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#beginTag(java.lang.Object)
+     */
+    @Override
+    public TagInfo<T> beginTag(T tag) {
+        ScoringMetrics metrics = getMetrics();
+        long time = 0;
+        if (metrics != null) {
+            time = metrics.beginTag(fStackSize);
+        }
+        int node = fNodeCount++;
+        ensureNodeCapacity(fNodeCount);
+        fTags[node] = tag;
+
+        int n = fChannelsNumber;
+        int base = node * SLOTS * n;
+        int own = base + OWN_SCORE * n;
+        int weight = base + WEIGHT * n;
+        int cumulated = base + CUMULATED_WEIGHT * n;
+        int full = base + FULL_SCORE * n;
+
+        int tagId = getTagId(tag);
+        Channels score = getTagScore(tag, tagId);
+        copy(score, fArena, own);
+        Channels tagWeight = getTagWeight(tag, tagId);
+        copy(tagWeight, fArena, weight);
+        if (metrics != null) {
+            metrics.endTagDetectors(time);
+        }
+
+        Channels root = getRootCumulatedWeight();
+        int parentCumulated = -1;
+        if (fStackSize > 0) {
+            parentCumulated = fStack[fStackSize - 1]
+                * SLOTS
+                * n
+                + CUMULATED_WEIGHT
+                * n;
+        }
+        for (int i = 0; i < n; i++) {
+            double value = fArena[weight + i];
+            if (parentCumulated >= 0) {
+                value *= fArena[parentCumulated + i];
+            } else if (root != null) {
+                value *= root.getLevel(i);
+            }
+            fArena[cumulated + i] = value;
+            fArena[full + i] = 0;
+        }
+
+        if (fStackSize == fStack.length) {
+            fStack = grow(fStack);
+        }
+        fStack[fStackSize] = node;
+        return getView(fStackSize++, node);
+    }
+
+    private void copy(Channels channels, double[] array, int pos) {
+        for (int i = 0; i < fChannelsNumber; i++) {
+            array[pos + i] = channels.getLevel(i);
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#endTag()
+     */
+    @Override
+    public TagInfo<T> endTag() {
+        ScoringMetrics metrics = getMetrics();
+        long time = metrics != null ? metrics.startPropagation() : 0;
+        int depth = fStackSize - 1;
+        int node = fStack[depth];
+        int n = fChannelsNumber;
+        int stride = SLOTS * n;
+        int base = node * stride;
+        int own = base + OWN_SCORE * n;
+        int cumulated = base + CUMULATED_WEIGHT * n;
+        for (int i = 0; i < n; i++) {
+            fDelta[i] = fArena[own + i] * fArena[cumulated + i];
+        }
+
+        int steps = 0;
+        if (isBufferedPropagation()) {
+            ScoreContributions pending = getScoreContributions(depth);
+            ScoreContributions parent = getParentContributions(depth);
+            steps = fPropagator.propagate(
+                pending,
+                fDelta,
+                0,
+                fArena,
+                base + FULL_SCORE * n,
+                parent);
+        } else {
+            int reductionsNumber = fPropagator.getReductionsNumber();
+            int distance = 0;
+            for (int s = depth; s >= 0 && distance < reductionsNumber; s--) {
+                int full = fStack[s] * stride + FULL_SCORE * n;
+                boolean inRange = true;
+                for (int i = 0; i < n; i++) {
+                    double value = fDelta[i]
+                        * fPropagator.getReduction(distance, i);
+                    fDelta[i] = value;
+                    fArena[full + i] += value;
+                    inRange &= value >= 0 && value <= 1;
+                }
+                steps++;
+                if (inRange) {
+                    break;
+                }
+                distance++;
+            }
+        }
+
+        int full = base + FULL_SCORE * n;
+        for (int i = 0; i < n; i++) {
+            double value = fArena[full + i];
+            if (fMax[i] < value) {
+                fMax[i] = value;
+            }
+        }
+
+        fStackSize--;
+        ArenaTagInfo<T> view = getView(depth, node);
+        if (metrics != null) {
+            metrics.endTag(steps, time);
+        }
+        notifyListeners(view);
+        if (metrics != null && fStackSize == 0) {
+            notifyMetricsListener();
+        }
+        return view;
+    }
+
+    private void ensureNodeCapacity(int count) {
+        if (count > fTags.length) {
+            int capacity = Math.max(count, fTags.length * 2);
+            Object[] tags = new Object[capacity];
+            System.arraycopy(fTags, 0, tags, 0, fTags.length);
+            fTags = tags;
+            double[] arena = new double[capacity * SLOTS * fChannelsNumber];
+            System.arraycopy(fArena, 0, arena, 0, fArena.length);
+            fArena = arena;
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#getAverageScore()
+     */
+    @Override
+    public Channels getAverageScore() {
+        Channels averageScore = getMaxScore();
+        averageScore.div(fNodeCount);
+        return averageScore;
+    }
+
+    /**
+     * Returns a copy of the specified channel vector of the given tag.
+     * 
+     * @param node the position of the tag
+     * @param slot the index of the channel vector
+     * @return a copy of the specified channel vector
+     */
+    private Channels getChannels(int node, int slot) {
+        Channels channels = getChannelManager().newChannels(0);
+        int pos = (node * SLOTS + slot) * fChannelsNumber;
+        for (int i = 0; i < fChannelsNumber; i++) {
+            channels.setLevel(i, fArena[pos + i]);
+        }
+        return channels;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#getCurrentTagInfo()
+     */
+    @Override
+    public TagInfo<T> getCurrentTagInfo() {
+        int depth = fStackSize - 1;
+        return depth >= 0 ? getView(depth, fStack[depth]) : null;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#getDepth()
+     */
+    @Override
+    protected int getDepth() {
+        return fStackSize - 1;
+    }
+
+    /**
+     * Returns the value of the specified full score channel of the given tag.
+     * 
+     * @param node the position of the tag
+     * @param channelId the identifier of the channel
+     * @return the full score of the tag in the specified channel
+     */
+    public double getFullScoreLevel(int node, int channelId) {
+        return getLevel(node, FULL_SCORE, channelId);
+    }
+
+    private double getLevel(int node, int slot, int channelId) {
+        return fArena[(node * SLOTS + slot) * fChannelsNumber + channelId];
+    }
+
+    /**
+     * Returns a copy of maximal full scores by channels.
+     * 
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#getMaxScore()
+     */
+    @Override
+    public Channels getMaxScore() {
+        Channels channels = getChannelManager().newChannels(0);
+        for (int i = 0; i < fChannelsNumber; i++) {
+            channels.setLevel(i, fMax[i]);
+        }
+        return channels;
+    }
+
+    /**
+     * @return the number of tags stored in the arena
+     */
+    public int getNodeCount() {
+        return fNodeCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getTag(int node) {
+        return (T) fTags[node];
+    }
+
+    /**
+     * Returns a new view over the tag with the specified position. This view
+     * is not re-used by this generator.
+     * 
+     * @param node the position of the tag
+     * @return a view over the specified tag
+     */
+    public TagInfo<T> getTagInfo(int node) {
+        if (node < 0 || node >= fNodeCount) {
+            throw new IndexOutOfBoundsException("Node: "
+                + node
+                + "; Size: "
+                + fNodeCount);
+        }
+        return new ArenaTagInfo<T>(this, node);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ArenaTagInfo<T> getView(int depth, int node) {
+        if (depth >= fViews.length) {
+            ArenaTagInfo<T>[] views = new ArenaTagInfo[fViews.length * 2];
+            System.arraycopy(fViews, 0, views, 0, fViews.length);
+            fViews = views;
+        }
+        ArenaTagInfo<T> view = fViews[depth];
+        if (view == null) {
+            view = new ArenaTagInfo<T>(this, node);
+            fViews[depth] = view;
+        } else {
+            view.setTagPos(node);
+        }
+        return view;
+    }
+
+    private int[] grow(int[] array) {
+        int[] result = new int[array.length * 2];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Removes all tags from the arena. The allocated memory is kept and
+     * re-used for the next document.
+     * 
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#reset()
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        for (int i = 0; i < fNodeCount; i++) {
+            fTags[i] = null;
+        }
+        fNodeCount = 0;
+        fStackSize = 0;
+        for (int i = 0; i < fChannelsNumber; i++) {
+            fMax[i] = 0;
+        }
+    }
+
+    private void setChannels(int node, int slot, Channels channels) {
+        copy(channels, fArena, (node * SLOTS + slot) * fChannelsNumber);
+    }
+
+    /**
+     * Reserves positions for the specified number of tags. Arena values of
+     * skipped tags are set to 0.
+     * 
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#skipTags(int)
+     */
+    @Override
+    public void skipTags(int count) {
+        int from = fNodeCount;
+        fNodeCount += count;
+        ensureNodeCapacity(fNodeCount);
+        int stride = SLOTS * fChannelsNumber;
+        for (int i = from * stride; i < fNodeCount * stride; i++) {
+            fArena[i] = 0;
+        }
+        for (int i = from; i < fNodeCount; i++) {
+            fTags[i] = null;
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ScoreGenerator#updateMaxScore(org.ubimix.analyzer.scores.Channels)
+     */
+    @Override
+    public void updateMaxScore(Channels score) {
+        for (int i = 0; i < fChannelsNumber; i++) {
+            double value = score.getLevel(i);
+            if (fMax[i] < value) {
+                fMax[i] = value;
+            }
+        }
+    }
+
+}
@@ -3,13 +3,23 @@ package org.ubimix.analyzer.scores;
 /**
  * This object contains re-distribution of weights by channels and provides some
  * common operations used to manipulate with these values.
+ * <p>
+ * By default levels are stored in an array. Subclasses could keep levels in
+ * their own fields (see
+ * {@link org.ubimix.analyzer.scores.impl.FixedChannels}); such subclasses
+ * override the {@link #getChannelsNumber()}, {@link #getLevel(int)},
+ * {@link #setLevel(int, double)} and {@link #getCopy()} methods. All other
+ * operations of this class are implemented using these methods, so objects
+ * of different implementations could be combined.
+ * </p>
  * 
  * @author kotelnikov
  */
 public class Channels {
 
     /**
-     * Redistribution of weights by channels.
+     * Redistribution of weights by channels; it is <code>null</code> if
+     * levels are stored by a subclass.
      */
     private final double[] fArray;
 
@@ -25,12 +35,25 @@ public class Channels {
      */
     protected Channels(Channels channels) {
         fManager = channels.fManager;
-        fArray = new double[channels.fArray.length];
+        ChannelsCounter.count();
+        fArray = new double[channels.getChannelsNumber()];
         for (int i = 0; i < fArray.length; i++) {
-            fArray[i] = channels.fArray[i];
+            fArray[i] = channels.getLevel(i);
         }
     }
 
+    /**
+     * This constructor is used by subclasses storing levels in their own
+     * fields.
+     * 
+     * @param manager the channel manager owning this object
+     */
+    protected Channels(IChannelsManager manager) {
+        fManager = manager;
+        ChannelsCounter.count();
+        fArray = null;
+    }
+
     /**
      * This constructor initializes internal fields..
      * 
@@ -39,6 +62,7 @@ public class Channels {
      */
     public Channels(IChannelsManager manager, double value) {
         fManager = manager;
+        ChannelsCounter.count();
         int size = manager.getChannelsNumber();
         fArray = new double[size];
         if (value != 0) {
@@ -54,8 +78,9 @@ public class Channels {
      * @param value the source of values
      */
     public Channels add(Channels value) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] += value.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) + value.getLevel(i));
         }
         return this;
     }
@@ -66,8 +91,9 @@ public class Channels {
      * @param value the source of values
      */
     public Channels add(double value) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] += value;
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) + value);
         }
         return this;
     }
@@ -80,14 +106,15 @@ public class Channels {
      * @param filter
      */
     public Channels add(double value, Channels filter) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] += value * filter.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) + value * filter.getLevel(i));
         }
         return this;
     }
 
     public Channels add(int channelId, double level) {
-        fArray[channelId] += level;
+        setLevel(channelId, getLevel(channelId) + level);
         return this;
     }
 
@@ -95,7 +122,7 @@ public class Channels {
         String name = fManager.getChannelName(channelId);
         buf.append(name);
         buf.append("=");
-        buf.append(fArray[channelId]);
+        buf.append(getLevel(channelId));
     }
 
     /**
@@ -107,9 +134,11 @@ public class Channels {
      * @return
      */
     public boolean checkValuesInRange(double min, double max) {
+        int n = getChannelsNumber();
         boolean result = true;
-        for (int i = 0; result && i < fArray.length; i++) {
-            result = min <= fArray[i] && max >= fArray[i];
+        for (int i = 0; result && i < n; i++) {
+            double level = getLevel(i);
+            result = min <= level && max >= level;
         }
         return result;
     }
@@ -122,7 +151,7 @@ public class Channels {
      * @return the result of comparison of values on the specified channel.
      */
     public int compareTo(Channels levels, int channelId) {
-        double diff = fArray[channelId] - levels.fArray[channelId];
+        double diff = getLevel(channelId) - levels.getLevel(channelId);
         return diff > 0 ? 1 : diff < 0 ? -1 : 0;
     }
 
@@ -140,8 +169,9 @@ public class Channels {
 
     public int countChannelNumberLessThan(Channels channels) {
         int result = 0;
-        for (int i = 0; i < fArray.length; i++) {
-            if (fArray[i] < channels.fArray[i]) {
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            if (getLevel(i) < channels.getLevel(i)) {
                 result++;
             }
         }
@@ -150,8 +180,9 @@ public class Channels {
 
     public int countChannelNumberMoreThan(Channels channels) {
         int result = 0;
-        for (int i = 0; i < fArray.length; i++) {
-            if (fArray[i] > channels.fArray[i]) {
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            if (getLevel(i) > channels.getLevel(i)) {
                 result++;
             }
         }
@@ -159,8 +190,9 @@ public class Channels {
     }
 
     public Channels div(Channels levels) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] /= levels.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) / levels.getLevel(i));
         }
         return this;
     }
@@ -171,8 +203,9 @@ public class Channels {
      * @param value
      */
     public Channels div(double value) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] /= value;
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) / value);
         }
         return this;
     }
@@ -189,9 +222,10 @@ public class Channels {
             return false;
         }
         Channels o = (Channels) obj;
-        boolean result = fArray.length == o.fArray.length;
-        for (int i = 0; result && i < fArray.length; i++) {
-            result = fArray[i] == o.fArray[i];
+        int n = getChannelsNumber();
+        boolean result = n == o.getChannelsNumber();
+        for (int i = 0; result && i < n; i++) {
+            result = getLevel(i) == o.getLevel(i);
         }
         return result;
     }
@@ -236,17 +270,20 @@ public class Channels {
     }
 
     public boolean hasValuesInRange(Channels min, Channels max) {
+        int n = getChannelsNumber();
         boolean result = false;
-        for (int i = 0; !result && i < fArray.length; i++) {
-            result = fArray[i] >= min.fArray[i] && fArray[i] <= max.fArray[i];
+        for (int i = 0; !result && i < n; i++) {
+            double level = getLevel(i);
+            result = level >= min.getLevel(i) && level <= max.getLevel(i);
         }
         return result;
     }
 
     public boolean lessThanOrEqualsTo(Channels channels) {
+        int n = getChannelsNumber();
         boolean result = true;
-        for (int i = 0; result && i < fArray.length; i++) {
-            result = (fArray[i] <= channels.fArray[i]);
+        for (int i = 0; result && i < n; i++) {
+            result = (getLevel(i) <= channels.getLevel(i));
         }
         return result;
     }
@@ -257,9 +294,10 @@ public class Channels {
      * @param score
      */
     public Channels max(Channels score) {
-        for (int i = 0; i < fArray.length; i++) {
-            if (fArray[i] < score.fArray[i]) {
-                fArray[i] = score.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            if (getLevel(i) < score.getLevel(i)) {
+                setLevel(i, score.getLevel(i));
             }
         }
         return this;
@@ -271,18 +309,20 @@ public class Channels {
      * @param score
      */
     public Channels min(Channels score) {
-        for (int i = 0; i < fArray.length; i++) {
-            if (fArray[i] > score.fArray[i]) {
-                fArray[i] = score.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            if (getLevel(i) > score.getLevel(i)) {
+                setLevel(i, score.getLevel(i));
             }
         }
         return this;
     }
 
     public boolean moreThanOrEqualsTo(Channels channels) {
+        int n = getChannelsNumber();
         boolean result = true;
-        for (int i = 0; result && i < fArray.length; i++) {
-            result = (fArray[i] >= channels.fArray[i]);
+        for (int i = 0; result && i < n; i++) {
+            result = (getLevel(i) >= channels.getLevel(i));
         }
         return result;
     }
@@ -295,8 +335,9 @@ public class Channels {
      *        channels
      */
     public Channels multiply(Channels levels) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] *= levels.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) * levels.getLevel(i));
         }
         return this;
     }
@@ -305,8 +346,30 @@ public class Channels {
      * Multiplies all channels to the specified value.
      */
     public Channels multiply(double value) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] *= value;
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, getLevel(i) * value);
+        }
+        return this;
+    }
+
+    /**
+     * Multiplies all channels of this object by the corresponding values of
+     * the factor and adds the resulting values to the target. This is a fused
+     * version of <code>multiply(factor)</code> followed by
+     * <code>target.add(this)</code>.
+     * 
+     * @param factor source of the channel values used to multiply internal
+     *        channels
+     * @param target the object accumulating the resulting values
+     * @return this object
+     */
+    public Channels multiplyAndAddTo(Channels factor, Channels target) {
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            double level = getLevel(i) * factor.getLevel(i);
+            setLevel(i, level);
+            target.setLevel(i, target.getLevel(i) + level);
         }
         return this;
     }
@@ -317,8 +380,9 @@ public class Channels {
      * @param val the default value to set
      */
     public Channels set(double val) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] = val;
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, val);
         }
         return this;
     }
@@ -331,8 +395,9 @@ public class Channels {
      * @param filter the filter used as a source of levels
      */
     public Channels set(double value, Channels filter) {
-        for (int i = 0; i < fArray.length; i++) {
-            fArray[i] = value * filter.fArray[i];
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, value * filter.getLevel(i));
         }
         return this;
     }
@@ -360,6 +425,24 @@ public class Channels {
         return this;
     }
 
+    /**
+     * Replaces all channels by products of the corresponding values of the
+     * given objects. This is a fused version of
+     * <code>first.getCopy().multiply(second)</code> which does not create a
+     * new object.
+     * 
+     * @param first the first factor
+     * @param second the second factor
+     * @return this object
+     */
+    public Channels setProduct(Channels first, Channels second) {
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            setLevel(i, first.getLevel(i) * second.getLevel(i));
+        }
+        return this;
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
@@ -367,7 +450,8 @@ public class Channels {
     public String toString() {
         StringBuilder buf = new StringBuilder();
         buf.append("{");
-        for (int i = 0; i < fArray.length; i++) {
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
             if (i > 0) {
                 buf.append(",");
             }
@@ -399,12 +483,13 @@ public class Channels {
      * @param max maximal value
      */
     public Channels trimToRange(double min, double max) {
-        for (int i = 0; i < fArray.length; i++) {
-            if (fArray[i] > max) {
-                fArray[i] = max;
+        int n = getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            if (getLevel(i) > max) {
+                setLevel(i, max);
             }
-            if (fArray[i] < min) {
-                fArray[i] = min;
+            if (getLevel(i) < min) {
+                setLevel(i, min);
             }
         }
         return this;
@@ -0,0 +1,67 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts {@link Channels} objects created by each thread. Counting is enabled
+ * only while at least one document is scored with a metrics listener (see
+ * {@link ScoringMetrics}); otherwise each new {@link Channels} object costs
+ * one read of a shared counter.
+ * 
+ * @author kotelnikov
+ */
+final class ChannelsCounter {
+
+    /**
+     * The number of documents currently counting allocations
+     */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    /**
+     * Per-thread numbers of created objects
+     */
+    private static final ThreadLocal<long[]> COUNTS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * This method is called by constructors of {@link Channels}.
+     */
+    static void count() {
+        if (ACTIVE.get() != 0) {
+            COUNTS.get()[0]++;
+        }
+    }
+
+    /**
+     * @return the number of objects counted in the current thread
+     */
+    static long getCount() {
+        return COUNTS.get()[0];
+    }
+
+    /**
+     * Enables counting for a new document.
+     */
+    static void start() {
+        ACTIVE.incrementAndGet();
+    }
+
+    /**
+     * Disables counting for a finished document; objects are counted while
+     * other documents are scored.
+     */
+    static void stop() {
+        ACTIVE.decrementAndGet();
+    }
+
+    private ChannelsCounter() {
+    }
+
+}
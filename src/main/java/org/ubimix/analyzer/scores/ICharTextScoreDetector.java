@@ -0,0 +1,26 @@
+package org.ubimix.analyzer.scores;
+
+/**
+ * An optional extension of text score detectors accepting texts as character
+ * sequences or ranges of character arrays. Parsers keeping texts in reusable
+ * buffers could use these methods without creating strings.
+ * 
+ * @author kotelnikov
+ */
+public interface ICharTextScoreDetector extends ITextScoreDetector {
+
+    /**
+     * @param buf the buffer containing the text
+     * @param start the position of the first character of the text
+     * @param len the length of the text
+     * @return the text score
+     */
+    Channels getTextScore(char[] buf, int start, int len);
+
+    /**
+     * @param text the text for which the initial score should be detected
+     * @return the text score
+     */
+    Channels getTextScore(CharSequence text);
+
+}
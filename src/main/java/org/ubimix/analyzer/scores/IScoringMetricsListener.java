@@ -0,0 +1,22 @@
+package org.ubimix.analyzer.scores;
+
+/**
+ * Instances of this type are notified by {@link ScoreGenerator}s about
+ * statistics of scored documents. A document is finished when its top-level
+ * tag is closed.
+ * 
+ * @author kotelnikov
+ * @see ScoreGenerator#setMetricsListener(IScoringMetricsListener)
+ */
+public interface IScoringMetricsListener {
+
+    /**
+     * This method is called when a document is scored. The given object is
+     * re-used by the generator after this call, so listeners should copy the
+     * values they need.
+     * 
+     * @param metrics statistics of the scored document
+     */
+    void onDocumentScored(ScoringMetrics metrics);
+
+}
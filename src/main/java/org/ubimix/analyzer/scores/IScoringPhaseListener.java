@@ -0,0 +1,47 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores;
+
+/**
+ * Metrics listeners of this type are also notified when a document starts
+ * and when each timed scoring phase starts and ends, so they could report
+ * intervals with their real start times (for example as profiler events).
+ * Phases are reported only if their durations are measured (see
+ * {@link ScoreGenerator#setMetricsListener(IScoringMetricsListener, boolean)}
+ * ). Phases of one document never overlap. Listeners shared by several
+ * generators could keep the state of a document in the statistics object
+ * (see {@link ScoringMetrics#setListenerState(Object)}).
+ * 
+ * @author kotelnikov
+ */
+public interface IScoringPhaseListener extends IScoringMetricsListener {
+
+    /**
+     * This method is called when the first tag of a document is opened.
+     * 
+     * @param metrics statistics of the started document
+     */
+    void onDocumentStarted(ScoringMetrics metrics);
+
+    /**
+     * This method is called when a timed scoring phase is finished.
+     * 
+     * @param metrics statistics of the scored document
+     * @param phase the finished phase
+     * @param duration the duration of the phase in nanoseconds
+     */
+    void onPhaseFinished(
+        ScoringMetrics metrics,
+        ScoringMetrics.Phase phase,
+        long duration);
+
+    /**
+     * This method is called when a timed scoring phase is started.
+     * 
+     * @param metrics statistics of the scored document
+     * @param phase the started phase
+     */
+    void onPhaseStarted(ScoringMetrics metrics, ScoringMetrics.Phase phase);
+
+}
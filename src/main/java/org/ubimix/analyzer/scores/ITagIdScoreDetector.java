@@ -0,0 +1,31 @@
+package org.ubimix.analyzer.scores;
+
+/**
+ * An optional extension of tag score detectors identifying tag names by
+ * integers. The {@link ScoreGenerator} resolves the identifier of each tag
+ * once with the {@link #getTagId(Object)} method and passes it to the score
+ * detector and to the weight detector (if it implements the
+ * {@link ITagIdWeightDetector} interface), so the tag name is not looked up
+ * by each detector.
+ * 
+ * @author kotelnikov
+ */
+public interface ITagIdScoreDetector<T> extends ITagScoreDetector<T> {
+
+    /**
+     * @param tag the tag
+     * @return the identifier of the name of the given tag or a negative value
+     *         if the name has no identifier; in this case detectors use the
+     *         tag name
+     */
+    int getTagId(T tag);
+
+    /**
+     * @param tag the tag to analyse
+     * @param tagId the identifier of the tag name returned by the
+     *        {@link #getTagId(Object)} method
+     * @return the initial score of the specified tag
+     */
+    Channels getTagScore(T tag, int tagId);
+
+}
@@ -0,0 +1,20 @@
+package org.ubimix.analyzer.scores;
+
+/**
+ * An optional extension of tag weight detectors accepting identifiers of tag
+ * names resolved by an {@link ITagIdScoreDetector}.
+ * 
+ * @author kotelnikov
+ */
+public interface ITagIdWeightDetector<T> extends ITagWeightDetector<T> {
+
+    /**
+     * @param tag tag to analyse
+     * @param tagId the identifier of the tag name returned by the
+     *        {@link ITagIdScoreDetector#getTagId(Object)} method or a
+     *        negative value if the name has no identifier
+     * @return a multiplication factor for all content of this tag
+     */
+    Channels getTagWeight(T tag, int tagId);
+
+}
@@ -0,0 +1,22 @@
+package org.ubimix.analyzer.scores;
+
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+
+/**
+ * Instances of this type are notified by {@link ScoreGenerator}s about tags
+ * with final scores.
+ * 
+ * @author kotelnikov
+ */
+public interface ITagListener<T> {
+
+    /**
+     * This method is called when a tag is closed and its full score is not
+     * changed anymore. The given object could be re-used by the generator
+     * after this call, so listeners should copy the values they need.
+     * 
+     * @param tagInfo the information about the closed tag
+     */
+    void onEndTag(TagInfo<T> tagInfo);
+
+}
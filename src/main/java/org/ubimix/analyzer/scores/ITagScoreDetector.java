@@ -18,7 +18,9 @@ public interface ITagScoreDetector<T> {
 
     /**
      * Returns the initial score of an empty tag of the specified tag with the
-     * given attributes.
+     * given attributes. The returned object belongs to the caller and could be
+     * modified, so implementations should never return their internal
+     * (shared) objects.
      * 
      * @param tag the tag to analyse
      * @return the initial weight of the specified tag
@@ -9,7 +9,9 @@ public interface ITagWeightDetector<T> {
 
     /**
      * Detects and returns the multiplication factor for all tag scores in tags
-     * with the specified name and attributes
+     * with the specified name and attributes. The returned object belongs to
+     * the caller and could be modified, so implementations should never
+     * return their internal (shared) objects.
      * 
      * @param tag tag to analyse
      * @return a multiplication factor for all content of this tag
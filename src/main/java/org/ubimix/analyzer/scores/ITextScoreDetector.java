@@ -2,7 +2,8 @@ package org.ubimix.analyzer.scores;
 
 /**
  * Instances of this type are used to detect the initial score of text
- * strings.
+ * strings. Returned scores could be shared (for example by caching
+ * detectors), so callers should not modify them.
  * 
  * @author kotelnikov
  */
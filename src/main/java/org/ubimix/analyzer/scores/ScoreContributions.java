@@ -0,0 +1,269 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores;
+
+/**
+ * This object contains score contributions which are not yet propagated to the
+ * parents of a tag. Each contribution is identified by the distance from the
+ * tag which produced it and by the distance where its propagation stops.
+ * Contributions with the same distances are propagated in the same way, so
+ * they are summed up and stored together. The number of stored contributions is
+ * bounded by the number of distances with defined score reductions.
+ * <p>
+ * Contributions are located by their distances with a square index table, so
+ * adding a contribution does not depend on the number of stored ones. The
+ * table grows with the largest distance seen; the stored distances themselves
+ * are used to clear it.
+ * </p>
+ * 
+ * @author kotelnikov
+ * @see ScorePropagator
+ */
+public class ScoreContributions {
+
+    /**
+     * The number of channels in each contribution.
+     */
+    private final int fChannelsNumber;
+
+    /**
+     * Distances from the original tags by contributions.
+     */
+    private int[] fDistances;
+
+    /**
+     * Positions of contributions (plus one) by distances; the position of a
+     * contribution is stored in the cell
+     * <code>distance * fIndexWidth + stop</code>. Empty cells contain 0.
+     */
+    private int[] fIndex;
+
+    /**
+     * The number of distances covered by the index table
+     */
+    private int fIndexWidth;
+
+    /**
+     * The number of stored contributions.
+     */
+    private int fSize;
+
+    /**
+     * The maximal distances of contributions propagation.
+     */
+    private int[] fStops;
+
+    /**
+     * Channel values of all contributions.
+     */
+    private double[] fValues;
+
+    /**
+     * @param channelsNumber the number of channels in each contribution
+     */
+    public ScoreContributions(int channelsNumber) {
+        fChannelsNumber = channelsNumber;
+        int capacity = 8;
+        fDistances = new int[capacity];
+        fStops = new int[capacity];
+        fValues = new double[capacity * channelsNumber];
+        fIndexWidth = 8;
+        fIndex = new int[fIndexWidth * fIndexWidth];
+    }
+
+    /**
+     * Adds all contributions from the given object to this one.
+     * 
+     * @param contributions the contributions to add
+     */
+    public void add(ScoreContributions contributions) {
+        for (int i = 0; i < contributions.fSize; i++) {
+            add(
+                contributions.fDistances[i],
+                contributions.fStops[i],
+                contributions.fValues,
+                i * fChannelsNumber);
+        }
+    }
+
+    /**
+     * Adds a new contribution. If there is already a contribution with the
+     * same distances then the given values are added to it.
+     * 
+     * @param distance the distance from the tag which produced this
+     *        contribution
+     * @param stop the last distance where this contribution is applied
+     * @param values the channel values of the contribution
+     * @param offset the position of the first channel in the given array
+     */
+    public void add(int distance, int stop, double[] values, int offset) {
+        add(distance, stop, values, offset, 1);
+    }
+
+    private void add(
+        int distance,
+        int stop,
+        double[] values,
+        int offset,
+        double factor) {
+        int n = fChannelsNumber;
+        int idx = indexOf(distance, stop);
+        if (idx < 0) {
+            idx = fSize++;
+            if (fSize > fDistances.length) {
+                int capacity = fDistances.length * 2;
+                int[] distances = new int[capacity];
+                System.arraycopy(fDistances, 0, distances, 0, idx);
+                fDistances = distances;
+                int[] stops = new int[capacity];
+                System.arraycopy(fStops, 0, stops, 0, idx);
+                fStops = stops;
+                double[] array = new double[capacity * n];
+                System.arraycopy(fValues, 0, array, 0, idx * n);
+                fValues = array;
+            }
+            fDistances[idx] = distance;
+            fStops[idx] = stop;
+            int width = Math.max(distance, stop) + 1;
+            if (width > fIndexWidth) {
+                resizeIndex(Math.max(width, fIndexWidth * 2));
+            }
+            fIndex[distance * fIndexWidth + stop] = idx + 1;
+            int pos = idx * n;
+            for (int i = 0; i < n; i++) {
+                fValues[pos + i] = values[offset + i] * factor;
+            }
+        } else {
+            int pos = idx * n;
+            for (int i = 0; i < n; i++) {
+                fValues[pos + i] += values[offset + i] * factor;
+            }
+        }
+    }
+
+    /**
+     * Removes all contributions.
+     */
+    public void clear() {
+        int width = fIndexWidth;
+        for (int i = 0; i < fSize; i++) {
+            fIndex[fDistances[i] * width + fStops[i]] = 0;
+        }
+        fSize = 0;
+    }
+
+    /**
+     * @return the number of channels in each contribution
+     */
+    public int getChannelsNumber() {
+        return fChannelsNumber;
+    }
+
+    /**
+     * Returns the distance between the tag which produced the specified
+     * contribution and the tag where it should be applied next.
+     * 
+     * @param idx the index of the contribution
+     * @return the distance from the original tag
+     */
+    public int getDistance(int idx) {
+        return fDistances[idx];
+    }
+
+    /**
+     * Returns the value of the specified channel of a contribution.
+     * 
+     * @param idx the index of the contribution
+     * @param channelId the identifier of the channel
+     * @return the value of the specified channel
+     */
+    public double getLevel(int idx, int channelId) {
+        return fValues[idx * fChannelsNumber + channelId];
+    }
+
+    /**
+     * @return the number of stored contributions
+     */
+    public int getSize() {
+        return fSize;
+    }
+
+    /**
+     * Returns the last distance where the specified contribution is applied.
+     * 
+     * @param idx the index of the contribution
+     * @return the last distance of the contribution propagation
+     */
+    public int getStop(int idx) {
+        return fStops[idx];
+    }
+
+    double[] getValues() {
+        return fValues;
+    }
+
+    private int indexOf(int distance, int stop) {
+        int width = fIndexWidth;
+        if (distance >= width || stop >= width) {
+            return -1;
+        }
+        return fIndex[distance * width + stop] - 1;
+    }
+
+    /**
+     * @return <code>true</code> if there is no contributions in this object
+     */
+    public boolean isEmpty() {
+        return fSize == 0;
+    }
+
+    private void resizeIndex(int width) {
+        fIndexWidth = width;
+        fIndex = new int[width * width];
+        for (int i = 0; i < fSize; i++) {
+            fIndex[fDistances[i] * width + fStops[i]] = i + 1;
+        }
+    }
+
+    /**
+     * Subtracts all contributions of the given object from this one.
+     * Contributions which are not in this object are added with negated
+     * values. Results could differ from the sum of the remaining
+     * contributions by rounding errors.
+     * 
+     * @param contributions the contributions to subtract
+     */
+    public void subtract(ScoreContributions contributions) {
+        for (int i = 0; i < contributions.fSize; i++) {
+            add(
+                contributions.fDistances[i],
+                contributions.fStops[i],
+                contributions.fValues,
+                i * fChannelsNumber,
+                -1);
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("[");
+        for (int i = 0; i < fSize; i++) {
+            if (i > 0) {
+                buf.append(",");
+            }
+            buf.append("{distance=").append(fDistances[i]);
+            buf.append(",stop=").append(fStops[i]);
+            for (int j = 0; j < fChannelsNumber; j++) {
+                buf.append(",").append(getLevel(i, j));
+            }
+            buf.append("}");
+        }
+        buf.append("]");
+        return buf.toString();
+    }
+}
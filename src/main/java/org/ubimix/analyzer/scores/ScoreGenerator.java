@@ -96,6 +96,17 @@ public class ScoreGenerator<T> {
             return fFullScore;
         }
 
+        /**
+         * Returns the value of the specified channel of the full score of this
+         * node.
+         * 
+         * @param channelId the identifier of the channel
+         * @return the value of the specified channel of the full score
+         */
+        public double getFullScoreLevel(int channelId) {
+            return fFullScore.getLevel(channelId);
+        }
+
         /**
          * The own score of this tag. This score is defined mostly by text
          * blocks contained directly in this tag.
@@ -180,11 +191,11 @@ public class ScoreGenerator<T> {
         @Override
         public String toString() {
             StringBuilder buf = new StringBuilder();
-            append(buf, "tagPos", fTagPos);
-            append(buf, "weight", fWeight);
-            append(buf, "cumulatedWeight", fCumulatedWeight);
-            append(buf, "ownScore", fOwnScore);
-            append(buf, "fullScore", fFullScore);
+            append(buf, "tagPos", getTagPos());
+            append(buf, "weight", getWeight());
+            append(buf, "cumulatedWeight", getCumulatedWeight());
+            append(buf, "ownScore", getOwnScore());
+            append(buf, "fullScore", getFullScore());
             buf.insert(0, "{");
             buf.append("\n}");
             return buf.toString();
@@ -196,14 +207,81 @@ public class ScoreGenerator<T> {
         return str == null || "".equals(str.trim());
     }
 
+    /**
+     * If this flag is <code>true</code> then scores of closed tags are not
+     * propagated directly to all parents but deferred in
+     * {@link ScoreContributions} of open tags.
+     */
+    private boolean fBufferedPropagation;
+
     private IChannelsManager fChannelsManager;
 
+    /**
+     * The text score detector if it accepts character sequences and arrays
+     */
+    private ICharTextScoreDetector fCharTextScoreDetector;
+
+    /**
+     * Pending contributions of open tags by their depth; used only with the
+     * buffered propagation.
+     */
+    private ScoreContributions[] fContributions;
+
+    /**
+     * Temporary buffers used by the buffered propagation
+     */
+    private double[] fDelta;
+
+    private double[] fFull;
+
+    /**
+     * Listeners notified about closed tags
+     */
+    private ITagListener<T>[] fListeners;
+
     private Channels fMaxScore;
 
+    /**
+     * Statistics of the current document; this object exists only when a
+     * metrics listener is set.
+     */
+    private ScoringMetrics fMetrics;
+
+    private IScoringMetricsListener fMetricsListener;
+
     private int fNodeNumber;
 
+    /**
+     * The delta propagated by the direct propagation; it is re-used for all
+     * tags
+     */
+    private Channels fPropagatedDelta;
+
+    /**
+     * Contributions propagated by top-level tags outside of this generator;
+     * used only with the buffered propagation.
+     */
+    private ScoreContributions fRootContributions;
+
+    /**
+     * The cumulated weight of the virtual parent of top-level tags.
+     */
+    private Channels fRootCumulatedWeight;
+
+    private ScorePropagator fScorePropagator;
+
     private IScoreReductionProvider fScoreReductionProvider;
 
+    /**
+     * The tag score detector if it resolves identifiers of tag names
+     */
+    private ITagIdScoreDetector<T> fTagIdScoreDetector;
+
+    /**
+     * The tag weight detector if it accepts identifiers of tag names
+     */
+    private ITagIdWeightDetector<T> fTagIdWeightDetector;
+
     private List<TagInfo<T>> fTagInfoStack = new ArrayList<TagInfo<T>>();
 
     private ITagScoreDetector<T> fTagScoreDetector;
@@ -212,6 +290,7 @@ public class ScoreGenerator<T> {
 
     private ITextScoreDetector fTextScoreDetector;
 
+    @SuppressWarnings("unchecked")
     public ScoreGenerator(
         IChannelsManager channelsManager,
         ITagScoreDetector<T> tagScoreDetector,
@@ -223,24 +302,90 @@ public class ScoreGenerator<T> {
         fTagWeightDetector = tagWeightDetector;
         fTextScoreDetector = textScoreDetector;
         fScoreReductionProvider = scoreReductionProvider;
+        if (textScoreDetector instanceof ICharTextScoreDetector) {
+            fCharTextScoreDetector = (ICharTextScoreDetector) textScoreDetector;
+        }
+        if (tagScoreDetector instanceof ITagIdScoreDetector<?>) {
+            fTagIdScoreDetector = (ITagIdScoreDetector<T>) tagScoreDetector;
+            if (tagWeightDetector instanceof ITagIdWeightDetector<?>) {
+                fTagIdWeightDetector = (ITagIdWeightDetector<T>) tagWeightDetector;
+            }
+        }
         fMaxScore = fChannelsManager.newChannels(0);
         fNodeNumber = 0;
     }
 
+    /**
+     * Adds the given contributions to the pending contributions of the
+     * currently open tag. This method is used to merge scores propagated from
+     * tags analyzed by another generator (see {@link #getRootContributions()}
+     * ). It should be used only with the buffered propagation.
+     * 
+     * @param contributions the contributions to add
+     */
+    public void addContributions(ScoreContributions contributions) {
+        if (!fBufferedPropagation) {
+            throw new IllegalStateException(
+                "Contributions could be merged only with the buffered propagation.");
+        }
+        ScoreContributions pending = getScoreContributions(getDepth());
+        pending.add(contributions);
+    }
+
+    /**
+     * Adds a new listener notified about all closed tags.
+     * 
+     * @param listener the listener to add
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void addTagListener(ITagListener<T> listener) {
+        int len = fListeners != null ? fListeners.length : 0;
+        ITagListener<T>[] array = new ITagListener[len + 1];
+        if (len > 0) {
+            System.arraycopy(fListeners, 0, array, 0, len);
+        }
+        array[len] = listener;
+        fListeners = array;
+    }
+
+    /**
+     * Adds the given text score to the own score of the currently open tag.
+     * 
+     * @param score the score of a text
+     */
+    protected void addTextScore(Channels score) {
+        TagInfo<T> tagInfo = peek();
+        Channels ownScore = tagInfo.getOwnScore();
+        ownScore.add(score);
+    }
+
     public TagInfo<T> beginTag(T tag) {
+        long time = 0;
+        if (fMetrics != null) {
+            time = fMetrics.beginTag(getDepth() + 1);
+        }
         TagInfo<T> tagInfo = newTagInfo(tag);
 
-        Channels score = fTagScoreDetector.getTagScore(tag);
+        int tagId = getTagId(tag);
+        Channels score = getTagScore(tag, tagId);
         tagInfo.setOwnScore(score);
 
-        Channels tagWeight = fTagWeightDetector.getTagWeight(tag);
+        Channels tagWeight = getTagWeight(tag, tagId);
         tagInfo.setTagWeight(tagWeight);
+        if (fMetrics != null) {
+            fMetrics.endTagDetectors(time);
+        }
 
-        Channels cumulatedWeight = tagWeight.getCopy();
         TagInfo<T> parentInfo = peek();
-        if (parentInfo != null) {
-            Channels parentCumulatedWeight = parentInfo.getCumulatedWeight();
-            cumulatedWeight.multiply(parentCumulatedWeight);
+        Channels parentCumulatedWeight = parentInfo != null ? parentInfo
+            .getCumulatedWeight() : fRootCumulatedWeight;
+        Channels cumulatedWeight;
+        if (parentCumulatedWeight != null) {
+            cumulatedWeight = fChannelsManager.newChannels(0).setProduct(
+                tagWeight,
+                parentCumulatedWeight);
+        } else {
+            cumulatedWeight = tagWeight.getCopy();
         }
         tagInfo.setCumulatedWeight(cumulatedWeight);
 
@@ -255,33 +400,25 @@ public class ScoreGenerator<T> {
 
     public TagInfo<T> endTag() {
         TagInfo<T> tagScore = peek();
-        Channels delta = tagScore.getOwnScore();
-        delta = delta.getCopy();
-
-        Channels cumulatedWeight = tagScore.getCumulatedWeight();
-        delta.multiply(cumulatedWeight);
-
-        int distance = 0;
-        for (int i = fTagInfoStack.size() - 1; i >= 0; i--) {
-            TagInfo<T> container = fTagInfoStack.get(i);
-            Channels distanceReduction = fScoreReductionProvider
-                .getScoreReduction(distance);
-            if (distanceReduction == null) {
-                break;
-            }
-            delta.multiply(distanceReduction);
-            Channels score = container.getFullScore();
-            score.add(delta);
-            if (delta.checkValuesInRange(0, 1)) {
-                break;
-            }
-            distance++;
+        long time = fMetrics != null ? fMetrics.startPropagation() : 0;
+        int steps;
+        if (fBufferedPropagation) {
+            steps = propagateBuffered(tagScore);
+        } else {
+            steps = propagate(tagScore);
         }
 
         Channels channels = tagScore.getFullScore();
         fMaxScore.max(channels);
 
         pop();
+        if (fMetrics != null) {
+            fMetrics.endTag(steps, time);
+        }
+        notifyListeners(tagScore);
+        if (fMetrics != null && fTagInfoStack.isEmpty()) {
+            notifyMetricsListener();
+        }
         return tagScore;
     }
 
@@ -295,19 +432,272 @@ public class ScoreGenerator<T> {
         return fChannelsManager;
     }
 
+    /**
+     * @return information about the currently open tag or <code>null</code>
+     *         if there is no open tags
+     */
+    public TagInfo<T> getCurrentTagInfo() {
+        return peek();
+    }
+
+    /**
+     * @return the depth of the currently open tag or -1 if there is no open
+     *         tags
+     */
+    protected int getDepth() {
+        return fTagInfoStack.size() - 1;
+    }
+
     public Channels getMaxScore() {
         return fMaxScore;
     }
 
+    /**
+     * @return statistics of the current document or <code>null</code> if
+     *         there is no metrics listener
+     */
+    protected ScoringMetrics getMetrics() {
+        return fMetrics;
+    }
+
+    /**
+     * Returns pending contributions of the parent of the tag on the specified
+     * depth. For top-level tags this method returns the root contributions.
+     * 
+     * @param depth the depth of the tag in the stack
+     * @return pending contributions of the parent tag
+     */
+    protected ScoreContributions getParentContributions(int depth) {
+        return depth > 0
+            ? getScoreContributions(depth - 1)
+            : getRootContributions();
+    }
+
+    /**
+     * Returns contributions propagated by top-level tags further than this
+     * generator. These contributions are not empty when this generator
+     * analyzes a subtree of a bigger document with the buffered propagation.
+     * They should be added to the pending contributions of the parent of the
+     * subtree with the {@link #addContributions(ScoreContributions)} method.
+     * 
+     * @return contributions propagated by top-level tags
+     */
+    public ScoreContributions getRootContributions() {
+        if (fRootContributions == null) {
+            fRootContributions = new ScoreContributions(
+                fChannelsManager.getChannelsNumber());
+        }
+        return fRootContributions;
+    }
+
+    /**
+     * @return the cumulated weight of the virtual parent of top-level tags; it
+     *         could be <code>null</code>
+     */
+    public Channels getRootCumulatedWeight() {
+        return fRootCumulatedWeight;
+    }
+
+    /**
+     * Returns pending contributions of the open tag on the specified depth.
+     * 
+     * @param depth the depth of the tag in the stack
+     * @return pending contributions of the tag
+     */
+    protected ScoreContributions getScoreContributions(int depth) {
+        if (fContributions == null) {
+            fContributions = new ScoreContributions[Math.max(depth + 1, 32)];
+        } else if (depth >= fContributions.length) {
+            ScoreContributions[] array = new ScoreContributions[Math.max(
+                depth + 1,
+                fContributions.length * 2)];
+            System.arraycopy(
+                fContributions,
+                0,
+                array,
+                0,
+                fContributions.length);
+            fContributions = array;
+        }
+        ScoreContributions result = fContributions[depth];
+        if (result == null) {
+            result = new ScoreContributions(
+                fChannelsManager.getChannelsNumber());
+            fContributions[depth] = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the object used to propagate scores with the buffered
+     *         propagation
+     */
+    protected ScorePropagator getScorePropagator() {
+        if (fScorePropagator == null) {
+            fScorePropagator = new ScorePropagator(
+                fChannelsManager.getChannelsNumber(),
+                fScoreReductionProvider);
+        }
+        return fScorePropagator;
+    }
+
+    /**
+     * @return the provider of score reduction factors used to propagate scores
+     *         from tags to their parents
+     */
+    protected IScoreReductionProvider getScoreReductionProvider() {
+        return fScoreReductionProvider;
+    }
+
+    /**
+     * Returns the identifier of the name of the specified tag. This
+     * identifier is resolved once per tag and passed to the
+     * {@link #getTagScore(Object, int)} and {@link #getTagWeight(Object, int)}
+     * methods.
+     * 
+     * @param tag the tag
+     * @return the identifier of the tag name or a negative value if the tag
+     *         score detector does not resolve identifiers
+     */
+    protected int getTagId(T tag) {
+        return fTagIdScoreDetector != null
+            ? fTagIdScoreDetector.getTagId(tag)
+            : -1;
+    }
+
+    /**
+     * Returns the initial score of the specified tag.
+     * 
+     * @param tag the tag
+     * @param tagId the identifier of the tag name returned by the
+     *        {@link #getTagId(Object)} method
+     * @return the initial score of the tag
+     */
+    protected Channels getTagScore(T tag, int tagId) {
+        return fTagIdScoreDetector != null ? fTagIdScoreDetector.getTagScore(
+            tag,
+            tagId) : fTagScoreDetector.getTagScore(tag);
+    }
+
+    /**
+     * @return the detector of initial tag scores
+     */
+    protected ITagScoreDetector<T> getTagScoreDetector() {
+        return fTagScoreDetector;
+    }
+
+    /**
+     * Returns the weight of the specified tag.
+     * 
+     * @param tag the tag
+     * @param tagId the identifier of the tag name returned by the
+     *        {@link #getTagId(Object)} method
+     * @return the weight of the tag
+     */
+    protected Channels getTagWeight(T tag, int tagId) {
+        return fTagIdWeightDetector != null ? fTagIdWeightDetector
+            .getTagWeight(tag, tagId) : fTagWeightDetector.getTagWeight(tag);
+    }
+
+    /**
+     * @return the detector of tag weights
+     */
+    protected ITagWeightDetector<T> getTagWeightDetector() {
+        return fTagWeightDetector;
+    }
+
+    /**
+     * @return the detector of text scores
+     */
+    protected ITextScoreDetector getTextScoreDetector() {
+        return fTextScoreDetector;
+    }
+
+    /**
+     * Returns <code>true</code> if scores of closed tags are deferred in
+     * pending contributions of parent tags instead of being added directly to
+     * all parents.
+     * 
+     * @return <code>true</code> if the buffered propagation is used
+     * @see #setBufferedPropagation(boolean)
+     */
+    public boolean isBufferedPropagation() {
+        return fBufferedPropagation;
+    }
+
     protected TagInfo<T> newTagInfo(T tag) {
         return new TagInfo<T>(tag);
     }
 
+    /**
+     * Notifies the metrics listener about the finished document and resets
+     * the statistics. This method should be called only when a metrics
+     * listener is set.
+     */
+    protected void notifyMetricsListener() {
+        fMetrics.finish();
+        fMetricsListener.onDocumentScored(fMetrics);
+        fMetrics.reset();
+    }
+
+    /**
+     * Notifies all registered listeners about the specified closed tag.
+     * 
+     * @param tagInfo the closed tag
+     */
+    protected void notifyListeners(TagInfo<T> tagInfo) {
+        if (fListeners != null) {
+            for (ITagListener<T> listener : fListeners) {
+                listener.onEndTag(tagInfo);
+            }
+        }
+    }
+
+    /**
+     * Adds the score of the text from the specified buffer to the currently
+     * open tag. The buffer is not used after this call, so it could be
+     * re-used by the caller.
+     * 
+     * @param buf the buffer containing the text
+     * @param start the position of the first character of the text
+     * @param len the length of the text
+     */
+    public void onText(char[] buf, int start, int len) {
+        long time = fMetrics != null ? fMetrics.onText(len) : 0;
+        Channels score = fCharTextScoreDetector != null
+            ? fCharTextScoreDetector.getTextScore(buf, start, len)
+            : fTextScoreDetector.getTextScore(new String(buf, start, len));
+        if (fMetrics != null) {
+            fMetrics.endTextDetector(time);
+        }
+        addTextScore(score);
+    }
+
+    /**
+     * Adds the score of the given text to the currently open tag. The text is
+     * not used after this call, so mutable sequences (like
+     * {@link StringBuilder}) could be re-used by the caller.
+     * 
+     * @param content the text to add
+     */
+    public void onText(CharSequence content) {
+        long time = fMetrics != null ? fMetrics.onText(content.length()) : 0;
+        Channels score = fCharTextScoreDetector != null
+            ? fCharTextScoreDetector.getTextScore(content)
+            : fTextScoreDetector.getTextScore(content.toString());
+        if (fMetrics != null) {
+            fMetrics.endTextDetector(time);
+        }
+        addTextScore(score);
+    }
+
     public void onText(String content) {
-        Channels weight = fTextScoreDetector.getTextScore(content);
-        TagInfo<T> tagInfo = peek();
-        Channels score = tagInfo.getOwnScore();
-        score.add(weight);
+        long time = fMetrics != null ? fMetrics.onText(content.length()) : 0;
+        Channels score = fTextScoreDetector.getTextScore(content);
+        if (fMetrics != null) {
+            fMetrics.endTextDetector(time);
+        }
+        addTextScore(score);
     }
 
     private TagInfo<T> peek() {
@@ -315,6 +705,79 @@ public class ScoreGenerator<T> {
             .size() - 1) : null;
     }
 
+    /**
+     * Adds the score of the specified closed tag to the full scores of this tag
+     * and all its parents. The propagation stops when the reduced score on all
+     * channels is in the [0..1] range.
+     * 
+     * @param tagScore the closed tag
+     * @return the number of updated full scores
+     */
+    private int propagate(TagInfo<T> tagScore) {
+        if (fPropagatedDelta == null) {
+            fPropagatedDelta = fChannelsManager.newChannels(0);
+        }
+        Channels delta = fPropagatedDelta.setProduct(
+            tagScore.getOwnScore(),
+            tagScore.getCumulatedWeight());
+
+        int distance = 0;
+        int steps = 0;
+        for (int i = fTagInfoStack.size() - 1; i >= 0; i--) {
+            TagInfo<T> container = fTagInfoStack.get(i);
+            Channels distanceReduction = fScoreReductionProvider
+                .getScoreReduction(distance);
+            if (distanceReduction == null) {
+                break;
+            }
+            delta.multiplyAndAddTo(distanceReduction, container.getFullScore());
+            steps++;
+            if (delta.checkValuesInRange(0, 1)) {
+                break;
+            }
+            distance++;
+        }
+        return steps;
+    }
+
+    /**
+     * Applies pending contributions of the specified closed tag to its full
+     * score and passes them to the pending contributions of the parent. The
+     * resulting full scores are the same as with {@link #propagate(TagInfo)}
+     * except the order of floating-point additions.
+     * 
+     * @param tagScore the closed tag
+     * @return the number of applied contributions
+     */
+    private int propagateBuffered(TagInfo<T> tagScore) {
+        int n = fChannelsManager.getChannelsNumber();
+        if (fDelta == null) {
+            fDelta = new double[n];
+            fFull = new double[n];
+        }
+        Channels ownScore = tagScore.getOwnScore();
+        Channels cumulatedWeight = tagScore.getCumulatedWeight();
+        Channels fullScore = tagScore.getFullScore();
+        for (int i = 0; i < n; i++) {
+            fDelta[i] = ownScore.getLevel(i) * cumulatedWeight.getLevel(i);
+            fFull[i] = fullScore.getLevel(i);
+        }
+        int depth = fTagInfoStack.size() - 1;
+        ScoreContributions pending = getScoreContributions(depth);
+        ScoreContributions parent = getParentContributions(depth);
+        int steps = getScorePropagator().propagate(
+            pending,
+            fDelta,
+            0,
+            fFull,
+            0,
+            parent);
+        for (int i = 0; i < n; i++) {
+            fullScore.setLevel(i, fFull[i]);
+        }
+        return steps;
+    }
+
     private TagInfo<T> pop() {
         TagInfo<T> result = null;
         if (!fTagInfoStack.isEmpty()) {
@@ -326,4 +789,166 @@ public class ScoreGenerator<T> {
     private void push(TagInfo<T> info) {
         fTagInfoStack.add(info);
     }
+
+    /**
+     * Removes the specified listener.
+     * 
+     * @param listener the listener to remove
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void removeTagListener(ITagListener<T> listener) {
+        int len = fListeners != null ? fListeners.length : 0;
+        for (int i = 0; i < len; i++) {
+            if (fListeners[i] == listener) {
+                if (len == 1) {
+                    fListeners = null;
+                } else {
+                    ITagListener<T>[] array = new ITagListener[len - 1];
+                    System.arraycopy(fListeners, 0, array, 0, i);
+                    System.arraycopy(fListeners, i + 1, array, i, len - i - 1);
+                    fListeners = array;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Replaces pending contributions of the currently open tag (or the root
+     * contributions if there is no open tags) and returns the replaced object.
+     * This method is used to capture contributions propagated out of a
+     * subtree: an empty object is set before the subtree root is opened; when
+     * the root is closed the previous object is restored and the captured
+     * contributions are merged with the
+     * {@link #addContributions(ScoreContributions)} method. It should be used
+     * only with the buffered propagation.
+     * 
+     * @param contributions new pending contributions
+     * @return the replaced contributions
+     */
+    public ScoreContributions replaceContributions(
+        ScoreContributions contributions) {
+        if (!fBufferedPropagation) {
+            throw new IllegalStateException(
+                "Contributions could be replaced only with the buffered propagation.");
+        }
+        ScoreContributions result;
+        int depth = getDepth();
+        if (depth >= 0) {
+            result = getScoreContributions(depth);
+            fContributions[depth] = contributions;
+        } else {
+            result = getRootContributions();
+            fRootContributions = contributions;
+        }
+        return result;
+    }
+
+    /**
+     * Resets the internal state of this generator, so it could be re-used to
+     * analyze a new document. Registered listeners, the propagation mode and
+     * the root cumulated weight are kept.
+     */
+    public void reset() {
+        fTagInfoStack.clear();
+        fNodeNumber = 0;
+        if (fMetrics != null) {
+            fMetrics.reset();
+        }
+        fMaxScore = fChannelsManager.newChannels(0);
+        if (fContributions != null) {
+            for (ScoreContributions contributions : fContributions) {
+                if (contributions != null) {
+                    contributions.clear();
+                }
+            }
+        }
+        if (fRootContributions != null) {
+            fRootContributions.clear();
+        }
+    }
+
+    /**
+     * Sets the listener notified about statistics of scored documents. A
+     * document is finished when its top-level tag is closed. Statistics are
+     * not collected when there is no listener. Durations of scoring phases
+     * are not measured.
+     * 
+     * @param listener the listener to set; it could be <code>null</code>
+     */
+    public void setMetricsListener(IScoringMetricsListener listener) {
+        setMetricsListener(listener, false);
+    }
+
+    /**
+     * Sets the listener notified about statistics of scored documents. If the
+     * listener implements the {@link IScoringPhaseListener} interface then
+     * it is also notified when documents and timed phases start and end.
+     * 
+     * @param listener the listener to set; it could be <code>null</code>
+     * @param timePhases if this flag is <code>true</code> then durations of
+     *        scoring phases are measured (see {@link ScoringMetrics})
+     */
+    public void setMetricsListener(
+        IScoringMetricsListener listener,
+        boolean timePhases) {
+        if (fMetrics != null) {
+            // Stops counting allocations of an unfinished document
+            fMetrics.reset();
+        }
+        fMetricsListener = listener;
+        fMetrics = listener != null ? new ScoringMetrics(
+            timePhases,
+            listener) : null;
+    }
+
+    /**
+     * Sets the cumulated weight of the virtual parent of top-level tags. This
+     * method is used when this generator analyzes only a subtree of a
+     * document; in this case the given value should be the cumulated weight of
+     * the parent of the subtree.
+     * 
+     * @param cumulatedWeight the cumulated weight of the subtree parent
+     */
+    public void setRootCumulatedWeight(Channels cumulatedWeight) {
+        fRootCumulatedWeight = cumulatedWeight;
+    }
+
+    /**
+     * Sets the propagation mode of this generator. With the buffered
+     * propagation scores of closed tags are not added directly to all parents.
+     * Instead each open tag accumulates pending contributions of its children
+     * grouped by their distances and passes them to its parent when it is
+     * closed. So the propagation cost is proportional to the number of tags
+     * and does not depend on the document depth. This mode should be set
+     * before the first tag is opened.
+     * 
+     * @param bufferedPropagation <code>true</code> to use the buffered
+     *        propagation
+     */
+    public void setBufferedPropagation(boolean bufferedPropagation) {
+        fBufferedPropagation = bufferedPropagation;
+    }
+
+    /**
+     * Reserves positions for the specified number of tags. This method is
+     * used when some tags are analyzed by another generator, so positions of
+     * all following tags stay the same as in the full document.
+     * 
+     * @param count the number of tags to skip
+     */
+    public void skipTags(int count) {
+        fNodeNumber += count;
+    }
+
+    /**
+     * Updates maximal full scores with the given values. This method is used
+     * when some tags are not closed by this generator (see
+     * {@link #skipTags(int)}) but their scores are known.
+     * 
+     * @param score full scores to take into account
+     */
+    public void updateMaxScore(Channels score) {
+        fMaxScore.max(score);
+    }
 }
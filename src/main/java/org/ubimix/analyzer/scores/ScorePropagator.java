@@ -0,0 +1,174 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores;
+
+/**
+ * This object propagates tag scores to parent tags using score reduction
+ * factors defined by an {@link IScoreReductionProvider}. Reduction factors are
+ * copied in a flat array, so they are not requested from the provider for each
+ * tag.
+ * <p>
+ * Instead of walking up through all parents when a tag is closed this object
+ * can defer propagation. Each open tag keeps its own
+ * {@link ScoreContributions} object. When a tag is closed its contributions
+ * (including the own score of the tag) are applied to the tag itself and
+ * passed to the contributions of the parent tag. So each contribution is
+ * handled only once on each level and the cost of propagation does not depend
+ * on the depth of the document.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ScorePropagator {
+
+    /**
+     * The number of channels
+     */
+    private final int fChannelsNumber;
+
+    /**
+     * Reduction factors by distances and by channels.
+     */
+    private final double[] fReductions;
+
+    /**
+     * The number of distances with defined reduction factors.
+     */
+    private final int fReductionsNumber;
+
+    /**
+     * Temporary buffer used to detect where the propagation stops.
+     */
+    private final double[] fTmp;
+
+    /**
+     * @param channelsNumber the number of channels
+     * @param provider the provider of score reduction factors
+     */
+    public ScorePropagator(int channelsNumber, IScoreReductionProvider provider) {
+        fChannelsNumber = channelsNumber;
+        fTmp = new double[channelsNumber];
+        int count = 0;
+        while (provider.getScoreReduction(count) != null) {
+            count++;
+        }
+        fReductionsNumber = count;
+        fReductions = new double[count * channelsNumber];
+        for (int i = 0; i < count; i++) {
+            Channels reduction = provider.getScoreReduction(i);
+            int pos = i * channelsNumber;
+            for (int j = 0; j < channelsNumber; j++) {
+                fReductions[pos + j] = reduction.getLevel(j);
+            }
+        }
+    }
+
+    /**
+     * @return the number of channels
+     */
+    public int getChannelsNumber() {
+        return fChannelsNumber;
+    }
+
+    /**
+     * Returns the reduction factor of the specified channel at the given
+     * distance.
+     * 
+     * @param distance the distance from the original tag
+     * @param channelId the identifier of the channel
+     * @return the reduction factor
+     */
+    public double getReduction(int distance, int channelId) {
+        return fReductions[distance * fChannelsNumber + channelId];
+    }
+
+    /**
+     * @return the number of distances with defined reduction factors; scores
+     *         are never propagated further than this distance
+     */
+    public int getReductionsNumber() {
+        return fReductionsNumber;
+    }
+
+    /**
+     * Returns the last distance where the given score is still propagated. The
+     * propagation stops when all channels of the reduced score are in the
+     * [0..1] range or when there is no reduction factors for the next
+     * distance.
+     * 
+     * @param delta the score to propagate
+     * @param offset the position of the first channel in the given array
+     * @return the last distance where the given score is propagated or -1 if
+     *         scores are not propagated at all
+     */
+    public int getStopDistance(double[] delta, int offset) {
+        int n = fChannelsNumber;
+        System.arraycopy(delta, offset, fTmp, 0, n);
+        for (int distance = 0; distance < fReductionsNumber; distance++) {
+            int reduction = distance * n;
+            boolean inRange = true;
+            for (int i = 0; i < n; i++) {
+                double value = fTmp[i] * fReductions[reduction + i];
+                fTmp[i] = value;
+                inRange &= value >= 0 && value <= 1;
+            }
+            if (inRange) {
+                return distance;
+            }
+        }
+        return fReductionsNumber - 1;
+    }
+
+    /**
+     * Propagates the score of a closed tag. This method adds the given delta
+     * to the pending contributions of the tag, applies all these
+     * contributions to the full score of the tag and passes the rest to the
+     * contributions of the parent. The pending contributions of the tag are
+     * cleared.
+     * 
+     * @param pending pending contributions of the closed tag
+     * @param delta the own score of the tag multiplied by its cumulated weight
+     * @param deltaOffset the position of the first channel of the delta
+     * @param full the array containing the full score of the closed tag
+     * @param fullOffset the position of the first channel of the full score
+     * @param parent contributions of the parent tag; it could be
+     *        <code>null</code> if the closed tag has no parents
+     * @return the number of contributions applied to the full score
+     */
+    public int propagate(
+        ScoreContributions pending,
+        double[] delta,
+        int deltaOffset,
+        double[] full,
+        int fullOffset,
+        ScoreContributions parent) {
+        int stop = getStopDistance(delta, deltaOffset);
+        if (stop >= 0) {
+            pending.add(0, stop, delta, deltaOffset);
+        }
+        int n = fChannelsNumber;
+        int size = pending.getSize();
+        for (int idx = 0; idx < size; idx++) {
+            double[] values = pending.getValues();
+            int distance = pending.getDistance(idx);
+            int pos = idx * n;
+            int reduction = distance * n;
+            for (int i = 0; i < n; i++) {
+                double value = values[pos + i] * fReductions[reduction + i];
+                values[pos + i] = value;
+                full[fullOffset + i] += value;
+            }
+            int last = pending.getStop(idx);
+            if (parent != null && distance < last) {
+                parent.add(distance + 1, last, values, pos);
+            }
+        }
+        pending.clear();
+        return size;
+    }
+
+}
@@ -0,0 +1,401 @@
+package org.ubimix.analyzer.scores;
+
+/**
+ * Statistics of one scored document. Objects of this type are filled by
+ * {@link ScoreGenerator}s only when a metrics listener is set (see
+ * {@link ScoreGenerator#setMetricsListener(IScoringMetricsListener)}).
+ * <p>
+ * The number of allocated {@link Channels} counts all objects created by the
+ * scoring thread between the opening of the first tag and the closing of the
+ * last one: by the generator, by detectors and by tag listeners. Objects are
+ * counted only while documents are scored with a metrics listener, so
+ * generators without listeners do not pay for it. Propagation steps are
+ * updates of full scores of tags: with the direct propagation each closed tag
+ * updates its own full score and the full scores of some of its ancestors;
+ * with the buffered propagation each closed tag applies its pending
+ * contributions.
+ * </p>
+ * <p>
+ * Durations of scoring phases are measured only if it is requested (see
+ * {@link ScoreGenerator#setMetricsListener(IScoringMetricsListener, boolean)}
+ * ), because it requires reading the system timer around each detector call.
+ * The traversal time is the rest of the document duration: the time spent
+ * by the caller to visit the document, by the generator itself and by tag
+ * listeners.
+ * </p>
+ * <p>
+ * Listeners implementing the {@link IScoringPhaseListener} interface are
+ * also notified when the document and each timed phase start and end.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ScoringMetrics {
+
+    /**
+     * Timed scoring phases
+     */
+    public enum Phase {
+
+        /**
+         * Updates of full scores of tags when a tag is closed
+         */
+        PROPAGATION("propagation"),
+
+        /**
+         * Calls of tag score and tag weight detectors for an open tag
+         */
+        TAG_DETECTORS("tagDetectors"),
+
+        /**
+         * A call of the text score detector
+         */
+        TEXT_DETECTOR("textDetector");
+
+        private final String fName;
+
+        private Phase(String name) {
+            fName = name;
+        }
+
+        /**
+         * @return the name of this phase used in reports
+         */
+        public String getName() {
+            return fName;
+        }
+
+        @Override
+        public String toString() {
+            return fName;
+        }
+    }
+
+    private long fAllocatedChannels;
+
+    /**
+     * The number of {@link Channels} created by the current thread when the
+     * document was started; it is -1 if objects are not counted
+     */
+    private long fChannelsCountStart = -1;
+
+    private long fDuration;
+
+    /**
+     * The state of the document kept by the phase listener
+     */
+    private Object fListenerState;
+
+    private int fMaxDepth;
+
+    /**
+     * The listener notified about documents and phases; it is
+     * <code>null</code> if the metrics listener does not implement the
+     * {@link IScoringPhaseListener} interface.
+     */
+    private final IScoringPhaseListener fPhaseListener;
+
+    /**
+     * This flag is <code>true</code> if durations of phases are measured
+     */
+    private final boolean fPhasesTimed;
+
+    private long fPropagationSteps;
+
+    private long fPropagationTime;
+
+    /**
+     * The time when the first tag of the document was opened
+     */
+    private long fStart;
+
+    private long fTagDetectorsTime;
+
+    private int fTagsNumber;
+
+    private long fTextDetectorTime;
+
+    private long fTextLength;
+
+    /**
+     * @param phasesTimed if this flag is <code>true</code> then durations of
+     *        scoring phases are measured
+     * @param listener the metrics listener; it is notified about documents
+     *        and phases if it is an {@link IScoringPhaseListener}
+     */
+    ScoringMetrics(boolean phasesTimed, IScoringMetricsListener listener) {
+        fPhasesTimed = phasesTimed;
+        fPhaseListener = listener instanceof IScoringPhaseListener
+            ? (IScoringPhaseListener) listener
+            : null;
+    }
+
+    /**
+     * Updates statistics for a new open tag.
+     * 
+     * @param depth the depth of the tag; top-level tags have the depth 0
+     * @return the start of the tag detectors phase (see
+     *         {@link #startPhase(Phase)})
+     */
+    long beginTag(int depth) {
+        if (fTagsNumber == 0) {
+            if (fPhaseListener != null) {
+                fPhaseListener.onDocumentStarted(this);
+            }
+            ChannelsCounter.start();
+            fChannelsCountStart = ChannelsCounter.getCount();
+            fStart = System.nanoTime();
+        }
+        fTagsNumber++;
+        if (fMaxDepth < depth + 1) {
+            fMaxDepth = depth + 1;
+        }
+        return startPhase(Phase.TAG_DETECTORS);
+    }
+
+    /**
+     * Ends a timed phase and notifies the phase listener.
+     * 
+     * @param phase the finished phase
+     * @param start the start of the phase returned by
+     *        {@link #startPhase(Phase)}
+     * @return the duration of the phase
+     */
+    private long endPhase(Phase phase, long start) {
+        long duration = System.nanoTime() - start;
+        if (fPhaseListener != null) {
+            fPhaseListener.onPhaseFinished(this, phase, duration);
+        }
+        return duration;
+    }
+
+    /**
+     * Updates statistics for a closed tag.
+     * 
+     * @param propagationSteps the number of propagation steps
+     * @param start the start of the propagation phase returned by
+     *        {@link #startPropagation()}
+     */
+    void endTag(int propagationSteps, long start) {
+        fPropagationSteps += propagationSteps;
+        if (fPhasesTimed) {
+            fPropagationTime += endPhase(Phase.PROPAGATION, start);
+        }
+    }
+
+    /**
+     * Ends calls of tag score and tag weight detectors.
+     * 
+     * @param start the value returned by {@link #beginTag(int, int)}
+     */
+    void endTagDetectors(long start) {
+        if (fPhasesTimed) {
+            fTagDetectorsTime += endPhase(Phase.TAG_DETECTORS, start);
+        }
+    }
+
+    /**
+     * Ends a call of the text score detector.
+     * 
+     * @param start the value returned by {@link #onText(int)}
+     */
+    void endTextDetector(long start) {
+        if (fPhasesTimed) {
+            fTextDetectorTime += endPhase(Phase.TEXT_DETECTOR, start);
+        }
+    }
+
+    /**
+     * Sets the duration of the document analysis.
+     */
+    void finish() {
+        fDuration = System.nanoTime() - fStart;
+        if (fChannelsCountStart >= 0) {
+            fAllocatedChannels = ChannelsCounter.getCount()
+                - fChannelsCountStart;
+        }
+    }
+
+    /**
+     * @return the number of {@link Channels} created while the document was
+     *         scored
+     */
+    public long getAllocatedChannels() {
+        return fAllocatedChannels;
+    }
+
+    /**
+     * @return the time between the opening of the first tag and the closing
+     *         of the last one in nanoseconds
+     */
+    public long getDuration() {
+        return fDuration;
+    }
+
+    /**
+     * @return the state of the document kept by the phase listener or
+     *         <code>null</code> if it was not set
+     */
+    public Object getListenerState() {
+        return fListenerState;
+    }
+
+    /**
+     * @return the maximal number of simultaneously open tags
+     */
+    public int getMaxDepth() {
+        return fMaxDepth;
+    }
+
+    /**
+     * @return the number of updates of full scores
+     */
+    public long getPropagationSteps() {
+        return fPropagationSteps;
+    }
+
+    /**
+     * @return the time spent to propagate scores in nanoseconds
+     */
+    public long getPropagationTime() {
+        return fPropagationTime;
+    }
+
+    /**
+     * @return the time spent in tag score and tag weight detectors in
+     *         nanoseconds
+     */
+    public long getTagDetectorsTime() {
+        return fTagDetectorsTime;
+    }
+
+    /**
+     * @return the number of scored tags
+     */
+    public int getTagsNumber() {
+        return fTagsNumber;
+    }
+
+    /**
+     * @return the time spent in the text score detector in nanoseconds
+     */
+    public long getTextDetectorTime() {
+        return fTextDetectorTime;
+    }
+
+    /**
+     * @return the number of characters in scored texts
+     */
+    public long getTextLength() {
+        return fTextLength;
+    }
+
+    /**
+     * @return the time spent out of detectors and of the propagation in
+     *         nanoseconds; it is 0 if durations of phases are not measured
+     */
+    public long getTraversalTime() {
+        if (!fPhasesTimed) {
+            return 0;
+        }
+        long time = fDuration
+            - fTagDetectorsTime
+            - fTextDetectorTime
+            - fPropagationTime;
+        return Math.max(time, 0);
+    }
+
+    /**
+     * @return <code>true</code> if durations of scoring phases are measured
+     */
+    public boolean isPhasesTimed() {
+        return fPhasesTimed;
+    }
+
+    /**
+     * Updates statistics for a new text.
+     * 
+     * @param len the length of the text
+     * @return the start of the text detector phase (see
+     *         {@link #startPhase(Phase)})
+     */
+    long onText(int len) {
+        fTextLength += len;
+        return startPhase(Phase.TEXT_DETECTOR);
+    }
+
+    /**
+     * Resets all statistics.
+     */
+    void reset() {
+        if (fChannelsCountStart >= 0) {
+            ChannelsCounter.stop();
+            fChannelsCountStart = -1;
+        }
+        fAllocatedChannels = 0;
+        fDuration = 0;
+        fListenerState = null;
+        fMaxDepth = 0;
+        fPropagationSteps = 0;
+        fPropagationTime = 0;
+        fStart = 0;
+        fTagDetectorsTime = 0;
+        fTagsNumber = 0;
+        fTextDetectorTime = 0;
+        fTextLength = 0;
+    }
+
+    /**
+     * Sets the state of the document kept by the phase listener, for example
+     * an event started with the document. The state is removed when the
+     * statistics are reset after the document is finished.
+     * 
+     * @param state the state to set
+     */
+    public void setListenerState(Object state) {
+        fListenerState = state;
+    }
+
+    /**
+     * Starts a timed phase and notifies the phase listener.
+     * 
+     * @param phase the started phase
+     * @return the current time or 0 if durations of phases are not measured
+     */
+    private long startPhase(Phase phase) {
+        if (!fPhasesTimed) {
+            return 0;
+        }
+        if (fPhaseListener != null) {
+            fPhaseListener.onPhaseStarted(this, phase);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts the propagation phase of a closed tag.
+     * 
+     * @return the current time or 0 if durations of phases are not measured
+     */
+    long startPropagation() {
+        return startPhase(Phase.PROPAGATION);
+    }
+
+    @Override
+    public String toString() {
+        return "{tags="
+            + fTagsNumber
+            + ", text="
+            + fTextLength
+            + ", maxDepth="
+            + fMaxDepth
+            + ", steps="
+            + fPropagationSteps
+            + ", channels="
+            + fAllocatedChannels
+            + ", duration="
+            + fDuration
+            + "}";
+    }
+
+}
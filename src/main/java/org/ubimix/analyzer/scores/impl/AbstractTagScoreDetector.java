@@ -5,15 +5,76 @@ package org.ubimix.analyzer.scores.impl;
 
 import java.util.Map;
 
+import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
-import org.ubimix.analyzer.scores.ITagScoreDetector;
+import org.ubimix.analyzer.scores.ITagIdScoreDetector;
 
 /**
  * @author kotelnikov
  */
 public abstract class AbstractTagScoreDetector<ITag>
     implements
-    ITagScoreDetector<ITag> {
+    ITagIdScoreDetector<ITag> {
+
+    /**
+     * An optional extension of tag info providers giving indexed access to
+     * tag attributes. Detectors prefer this interface to the
+     * {@link ITagInfoProvider#getTagAttributes(Object)} method, so the
+     * inspection of attributes does not create iterators and entries.
+     */
+    public interface ITagAttributesProvider<ITag>
+        extends
+        ITagInfoProvider<ITag> {
+
+        /**
+         * @param tag the tag
+         * @param index the index of an attribute in the range
+         *        [0..getAttributesNumber(tag)-1]
+         * @return the name of the attribute with the specified index
+         */
+        String getAttributeName(ITag tag, int index);
+
+        /**
+         * @param tag the tag
+         * @return the number of attributes of the given tag
+         */
+        int getAttributesNumber(ITag tag);
+
+        /**
+         * @param tag the tag
+         * @param index the index of an attribute in the range
+         *        [0..getAttributesNumber(tag)-1]
+         * @return the value of the attribute with the specified index
+         */
+        String getAttributeValue(ITag tag, int index);
+
+        /**
+         * @param tag the tag
+         * @param name the name of the attribute
+         * @return the value of the attribute with the specified name or
+         *         <code>null</code> if the tag has no such attribute
+         */
+        String getAttributeValue(ITag tag, String name);
+    }
+
+    /**
+     * An optional extension of tag info providers. Providers implementing
+     * this interface return identifiers of tag names in the
+     * {@link TagSymbols} dictionary, so detectors could use array-indexed
+     * tables instead of lookups by tag names.
+     */
+    public interface ITagIdProvider<ITag> extends ITagInfoProvider<ITag> {
+
+        /**
+         * Returns the identifier of the name of the given tag. This
+         * identifier should be the same as returned by the
+         * {@link TagSymbols#getTagId(String)} method for the tag name.
+         * 
+         * @param tag the tag
+         * @return the identifier of the tag name or {@link TagSymbols#UNKNOWN}
+         */
+        int getTagId(ITag tag);
+    }
 
     public interface ITagInfoProvider<ITag> {
 
@@ -22,8 +83,44 @@ public abstract class AbstractTagScoreDetector<ITag>
         String getTagName(ITag tag);
     }
 
+    /**
+     * Returns the given provider if it implements the
+     * {@link ITagAttributesProvider} interface; otherwise returns
+     * <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    static <ITag> ITagAttributesProvider<ITag> getTagAttributesProvider(
+        ITagInfoProvider<ITag> provider) {
+        return provider instanceof ITagAttributesProvider<?>
+            ? (ITagAttributesProvider<ITag>) provider
+            : null;
+    }
+
+    /**
+     * Returns the given provider if it implements the {@link ITagIdProvider}
+     * interface; otherwise returns <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    static <ITag> ITagIdProvider<ITag> getTagIdProvider(
+        ITagInfoProvider<ITag> provider) {
+        return provider instanceof ITagIdProvider<?>
+            ? (ITagIdProvider<ITag>) provider
+            : null;
+    }
+
     protected final IChannelsManager fChannelsManager;
 
+    /**
+     * The tag info provider if it gives indexed access to attributes or
+     * <code>null</code>
+     */
+    protected final ITagAttributesProvider<ITag> fTagAttributesProvider;
+
+    /**
+     * The tag info provider if it returns tag identifiers
+     */
+    private final ITagIdProvider<ITag> fTagIdProvider;
+
     protected final ITagInfoProvider<ITag> fTagInfoProvider;
 
     public AbstractTagScoreDetector(
@@ -31,6 +128,8 @@ public abstract class AbstractTagScoreDetector<ITag>
         ITagInfoProvider<ITag> provider) {
         fChannelsManager = channelsManager;
         fTagInfoProvider = provider;
+        fTagAttributesProvider = getTagAttributesProvider(provider);
+        fTagIdProvider = getTagIdProvider(provider);
     }
 
     public IChannelsManager getChannelsManager() {
@@ -41,6 +140,35 @@ public abstract class AbstractTagScoreDetector<ITag>
         return fTagInfoProvider.getTagAttributes(tag);
     }
 
+    /**
+     * Returns the identifier of the name of the specified tag in the
+     * {@link TagSymbols} dictionary.
+     * 
+     * @param tag the tag
+     * @return the identifier of the tag or {@link TagSymbols#UNKNOWN} if the
+     *         tag name is not in the dictionary or if the tag info provider
+     *         does not return tag identifiers
+     */
+    @Override
+    public int getTagId(ITag tag) {
+        return fTagIdProvider != null
+            ? fTagIdProvider.getTagId(tag)
+            : TagSymbols.UNKNOWN;
+    }
+
+    /**
+     * This method ignores the given identifier and returns the score
+     * calculated by the {@link #getTagScore(Object)} method. Subclasses using
+     * identifiers of tag names should overload it.
+     * 
+     * @see org.ubimix.analyzer.scores.ITagIdScoreDetector#getTagScore(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public Channels getTagScore(ITag tag, int tagId) {
+        return getTagScore(tag);
+    }
+
     protected String getTagName(ITag tag) {
         return fTagInfoProvider.getTagName(tag);
     }
@@ -0,0 +1,444 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.ubimix.analyzer.scores.ScoreGenerator;
+
+/**
+ * This engine scores a sequence of documents on a fixed number of worker
+ * threads. Each worker owns one score generator created by the factory; this
+ * generator is reset and re-used for all documents analyzed by the worker.
+ * The number of documents which are read from the source but which are not
+ * yet delivered to the result handler is limited, so big (or infinite)
+ * document sequences could be processed with a constant memory.
+ * <p>
+ * Workers are created by a {@link ThreadFactory}; the
+ * {@link #newVirtualThreadFactory()} method returns a factory of virtual
+ * threads when they are supported by the running JVM.
+ * </p>
+ * 
+ * @author kotelnikov
+ * @param <T> the type of tags
+ * @param <D> the type of documents
+ * @param <R> the type of results
+ */
+public class BatchScoringEngine<T, D, R> {
+
+    /**
+     * Scores individual documents.
+     * 
+     * @param <T> the type of tags
+     * @param <D> the type of documents
+     * @param <R> the type of results
+     */
+    public interface IDocumentScorer<T, D, R> {
+
+        /**
+         * Scores the given document and returns the result. The generator is
+         * reset before each call of this method.
+         * 
+         * @param document the document to score
+         * @param generator the generator owned by the current worker
+         * @return the result of the document analysis
+         * @throws Exception
+         */
+        R score(D document, ScoreGenerator<T> generator) throws Exception;
+
+    }
+
+    /**
+     * Receives results of the document analysis. Methods of this interface
+     * are never called concurrently.
+     * 
+     * @param <D> the type of documents
+     * @param <R> the type of results
+     */
+    public interface IResultHandler<D, R> {
+
+        /**
+         * This method is called when the analysis of a document failed.
+         * 
+         * @param index the position of the document in the source sequence
+         * @param document the document
+         * @param error the error thrown by the scorer
+         */
+        void onError(int index, D document, Throwable error);
+
+        /**
+         * This method is called when a document is successfully scored.
+         * 
+         * @param index the position of the document in the source sequence
+         * @param document the scored document
+         * @param result the result returned by the scorer
+         */
+        void onResult(int index, D document, R result);
+
+    }
+
+    /**
+     * A document with its position in the source sequence and the result of
+     * its analysis.
+     */
+    private static class Job<D, R> {
+
+        private final D fDocument;
+
+        private Throwable fError;
+
+        private final int fIndex;
+
+        private R fResult;
+
+        public Job(int index, D document) {
+            fIndex = index;
+            fDocument = document;
+        }
+
+    }
+
+    /**
+     * The state of one call of the {@link BatchScoringEngine#score} method.
+     */
+    private class Session {
+
+        /**
+         * This field contains the first exception thrown by the result handler
+         */
+        private RuntimeException fFailure;
+
+        private final IResultHandler<D, R> fHandler;
+
+        /**
+         * The index of the next document to deliver in the ordered mode
+         */
+        private int fNextIndex;
+
+        private final boolean fOrdered;
+
+        /**
+         * Scored documents waiting for the delivery in the ordered mode; the
+         * position of a job in this array is its index modulo the array size.
+         */
+        private final Job<D, R>[] fPending;
+
+        private final Semaphore fPermits;
+
+        private final BlockingQueue<Job<D, R>> fQueue;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Session(IResultHandler<D, R> handler, boolean ordered) {
+            fHandler = handler;
+            fOrdered = ordered;
+            fPermits = new Semaphore(fMaxInFlight);
+            fQueue = new ArrayBlockingQueue<Job<D, R>>(fMaxInFlight
+                + fGenerators.length);
+            fPending = ordered ? new Job[fMaxInFlight] : null;
+        }
+
+        private void deliver(Job<D, R> job) {
+            try {
+                if (fFailure == null) {
+                    if (job.fError != null) {
+                        fHandler
+                            .onError(job.fIndex, job.fDocument, job.fError);
+                    } else {
+                        fHandler.onResult(
+                            job.fIndex,
+                            job.fDocument,
+                            job.fResult);
+                    }
+                }
+            } catch (RuntimeException e) {
+                fFailure = e;
+            } finally {
+                fPermits.release();
+            }
+        }
+
+        public synchronized void onDone(Job<D, R> job) {
+            if (!fOrdered) {
+                deliver(job);
+            } else {
+                fPending[job.fIndex % fPending.length] = job;
+                while (true) {
+                    int pos = fNextIndex % fPending.length;
+                    Job<D, R> next = fPending[pos];
+                    if (next == null) {
+                        break;
+                    }
+                    fPending[pos] = null;
+                    fNextIndex++;
+                    deliver(next);
+                }
+            }
+        }
+
+        public synchronized boolean isFailed() {
+            return fFailure != null;
+        }
+
+    }
+
+    /**
+     * Reads jobs from the session queue and scores them using the generator
+     * of this worker.
+     */
+    private class Worker implements Runnable {
+
+        private final CountDownLatch fDone;
+
+        private final int fId;
+
+        private final Session fSession;
+
+        public Worker(int id, Session session, CountDownLatch done) {
+            fId = id;
+            fSession = session;
+            fDone = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ScoreGenerator<T> generator = getGenerator(fId);
+                while (true) {
+                    Job<D, R> job = fSession.fQueue.take();
+                    if (job == STOP) {
+                        break;
+                    }
+                    try {
+                        generator.reset();
+                        job.fResult = fScorer.score(job.fDocument, generator);
+                    } catch (Throwable t) {
+                        job.fError = t;
+                    }
+                    fSession.onDone(job);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                fDone.countDown();
+            }
+        }
+
+    }
+
+    /**
+     * This job is used to stop workers
+     */
+    @SuppressWarnings("rawtypes")
+    private static final Job STOP = new Job<Object, Object>(-1, null);
+
+    /**
+     * Returns a factory creating virtual threads or <code>null</code> if
+     * virtual threads are not supported by the current JVM.
+     * 
+     * @return a factory of virtual threads or <code>null</code>
+     */
+    public static ThreadFactory newVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class
+                .forName("java.lang.Thread$Builder")
+                .getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private final ScoreGeneratorFactory<T> fFactory;
+
+    /**
+     * Generators owned by workers
+     */
+    private final ScoreGenerator<T>[] fGenerators;
+
+    /**
+     * The maximal number of documents read from the source but not yet
+     * delivered to the result handler
+     */
+    private final int fMaxInFlight;
+
+    private final IDocumentScorer<T, D, R> fScorer;
+
+    private final ThreadFactory fThreadFactory;
+
+    /**
+     * This constructor creates an engine using platform threads.
+     * 
+     * @param factory the factory of score generators
+     * @param scorer the object scoring individual documents
+     * @param workers the number of workers
+     * @param maxInFlight the maximal number of documents in progress
+     */
+    public BatchScoringEngine(
+        ScoreGeneratorFactory<T> factory,
+        IDocumentScorer<T, D, R> scorer,
+        int workers,
+        int maxInFlight) {
+        this(factory, scorer, workers, maxInFlight, Executors
+            .defaultThreadFactory());
+    }
+
+    /**
+     * @param factory the factory of score generators
+     * @param scorer the object scoring individual documents
+     * @param workers the number of workers
+     * @param maxInFlight the maximal number of documents in progress
+     * @param threadFactory the factory used to create worker threads
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public BatchScoringEngine(
+        ScoreGeneratorFactory<T> factory,
+        IDocumentScorer<T, D, R> scorer,
+        int workers,
+        int maxInFlight,
+        ThreadFactory threadFactory) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException(
+                "The number of workers should be positive.");
+        }
+        fFactory = factory;
+        fScorer = scorer;
+        fGenerators = new ScoreGenerator[workers];
+        fMaxInFlight = Math.max(maxInFlight, 1);
+        fThreadFactory = threadFactory;
+    }
+
+    private ScoreGenerator<T> getGenerator(int id) {
+        ScoreGenerator<T> generator = fGenerators[id];
+        if (generator == null) {
+            generator = newScoreGenerator();
+            fGenerators[id] = generator;
+        }
+        return generator;
+    }
+
+    /**
+     * @return the maximal number of documents in progress
+     */
+    public int getMaxInFlight() {
+        return fMaxInFlight;
+    }
+
+    /**
+     * @return the number of workers
+     */
+    public int getWorkersNumber() {
+        return fGenerators.length;
+    }
+
+    /**
+     * Creates and returns a new generator for a worker. This method could be
+     * overloaded to configure generators (for example to register listeners).
+     * 
+     * @return a new score generator
+     */
+    protected ScoreGenerator<T> newScoreGenerator() {
+        return fFactory.newScoreGenerator();
+    }
+
+    /**
+     * Scores all documents of the given sequence and returns results in the
+     * order of documents. Results of failed documents are <code>null</code>.
+     * 
+     * @param documents documents to score
+     * @return a list of results
+     * @throws InterruptedException
+     */
+    public List<R> score(Iterable<D> documents) throws InterruptedException {
+        final List<R> results = new ArrayList<R>();
+        score(documents.iterator(), new IResultHandler<D, R>() {
+            @Override
+            public void onError(int index, D document, Throwable error) {
+                results.add(null);
+            }
+
+            @Override
+            public void onResult(int index, D document, R result) {
+                results.add(result);
+            }
+        }, true);
+        return results;
+    }
+
+    /**
+     * Scores all documents returned by the given iterator and reports results
+     * to the specified handler. This method returns when all documents are
+     * scored and delivered. The iterator is used only by the calling thread.
+     * If the handler throws an exception then no more documents are read and
+     * this exception is re-thrown by this method when all workers are
+     * stopped.
+     * 
+     * @param documents documents to score
+     * @param handler the handler of results
+     * @param ordered if this flag is <code>true</code> then results are
+     *        delivered in the order of documents; otherwise they are delivered
+     *        as soon as they are ready
+     * @throws InterruptedException
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void score(
+        Iterator<D> documents,
+        IResultHandler<D, R> handler,
+        boolean ordered) throws InterruptedException {
+        Session session = new Session(handler, ordered);
+        int workers = fGenerators.length;
+        CountDownLatch done = new CountDownLatch(workers);
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            threads[i] = fThreadFactory.newThread(new Worker(i, session, done));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        boolean completed = false;
+        try {
+            int index = 0;
+            while (!session.isFailed() && documents.hasNext()) {
+                D document = documents.next();
+                session.fPermits.acquire();
+                session.fQueue.put(new Job<D, R>(index++, document));
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                session.fQueue.clear();
+            }
+            // The queue always has enough free space for stop markers
+            for (int i = 0; i < workers; i++) {
+                session.fQueue.offer(STOP);
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (session.fFailure != null) {
+            throw session.fFailure;
+        }
+    }
+
+}
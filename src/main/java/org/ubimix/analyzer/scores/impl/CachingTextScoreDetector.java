@@ -0,0 +1,489 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ICharTextScoreDetector;
+import org.ubimix.analyzer.scores.ITextScoreDetector;
+
+/**
+ * A text score detector caching scores returned by another detector. The same
+ * short texts (menu labels, "Read more" links, copyright lines,
+ * <code>alt</code> and <code>title</code> values...) are repeated on many
+ * pages, so they are scored only once. The cache is split in segments
+ * selected by text hashes; each segment is an LRU map protected by its own
+ * lock, so this detector could be shared by many threads.
+ * <p>
+ * The size of the cache is limited by its total weight. The weight of an entry
+ * is the length of its text plus {@link #ENTRY_WEIGHT} - an approximation of
+ * the memory used by the entry itself, expressed in characters. Texts longer
+ * than the specified limit are never cached. Numbers of hits, misses and
+ * evictions could be used to size the cache against a real traffic.
+ * </p>
+ * <p>
+ * Cached scores are shared between all callers, so they are read-only: their
+ * modification methods throw an {@link UnsupportedOperationException}.
+ * Modifiable copies are returned by the {@link Channels#getCopy()} method.
+ * Cached scores are not updated when the wrapped detector is modified; frozen
+ * copies of this object (see {@link #freeze()}) start with an empty cache.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class CachingTextScoreDetector
+    implements
+    ICharTextScoreDetector,
+    IFreezable<CachingTextScoreDetector> {
+
+    /**
+     * A copy of a score stored in the cache; it could not be modified.
+     */
+    private static class ReadOnlyChannels extends Channels {
+
+        public ReadOnlyChannels(Channels channels) {
+            super(channels);
+        }
+
+        @Override
+        public Channels setLevel(int channelId, double weight) {
+            throw new UnsupportedOperationException(
+                "Cached scores could not be modified.");
+        }
+
+    }
+
+    /**
+     * An independent part of the cache with its own lock and statistics.
+     */
+    private static class Segment {
+
+        private final LinkedHashMap<TextKey, Channels> fEntries = new LinkedHashMap<TextKey, Channels>(
+            16,
+            0.75f,
+            true);
+
+        private long fEvictions;
+
+        private long fHits;
+
+        private final int fMaxWeight;
+
+        private long fMisses;
+
+        /**
+         * This key is used to search texts without creating new strings
+         */
+        private final TextKey fProbe = new TextKey();
+
+        private long fWeight;
+
+        public Segment(int maxWeight) {
+            fMaxWeight = maxWeight;
+        }
+
+        public synchronized void clear() {
+            fEntries.clear();
+            fWeight = 0;
+        }
+
+        /**
+         * Returns the cached score of the text defined by the probe key or
+         * <code>null</code>. This method should be called when the segment is
+         * locked.
+         */
+        private Channels get() {
+            Channels score = fEntries.get(fProbe);
+            fProbe.reset();
+            if (score != null) {
+                fHits++;
+            } else {
+                fMisses++;
+            }
+            return score;
+        }
+
+        public synchronized Channels get(
+            char[] buf,
+            int start,
+            int len,
+            int hash) {
+            fProbe.set(buf, start, len, hash);
+            return get();
+        }
+
+        public synchronized Channels get(CharSequence text, int hash) {
+            fProbe.set(text, hash);
+            return get();
+        }
+
+        public synchronized void put(String text, int hash, Channels score) {
+            TextKey key = new TextKey();
+            key.set(text, hash);
+            if (fEntries.put(key, score) == null) {
+                fWeight += getEntryWeight(text.length());
+            }
+            Iterator<Map.Entry<TextKey, Channels>> iterator = fEntries
+                .entrySet()
+                .iterator();
+            while (fWeight > fMaxWeight && fEntries.size() > 1) {
+                Map.Entry<TextKey, Channels> eldest = iterator.next();
+                iterator.remove();
+                fWeight -= getEntryWeight(eldest.getKey().fLen);
+                fEvictions++;
+            }
+        }
+
+    }
+
+    /**
+     * A key of cached texts. Keys stored in the cache reference strings;
+     * probe keys used to search texts could reference character sequences or
+     * ranges of character arrays. Hash codes are the same as hash codes of
+     * strings with the same characters.
+     */
+    private static class TextKey {
+
+        private char[] fBuf;
+
+        private int fHash;
+
+        private int fLen;
+
+        private CharSequence fSeq;
+
+        private int fStart;
+
+        private char charAt(int pos) {
+            return fSeq != null ? fSeq.charAt(pos) : fBuf[fStart + pos];
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TextKey)) {
+                return false;
+            }
+            TextKey o = (TextKey) obj;
+            if (fHash != o.fHash || fLen != o.fLen) {
+                return false;
+            }
+            for (int i = 0; i < fLen; i++) {
+                if (charAt(i) != o.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return fHash;
+        }
+
+        public void reset() {
+            fBuf = null;
+            fSeq = null;
+        }
+
+        public void set(char[] buf, int start, int len, int hash) {
+            fBuf = buf;
+            fStart = start;
+            fLen = len;
+            fSeq = null;
+            fHash = hash;
+        }
+
+        public void set(CharSequence text, int hash) {
+            fBuf = null;
+            fSeq = text;
+            fLen = text.length();
+            fHash = hash;
+        }
+
+    }
+
+    /**
+     * The default maximal length of cached texts
+     */
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 256;
+
+    /**
+     * The default number of segments
+     */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /**
+     * The weight of an entry added to the length of its text
+     */
+    public static final int ENTRY_WEIGHT = 32;
+
+    private static int getEntryWeight(int len) {
+        return len + ENTRY_WEIGHT;
+    }
+
+    private static int getHash(char[] buf, int start, int len) {
+        int hash = 0;
+        for (int i = start, end = start + len; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        return hash;
+    }
+
+    private static int getHash(CharSequence text) {
+        if (text instanceof String) {
+            return text.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * The wrapped detector if it accepts character sequences and arrays
+     */
+    private final ICharTextScoreDetector fCharDetector;
+
+    private final ITextScoreDetector fDetector;
+
+    private final int fMaxTextLength;
+
+    private final int fMaxWeight;
+
+    private final Segment[] fSegments;
+
+    /**
+     * This constructor creates a cache with the default number of segments
+     * and the default maximal length of texts.
+     * 
+     * @param detector the detector returning scores of texts
+     * @param maxWeight the maximal weight of the cache
+     */
+    public CachingTextScoreDetector(
+        ITextScoreDetector detector,
+        int maxWeight) {
+        this(detector, maxWeight, DEFAULT_MAX_TEXT_LENGTH, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param detector the detector returning scores of texts
+     * @param maxWeight the maximal weight of the cache; see
+     *        {@link #ENTRY_WEIGHT}
+     * @param maxTextLength texts longer than this value are not cached
+     * @param segments the number of independently locked segments; it is
+     *        rounded up to a power of two
+     */
+    public CachingTextScoreDetector(
+        ITextScoreDetector detector,
+        int maxWeight,
+        int maxTextLength,
+        int segments) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException(
+                "The maximal weight should be positive.");
+        }
+        int size = 1;
+        while (size < segments) {
+            size <<= 1;
+        }
+        fDetector = detector;
+        fCharDetector = detector instanceof ICharTextScoreDetector
+            ? (ICharTextScoreDetector) detector
+            : null;
+        fMaxWeight = maxWeight;
+        fMaxTextLength = maxTextLength;
+        fSegments = new Segment[size];
+        int segmentWeight = Math.max(maxWeight / size, 1);
+        for (int i = 0; i < size; i++) {
+            fSegments[i] = new Segment(segmentWeight);
+        }
+    }
+
+    /**
+     * Removes all cached scores. Statistics are not changed.
+     */
+    public void clear() {
+        for (Segment segment : fSegments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns a cache wrapping a frozen copy of the underlying detector. The
+     * returned object has the same limits as this one but its own empty
+     * segments and statistics, so scores cached by this object are never
+     * returned by the frozen copy.
+     * 
+     * @see org.ubimix.analyzer.scores.impl.IFreezable#freeze()
+     */
+    @Override
+    public CachingTextScoreDetector freeze() {
+        ITextScoreDetector detector = SimpleTagScoreDetector.freeze(fDetector);
+        return new CachingTextScoreDetector(
+            detector,
+            fMaxWeight,
+            fMaxTextLength,
+            fSegments.length);
+    }
+
+    /**
+     * @return the wrapped detector
+     */
+    public ITextScoreDetector getDetector() {
+        return fDetector;
+    }
+
+    /**
+     * @return the number of cached scores removed to free space for new ones
+     */
+    public long getEvictions() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fEvictions;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of texts found in the cache
+     */
+    public long getHits() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fHits;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return texts longer than this value are not cached
+     */
+    public int getMaxTextLength() {
+        return fMaxTextLength;
+    }
+
+    /**
+     * @return the maximal weight of the cache
+     */
+    public int getMaxWeight() {
+        return fMaxWeight;
+    }
+
+    /**
+     * @return the number of cacheable texts which were not found in the cache
+     */
+    public long getMisses() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fMisses;
+            }
+        }
+        return result;
+    }
+
+    private Segment getSegment(int hash) {
+        hash ^= hash >>> 16;
+        return fSegments[hash & (fSegments.length - 1)];
+    }
+
+    /**
+     * @return the number of cached scores
+     */
+    public int getSize() {
+        int result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fEntries.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ICharTextScoreDetector#getTextScore(char[],
+     *      int, int)
+     */
+    @Override
+    public Channels getTextScore(char[] buf, int start, int len) {
+        if (len > fMaxTextLength) {
+            return getUncachedScore(buf, start, len);
+        }
+        int hash = getHash(buf, start, len);
+        Segment segment = getSegment(hash);
+        Channels score = segment.get(buf, start, len, hash);
+        if (score == null) {
+            score = getUncachedScore(buf, start, len);
+            if (score != null) {
+                score = new ReadOnlyChannels(score);
+                segment.put(new String(buf, start, len), hash, score);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ICharTextScoreDetector#getTextScore(java.lang.CharSequence)
+     */
+    @Override
+    public Channels getTextScore(CharSequence text) {
+        if (text.length() > fMaxTextLength) {
+            return fCharDetector != null
+                ? fCharDetector.getTextScore(text)
+                : fDetector.getTextScore(text.toString());
+        }
+        int hash = getHash(text);
+        Segment segment = getSegment(hash);
+        Channels score = segment.get(text, hash);
+        if (score == null) {
+            String str = text.toString();
+            score = fDetector.getTextScore(str);
+            if (score != null) {
+                score = new ReadOnlyChannels(score);
+                segment.put(str, hash, score);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ITextScoreDetector#getTextScore(java.lang.String)
+     */
+    @Override
+    public Channels getTextScore(String text) {
+        return getTextScore((CharSequence) text);
+    }
+
+    private Channels getUncachedScore(char[] buf, int start, int len) {
+        if (fCharDetector != null) {
+            return fCharDetector.getTextScore(buf, start, len);
+        }
+        return fDetector.getTextScore(new String(buf, start, len));
+    }
+
+    /**
+     * @return the total weight of cached entries
+     */
+    public long getWeight() {
+        long result = 0;
+        for (Segment segment : fSegments) {
+            synchronized (segment) {
+                result += segment.fWeight;
+            }
+        }
+        return result;
+    }
+
+}
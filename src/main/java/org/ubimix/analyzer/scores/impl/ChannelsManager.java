@@ -8,6 +8,11 @@ import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
 
 /**
+ * The default channels manager. If the number of channels is small (see
+ * {@link FixedChannels#MAX_CHANNELS_NUMBER}) then it creates
+ * {@link Channels} keeping levels in fields; otherwise levels are stored in
+ * arrays. The implementation is chosen when the manager is created.
+ * 
  * @author kotelnikov
  */
 public class ChannelsManager implements IChannelsManager {
@@ -16,6 +21,12 @@ public class ChannelsManager implements IChannelsManager {
 
     private LinkedHashMap<String, Integer> fChannels = new LinkedHashMap<String, Integer>();
 
+    /**
+     * This flag is <code>true</code> if channels are created by the
+     * {@link FixedChannels} class
+     */
+    private final boolean fFixedChannels;
+
     public ChannelsManager(Collection<String> channelNames) {
         int counter = 0;
         for (String name : channelNames) {
@@ -29,6 +40,9 @@ public class ChannelsManager implements IChannelsManager {
         fChannelNames = fChannels
             .keySet()
             .toArray(new String[fChannels.size()]);
+        int channelsNumber = fChannelNames.length;
+        fFixedChannels = channelsNumber > 0
+            && channelsNumber <= FixedChannels.MAX_CHANNELS_NUMBER;
     }
 
     public ChannelsManager(String... channelNames) {
@@ -56,6 +70,9 @@ public class ChannelsManager implements IChannelsManager {
 
     @Override
     public Channels newChannels(double value) {
+        if (fFixedChannels) {
+            return FixedChannels.newChannels(this, value);
+        }
         return new Channels(this, value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,833 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.IChannelsManager;
+
+/**
+ * Implementations of {@link Channels} for small numbers of channels. Levels
+ * are stored in fields instead of an array, so each object is smaller and
+ * operations do not iterate over arrays. Operations on two objects with the
+ * same number of channels use fields of both objects directly; otherwise the
+ * generic implementations of the {@link Channels} class are used.
+ * 
+ * @author kotelnikov
+ * @see ChannelsManager#newChannels(double)
+ */
+public class FixedChannels {
+
+    /**
+     * Channels with one level stored in a field
+     */
+    private static final class Channels1 extends Channels {
+
+        private double fLevel0;
+
+        public Channels1(IChannelsManager manager, double value) {
+            super(manager);
+            fLevel0 = value;
+        }
+
+        private Channels1(Channels1 channels) {
+            super(channels.getChannelManager());
+            fLevel0 = channels.fLevel0;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(Channels value) {
+            if (!(value instanceof Channels1)) {
+                return super.add(value);
+            }
+            Channels1 v = (Channels1) value;
+            fLevel0 += v.fLevel0;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(double,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(double value, Channels filter) {
+            if (!(filter instanceof Channels1)) {
+                return super.add(value, filter);
+            }
+            Channels1 v = (Channels1) filter;
+            fLevel0 += value * v.fLevel0;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#checkValuesInRange(double,
+         *      double)
+         */
+        @Override
+        public boolean checkValuesInRange(double min, double max) {
+            return min <= fLevel0 && max >= fLevel0;
+        }
+
+        @Override
+        public int getChannelsNumber() {
+            return 1;
+        }
+
+        @Override
+        public Channels getCopy() {
+            return new Channels1(this);
+        }
+
+        @Override
+        public double getLevel(int channelId) {
+            if (channelId != 0) {
+                throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+            return fLevel0;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#max(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels max(Channels score) {
+            if (!(score instanceof Channels1)) {
+                return super.max(score);
+            }
+            Channels1 v = (Channels1) score;
+            if (fLevel0 < v.fLevel0) {
+                fLevel0 = v.fLevel0;
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiply(Channels levels) {
+            if (!(levels instanceof Channels1)) {
+                return super.multiply(levels);
+            }
+            Channels1 v = (Channels1) levels;
+            fLevel0 *= v.fLevel0;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(double)
+         */
+        @Override
+        public Channels multiply(double value) {
+            fLevel0 *= value;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiplyAndAddTo(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiplyAndAddTo(Channels factor, Channels target) {
+            if (!(factor instanceof Channels1)
+                || !(target instanceof Channels1)) {
+                return super.multiplyAndAddTo(factor, target);
+            }
+            Channels1 v = (Channels1) factor;
+            Channels1 t = (Channels1) target;
+            fLevel0 *= v.fLevel0;
+            t.fLevel0 += fLevel0;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#set(double)
+         */
+        @Override
+        public Channels set(double val) {
+            fLevel0 = val;
+            return this;
+        }
+
+        @Override
+        public Channels setLevel(int channelId, double weight) {
+            if (channelId != 0) {
+                throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+            fLevel0 = weight;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#setProduct(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels setProduct(Channels first, Channels second) {
+            if (!(first instanceof Channels1)
+                || !(second instanceof Channels1)) {
+                return super.setProduct(first, second);
+            }
+            Channels1 a = (Channels1) first;
+            Channels1 b = (Channels1) second;
+            fLevel0 = a.fLevel0 * b.fLevel0;
+            return this;
+        }
+
+    }
+    /**
+     * Channels with 2 levels stored in fields
+     */
+    private static final class Channels2 extends Channels {
+
+        private double fLevel0;
+
+        private double fLevel1;
+
+        public Channels2(IChannelsManager manager, double value) {
+            super(manager);
+            fLevel0 = value;
+            fLevel1 = value;
+        }
+
+        private Channels2(Channels2 channels) {
+            super(channels.getChannelManager());
+            fLevel0 = channels.fLevel0;
+            fLevel1 = channels.fLevel1;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(Channels value) {
+            if (!(value instanceof Channels2)) {
+                return super.add(value);
+            }
+            Channels2 v = (Channels2) value;
+            fLevel0 += v.fLevel0;
+            fLevel1 += v.fLevel1;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(double,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(double value, Channels filter) {
+            if (!(filter instanceof Channels2)) {
+                return super.add(value, filter);
+            }
+            Channels2 v = (Channels2) filter;
+            fLevel0 += value * v.fLevel0;
+            fLevel1 += value * v.fLevel1;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#checkValuesInRange(double,
+         *      double)
+         */
+        @Override
+        public boolean checkValuesInRange(double min, double max) {
+            return min <= fLevel0 && max >= fLevel0
+                && min <= fLevel1 && max >= fLevel1;
+        }
+
+        @Override
+        public int getChannelsNumber() {
+            return 2;
+        }
+
+        @Override
+        public Channels getCopy() {
+            return new Channels2(this);
+        }
+
+        @Override
+        public double getLevel(int channelId) {
+            switch (channelId) {
+                case 0:
+                    return fLevel0;
+                case 1:
+                    return fLevel1;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#max(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels max(Channels score) {
+            if (!(score instanceof Channels2)) {
+                return super.max(score);
+            }
+            Channels2 v = (Channels2) score;
+            if (fLevel0 < v.fLevel0) {
+                fLevel0 = v.fLevel0;
+            }
+            if (fLevel1 < v.fLevel1) {
+                fLevel1 = v.fLevel1;
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiply(Channels levels) {
+            if (!(levels instanceof Channels2)) {
+                return super.multiply(levels);
+            }
+            Channels2 v = (Channels2) levels;
+            fLevel0 *= v.fLevel0;
+            fLevel1 *= v.fLevel1;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(double)
+         */
+        @Override
+        public Channels multiply(double value) {
+            fLevel0 *= value;
+            fLevel1 *= value;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiplyAndAddTo(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiplyAndAddTo(Channels factor, Channels target) {
+            if (!(factor instanceof Channels2)
+                || !(target instanceof Channels2)) {
+                return super.multiplyAndAddTo(factor, target);
+            }
+            Channels2 v = (Channels2) factor;
+            Channels2 t = (Channels2) target;
+            fLevel0 *= v.fLevel0;
+            t.fLevel0 += fLevel0;
+            fLevel1 *= v.fLevel1;
+            t.fLevel1 += fLevel1;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#set(double)
+         */
+        @Override
+        public Channels set(double val) {
+            fLevel0 = val;
+            fLevel1 = val;
+            return this;
+        }
+
+        @Override
+        public Channels setLevel(int channelId, double weight) {
+            switch (channelId) {
+                case 0:
+                    fLevel0 = weight;
+                    break;
+                case 1:
+                    fLevel1 = weight;
+                    break;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#setProduct(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels setProduct(Channels first, Channels second) {
+            if (!(first instanceof Channels2)
+                || !(second instanceof Channels2)) {
+                return super.setProduct(first, second);
+            }
+            Channels2 a = (Channels2) first;
+            Channels2 b = (Channels2) second;
+            fLevel0 = a.fLevel0 * b.fLevel0;
+            fLevel1 = a.fLevel1 * b.fLevel1;
+            return this;
+        }
+
+    }
+    /**
+     * Channels with 3 levels stored in fields
+     */
+    private static final class Channels3 extends Channels {
+
+        private double fLevel0;
+
+        private double fLevel1;
+
+        private double fLevel2;
+
+        public Channels3(IChannelsManager manager, double value) {
+            super(manager);
+            fLevel0 = value;
+            fLevel1 = value;
+            fLevel2 = value;
+        }
+
+        private Channels3(Channels3 channels) {
+            super(channels.getChannelManager());
+            fLevel0 = channels.fLevel0;
+            fLevel1 = channels.fLevel1;
+            fLevel2 = channels.fLevel2;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(Channels value) {
+            if (!(value instanceof Channels3)) {
+                return super.add(value);
+            }
+            Channels3 v = (Channels3) value;
+            fLevel0 += v.fLevel0;
+            fLevel1 += v.fLevel1;
+            fLevel2 += v.fLevel2;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(double,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(double value, Channels filter) {
+            if (!(filter instanceof Channels3)) {
+                return super.add(value, filter);
+            }
+            Channels3 v = (Channels3) filter;
+            fLevel0 += value * v.fLevel0;
+            fLevel1 += value * v.fLevel1;
+            fLevel2 += value * v.fLevel2;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#checkValuesInRange(double,
+         *      double)
+         */
+        @Override
+        public boolean checkValuesInRange(double min, double max) {
+            return min <= fLevel0 && max >= fLevel0
+                && min <= fLevel1 && max >= fLevel1
+                && min <= fLevel2 && max >= fLevel2;
+        }
+
+        @Override
+        public int getChannelsNumber() {
+            return 3;
+        }
+
+        @Override
+        public Channels getCopy() {
+            return new Channels3(this);
+        }
+
+        @Override
+        public double getLevel(int channelId) {
+            switch (channelId) {
+                case 0:
+                    return fLevel0;
+                case 1:
+                    return fLevel1;
+                case 2:
+                    return fLevel2;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#max(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels max(Channels score) {
+            if (!(score instanceof Channels3)) {
+                return super.max(score);
+            }
+            Channels3 v = (Channels3) score;
+            if (fLevel0 < v.fLevel0) {
+                fLevel0 = v.fLevel0;
+            }
+            if (fLevel1 < v.fLevel1) {
+                fLevel1 = v.fLevel1;
+            }
+            if (fLevel2 < v.fLevel2) {
+                fLevel2 = v.fLevel2;
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiply(Channels levels) {
+            if (!(levels instanceof Channels3)) {
+                return super.multiply(levels);
+            }
+            Channels3 v = (Channels3) levels;
+            fLevel0 *= v.fLevel0;
+            fLevel1 *= v.fLevel1;
+            fLevel2 *= v.fLevel2;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(double)
+         */
+        @Override
+        public Channels multiply(double value) {
+            fLevel0 *= value;
+            fLevel1 *= value;
+            fLevel2 *= value;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiplyAndAddTo(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiplyAndAddTo(Channels factor, Channels target) {
+            if (!(factor instanceof Channels3)
+                || !(target instanceof Channels3)) {
+                return super.multiplyAndAddTo(factor, target);
+            }
+            Channels3 v = (Channels3) factor;
+            Channels3 t = (Channels3) target;
+            fLevel0 *= v.fLevel0;
+            t.fLevel0 += fLevel0;
+            fLevel1 *= v.fLevel1;
+            t.fLevel1 += fLevel1;
+            fLevel2 *= v.fLevel2;
+            t.fLevel2 += fLevel2;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#set(double)
+         */
+        @Override
+        public Channels set(double val) {
+            fLevel0 = val;
+            fLevel1 = val;
+            fLevel2 = val;
+            return this;
+        }
+
+        @Override
+        public Channels setLevel(int channelId, double weight) {
+            switch (channelId) {
+                case 0:
+                    fLevel0 = weight;
+                    break;
+                case 1:
+                    fLevel1 = weight;
+                    break;
+                case 2:
+                    fLevel2 = weight;
+                    break;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#setProduct(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels setProduct(Channels first, Channels second) {
+            if (!(first instanceof Channels3)
+                || !(second instanceof Channels3)) {
+                return super.setProduct(first, second);
+            }
+            Channels3 a = (Channels3) first;
+            Channels3 b = (Channels3) second;
+            fLevel0 = a.fLevel0 * b.fLevel0;
+            fLevel1 = a.fLevel1 * b.fLevel1;
+            fLevel2 = a.fLevel2 * b.fLevel2;
+            return this;
+        }
+
+    }
+    /**
+     * Channels with 4 levels stored in fields
+     */
+    private static final class Channels4 extends Channels {
+
+        private double fLevel0;
+
+        private double fLevel1;
+
+        private double fLevel2;
+
+        private double fLevel3;
+
+        public Channels4(IChannelsManager manager, double value) {
+            super(manager);
+            fLevel0 = value;
+            fLevel1 = value;
+            fLevel2 = value;
+            fLevel3 = value;
+        }
+
+        private Channels4(Channels4 channels) {
+            super(channels.getChannelManager());
+            fLevel0 = channels.fLevel0;
+            fLevel1 = channels.fLevel1;
+            fLevel2 = channels.fLevel2;
+            fLevel3 = channels.fLevel3;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(Channels value) {
+            if (!(value instanceof Channels4)) {
+                return super.add(value);
+            }
+            Channels4 v = (Channels4) value;
+            fLevel0 += v.fLevel0;
+            fLevel1 += v.fLevel1;
+            fLevel2 += v.fLevel2;
+            fLevel3 += v.fLevel3;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#add(double,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels add(double value, Channels filter) {
+            if (!(filter instanceof Channels4)) {
+                return super.add(value, filter);
+            }
+            Channels4 v = (Channels4) filter;
+            fLevel0 += value * v.fLevel0;
+            fLevel1 += value * v.fLevel1;
+            fLevel2 += value * v.fLevel2;
+            fLevel3 += value * v.fLevel3;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#checkValuesInRange(double,
+         *      double)
+         */
+        @Override
+        public boolean checkValuesInRange(double min, double max) {
+            return min <= fLevel0 && max >= fLevel0
+                && min <= fLevel1 && max >= fLevel1
+                && min <= fLevel2 && max >= fLevel2
+                && min <= fLevel3 && max >= fLevel3;
+        }
+
+        @Override
+        public int getChannelsNumber() {
+            return 4;
+        }
+
+        @Override
+        public Channels getCopy() {
+            return new Channels4(this);
+        }
+
+        @Override
+        public double getLevel(int channelId) {
+            switch (channelId) {
+                case 0:
+                    return fLevel0;
+                case 1:
+                    return fLevel1;
+                case 2:
+                    return fLevel2;
+                case 3:
+                    return fLevel3;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#max(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels max(Channels score) {
+            if (!(score instanceof Channels4)) {
+                return super.max(score);
+            }
+            Channels4 v = (Channels4) score;
+            if (fLevel0 < v.fLevel0) {
+                fLevel0 = v.fLevel0;
+            }
+            if (fLevel1 < v.fLevel1) {
+                fLevel1 = v.fLevel1;
+            }
+            if (fLevel2 < v.fLevel2) {
+                fLevel2 = v.fLevel2;
+            }
+            if (fLevel3 < v.fLevel3) {
+                fLevel3 = v.fLevel3;
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiply(Channels levels) {
+            if (!(levels instanceof Channels4)) {
+                return super.multiply(levels);
+            }
+            Channels4 v = (Channels4) levels;
+            fLevel0 *= v.fLevel0;
+            fLevel1 *= v.fLevel1;
+            fLevel2 *= v.fLevel2;
+            fLevel3 *= v.fLevel3;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiply(double)
+         */
+        @Override
+        public Channels multiply(double value) {
+            fLevel0 *= value;
+            fLevel1 *= value;
+            fLevel2 *= value;
+            fLevel3 *= value;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#multiplyAndAddTo(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels multiplyAndAddTo(Channels factor, Channels target) {
+            if (!(factor instanceof Channels4)
+                || !(target instanceof Channels4)) {
+                return super.multiplyAndAddTo(factor, target);
+            }
+            Channels4 v = (Channels4) factor;
+            Channels4 t = (Channels4) target;
+            fLevel0 *= v.fLevel0;
+            t.fLevel0 += fLevel0;
+            fLevel1 *= v.fLevel1;
+            t.fLevel1 += fLevel1;
+            fLevel2 *= v.fLevel2;
+            t.fLevel2 += fLevel2;
+            fLevel3 *= v.fLevel3;
+            t.fLevel3 += fLevel3;
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#set(double)
+         */
+        @Override
+        public Channels set(double val) {
+            fLevel0 = val;
+            fLevel1 = val;
+            fLevel2 = val;
+            fLevel3 = val;
+            return this;
+        }
+
+        @Override
+        public Channels setLevel(int channelId, double weight) {
+            switch (channelId) {
+                case 0:
+                    fLevel0 = weight;
+                    break;
+                case 1:
+                    fLevel1 = weight;
+                    break;
+                case 2:
+                    fLevel2 = weight;
+                    break;
+                case 3:
+                    fLevel3 = weight;
+                    break;
+                default:
+                    throw new ArrayIndexOutOfBoundsException(channelId);
+            }
+            return this;
+        }
+
+        /**
+         * @see org.ubimix.analyzer.scores.Channels#setProduct(org.ubimix.analyzer.scores.Channels,
+         *      org.ubimix.analyzer.scores.Channels)
+         */
+        @Override
+        public Channels setProduct(Channels first, Channels second) {
+            if (!(first instanceof Channels4)
+                || !(second instanceof Channels4)) {
+                return super.setProduct(first, second);
+            }
+            Channels4 a = (Channels4) first;
+            Channels4 b = (Channels4) second;
+            fLevel0 = a.fLevel0 * b.fLevel0;
+            fLevel1 = a.fLevel1 * b.fLevel1;
+            fLevel2 = a.fLevel2 * b.fLevel2;
+            fLevel3 = a.fLevel3 * b.fLevel3;
+            return this;
+        }
+
+    }
+    /**
+     * The maximal number of channels supported by this class
+     */
+    public static final int MAX_CHANNELS_NUMBER = 4;
+
+    /**
+     * Creates a new object with levels stored in fields.
+     * 
+     * @param manager the channel manager owning the new object
+     * @param value the initial value of all levels
+     * @return a new object or <code>null</code> if the number of channels of
+     *         the manager is not in the range [1..{@link #MAX_CHANNELS_NUMBER}]
+     */
+    public static Channels newChannels(IChannelsManager manager, double value) {
+        switch (manager.getChannelsNumber()) {
+            case 1:
+                return new Channels1(manager, value);
+            case 2:
+                return new Channels2(manager, value);
+            case 3:
+                return new Channels3(manager, value);
+            case 4:
+                return new Channels4(manager, value);
+            default:
+                return null;
+        }
+    }
+
+    private FixedChannels() {
+    }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+/**
+ * Configurable objects implementing this interface could be "frozen" - they
+ * return immutable copies of themselves. Frozen copies could be shared between
+ * threads without synchronization.
+ * 
+ * @author kotelnikov
+ * @param <T> the type of this object
+ */
+public interface IFreezable<T> {
+
+    /**
+     * Returns an immutable copy of this object. Configuration methods of the
+     * returned object throw an {@link IllegalStateException}. Further
+     * modifications of this object do not change the returned copy.
+     * 
+     * @return an immutable copy of this object
+     */
+    T freeze();
+
+}
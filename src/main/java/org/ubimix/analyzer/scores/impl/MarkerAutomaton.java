@@ -0,0 +1,255 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton finding all occurrences of a fixed set of markers
+ * in a text in one pass. Markers are identified by their indexes in the array
+ * given to the constructor. This object is immutable and could be shared
+ * between threads; the matching state is an integer managed by the caller:
+ * 
+ * <pre>
+ * int state = automaton.getRoot();
+ * for (int i = 0; i &lt; text.length(); i++) {
+ *     state = automaton.next(state, text.charAt(i));
+ *     for (int out = automaton.getOutput(state); out &gt;= 0; out = automaton
+ *         .getNextOutput(out)) {
+ *         int marker = automaton.getMarker(out);
+ *         // The marker ends at the position i
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author kotelnikov
+ */
+public final class MarkerAutomaton {
+
+    /**
+     * Characters of transitions of all states. Transitions of each state are
+     * sorted by characters.
+     */
+    private final char[] fEdgeChars;
+
+    /**
+     * Target states of transitions
+     */
+    private final int[] fEdgeTargets;
+
+    /**
+     * Failure links of states
+     */
+    private final int[] fFail;
+
+    /**
+     * Index of the first transition of each state; transitions of the state
+     * <code>s</code> are in the range [fFirstEdge[s], fFirstEdge[s+1]).
+     */
+    private final int[] fFirstEdge;
+
+    /**
+     * Lengths of markers
+     */
+    private final int[] fMarkerLengths;
+
+    /**
+     * Markers ending in each state or -1
+     */
+    private final int[] fMarkers;
+
+    /**
+     * The nearest state in the failure chain of each state (including the
+     * state itself) where a marker ends, or -1
+     */
+    private final int[] fOutputs;
+
+    /**
+     * @param markers markers to search; empty markers are ignored; if the same
+     *        marker is given several times then only its first index is
+     *        reported
+     */
+    public MarkerAutomaton(String... markers) {
+        // Build the trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+        List<Integer> ends = new ArrayList<Integer>();
+        trie.add(new TreeMap<Character, Integer>());
+        ends.add(-1);
+        fMarkerLengths = new int[markers.length];
+        for (int i = 0; i < markers.length; i++) {
+            String marker = markers[i];
+            fMarkerLengths[i] = marker.length();
+            if (marker.length() == 0) {
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < marker.length(); j++) {
+                char ch = marker.charAt(j);
+                Integer next = trie.get(state).get(ch);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    ends.add(-1);
+                    trie.get(state).put(ch, next);
+                }
+                state = next;
+            }
+            if (ends.get(state) < 0) {
+                ends.set(state, i);
+            }
+        }
+
+        // Flatten transitions
+        int stateCount = trie.size();
+        fFirstEdge = new int[stateCount + 1];
+        int edgeCount = 0;
+        for (int s = 0; s < stateCount; s++) {
+            fFirstEdge[s] = edgeCount;
+            edgeCount += trie.get(s).size();
+        }
+        fFirstEdge[stateCount] = edgeCount;
+        fEdgeChars = new char[edgeCount];
+        fEdgeTargets = new int[edgeCount];
+        fMarkers = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            int pos = fFirstEdge[s];
+            for (Map.Entry<Character, Integer> entry : trie.get(s).entrySet()) {
+                fEdgeChars[pos] = entry.getKey();
+                fEdgeTargets[pos] = entry.getValue();
+                pos++;
+            }
+            fMarkers[s] = ends.get(s);
+        }
+
+        // Failure and output links; states are visited in the breadth-first
+        // order, so links of shorter prefixes are always ready.
+        fFail = new int[stateCount];
+        fOutputs = new int[stateCount];
+        fOutputs[0] = -1;
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int e = fFirstEdge[0]; e < fFirstEdge[1]; e++) {
+            int child = fEdgeTargets[e];
+            fFail[child] = 0;
+            fOutputs[child] = fMarkers[child] >= 0 ? child : -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int e = fFirstEdge[s]; e < fFirstEdge[s + 1]; e++) {
+                int child = fEdgeTargets[e];
+                int fail = next(fFail[s], fEdgeChars[e]);
+                fFail[child] = fail;
+                fOutputs[child] = fMarkers[child] >= 0
+                    ? child
+                    : fOutputs[fail];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the target of the transition from the given state by the
+     * specified character or -1 if there is no such a transition.
+     */
+    private int getEdge(int state, char ch) {
+        int low = fFirstEdge[state];
+        int high = fFirstEdge[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = fEdgeChars[mid];
+            if (c < ch) {
+                low = mid + 1;
+            } else if (c > ch) {
+                high = mid - 1;
+            } else {
+                return fEdgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the marker ending in the specified output state.
+     * 
+     * @param outputState an output state returned by the
+     *        {@link #getOutput(int)} or {@link #getNextOutput(int)} methods
+     * @return the index of the marker
+     */
+    public int getMarker(int outputState) {
+        return fMarkers[outputState];
+    }
+
+    /**
+     * @param marker the index of a marker
+     * @return the length of the marker
+     */
+    public int getMarkerLength(int marker) {
+        return fMarkerLengths[marker];
+    }
+
+    /**
+     * @return the number of markers
+     */
+    public int getMarkersNumber() {
+        return fMarkerLengths.length;
+    }
+
+    /**
+     * Returns the next state where another (shorter) marker ends at the same
+     * position.
+     * 
+     * @param outputState the current output state
+     * @return the next output state or -1 if there is no more markers ending
+     *         at the current position
+     */
+    public int getNextOutput(int outputState) {
+        return fOutputs[fFail[outputState]];
+    }
+
+    /**
+     * Returns the first output state for the specified state. Output states
+     * correspond to markers ending at the current position.
+     * 
+     * @param state the current state
+     * @return the first output state or -1 if no marker ends at the current
+     *         position
+     */
+    public int getOutput(int state) {
+        return fOutputs[state];
+    }
+
+    /**
+     * @return the initial state of the automaton
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    /**
+     * Returns the state of the automaton after reading the specified
+     * character.
+     * 
+     * @param state the current state
+     * @param ch the next character of the text
+     * @return the new state
+     */
+    public int next(int state, char ch) {
+        while (true) {
+            int next = getEdge(state, ch);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fFail[state];
+        }
+    }
+
+}
@@ -3,6 +3,7 @@
  */
 package org.ubimix.analyzer.scores.impl;
 
+import org.ubimix.analyzer.scores.ArenaScoreGenerator;
 import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
 import org.ubimix.analyzer.scores.IScoreReductionProvider;
@@ -46,6 +47,36 @@ public class ScoreGeneratorFactory<T> {
         fTagWeightDetector = newTagWeightDetector();
     }
 
+    /**
+     * Freezes the current configuration of this factory and returns it as an
+     * immutable model which could be shared between threads. Further changes
+     * of detectors used by this factory are not visible in the returned model.
+     * 
+     * @return an immutable scoring model
+     */
+    public ScoringModel<T> compile() {
+        return new ScoringModel<T>(
+            fChannelsManager,
+            fTagScoreDetector,
+            fTagWeightDetector,
+            fTextScoreDetector,
+            fScoreReductionProvider);
+    }
+
+    /**
+     * Returns a new score generator storing all tag scores in one flat array.
+     * 
+     * @return a new arena-based score generator
+     */
+    public ArenaScoreGenerator<T> newArenaScoreGenerator() {
+        return new ArenaScoreGenerator<T>(
+            fChannelsManager,
+            fTagScoreDetector,
+            fTagWeightDetector,
+            fTextScoreDetector,
+            fScoreReductionProvider);
+    }
+
     protected IChannelsManager newChannelsManager() {
         return new ChannelsManager("content", "navigation", "media");
     }
@@ -119,7 +150,7 @@ public class ScoreGeneratorFactory<T> {
     }
 
     protected ITextScoreDetector newTextScoreDetector() {
-        return new TextScoreDetector(fChannelsManager);
+        return TextScoreDetector.newInstance(fChannelsManager);
     }
 
     private Channels s(double w) {
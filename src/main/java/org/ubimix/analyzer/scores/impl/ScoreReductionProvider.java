@@ -14,7 +14,7 @@ public class ScoreReductionProvider implements IScoreReductionProvider {
 
     private static int[] FIBONACCI;
 
-    private static int[] getFibonacci() {
+    private static synchronized int[] getFibonacci() {
         if (FIBONACCI == null) {
             FIBONACCI = new int[30];
             // N: 0-25
@@ -0,0 +1,333 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import org.ubimix.analyzer.scores.IScoringMetricsListener;
+import org.ubimix.analyzer.scores.ScoringMetrics;
+
+/**
+ * A metrics listener aggregating statistics of all scored documents in
+ * memory. It keeps counters (numbers of documents, tags, text characters,
+ * propagation steps and allocated channels, the maximal depth) and histograms
+ * of document durations and sizes. One aggregator could be shared by
+ * generators of many threads; its methods are synchronized.
+ * <p>
+ * Aggregated values are returned as immutable snapshots. A snapshot could be
+ * taken and the aggregator reset in one operation, so consecutive snapshots
+ * describe consecutive time intervals.
+ * </p>
+ * 
+ * @author kotelnikov
+ * @see org.ubimix.analyzer.scores.ScoreGenerator#setMetricsListener(IScoringMetricsListener)
+ */
+public class ScoringMetricsAggregator implements IScoringMetricsListener {
+
+    /**
+     * A histogram of non-negative values with buckets bounded by powers of
+     * two. The bucket <code>i</code> contains values in the range
+     * <code>[2^(i-1)..2^i-1]</code>; the bucket 0 contains zeros. Histograms
+     * returned by snapshots are not modified.
+     */
+    public static class Histogram {
+
+        /**
+         * The number of buckets
+         */
+        public static final int BUCKETS_NUMBER = 64;
+
+        /**
+         * Returns the bucket of the specified value.
+         * 
+         * @param value the value to check
+         * @return the index of the bucket
+         */
+        public static int getBucket(long value) {
+            return value > 0 ? 64 - Long.numberOfLeadingZeros(value) : 0;
+        }
+
+        /**
+         * Returns the maximal value of the specified bucket.
+         * 
+         * @param bucket the index of the bucket
+         * @return the maximal value of the bucket
+         */
+        public static long getUpperBound(int bucket) {
+            return bucket < BUCKETS_NUMBER - 1
+                ? (1L << bucket) - 1
+                : Long.MAX_VALUE;
+        }
+
+        private long fCount;
+
+        private final long[] fCounts;
+
+        private long fMax;
+
+        private long fSum;
+
+        public Histogram() {
+            fCounts = new long[BUCKETS_NUMBER];
+        }
+
+        private Histogram(Histogram histogram) {
+            fCount = histogram.fCount;
+            fCounts = histogram.fCounts.clone();
+            fMax = histogram.fMax;
+            fSum = histogram.fSum;
+        }
+
+        void add(long value) {
+            fCounts[getBucket(value)]++;
+            fCount++;
+            fSum += value;
+            if (fMax < value) {
+                fMax = value;
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS_NUMBER; i++) {
+                fCounts[i] = 0;
+            }
+            fCount = 0;
+            fMax = 0;
+            fSum = 0;
+        }
+
+        /**
+         * @return the number of values in this histogram
+         */
+        public long getCount() {
+            return fCount;
+        }
+
+        /**
+         * @param bucket the index of a bucket
+         * @return the number of values in the specified bucket
+         */
+        public long getCount(int bucket) {
+            return fCounts[bucket];
+        }
+
+        /**
+         * @return the maximal value
+         */
+        public long getMax() {
+            return fMax;
+        }
+
+        /**
+         * @return the average value or 0 if this histogram is empty
+         */
+        public double getMean() {
+            return fCount > 0 ? (double) fSum / fCount : 0;
+        }
+
+        /**
+         * Returns an estimation of the specified percentile. The returned
+         * value is the upper bound of the bucket containing the percentile,
+         * so it is at most two times bigger than the exact value.
+         * 
+         * @param percentile the percentile in the range [0..100]
+         * @return the estimated percentile or 0 if this histogram is empty
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(fCount * percentile / 100);
+            rank = Math.max(rank, 1);
+            long count = 0;
+            for (int i = 0; i < BUCKETS_NUMBER; i++) {
+                count += fCounts[i];
+                if (count >= rank) {
+                    return Math.min(getUpperBound(i), fMax);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return the sum of all values
+         */
+        public long getSum() {
+            return fSum;
+        }
+
+        @Override
+        public String toString() {
+            return "{count="
+                + fCount
+                + ", mean="
+                + getMean()
+                + ", p50="
+                + getPercentile(50)
+                + ", p99="
+                + getPercentile(99)
+                + ", max="
+                + fMax
+                + "}";
+        }
+
+    }
+
+    /**
+     * Immutable aggregated statistics
+     */
+    public static class Snapshot {
+
+        private final long fAllocatedChannels;
+
+        private final long fDocumentsNumber;
+
+        private final Histogram fDurations;
+
+        private final int fMaxDepth;
+
+        private final long fPropagationSteps;
+
+        private final Histogram fSizes;
+
+        private final long fTextLength;
+
+        private Snapshot(ScoringMetricsAggregator aggregator) {
+            fAllocatedChannels = aggregator.fAllocatedChannels;
+            fDocumentsNumber = aggregator.fDurations.getCount();
+            fDurations = new Histogram(aggregator.fDurations);
+            fMaxDepth = aggregator.fMaxDepth;
+            fPropagationSteps = aggregator.fPropagationSteps;
+            fSizes = new Histogram(aggregator.fSizes);
+            fTextLength = aggregator.fTextLength;
+        }
+
+        /**
+         * @return the number of allocated
+         *         {@link org.ubimix.analyzer.scores.Channels}
+         */
+        public long getAllocatedChannels() {
+            return fAllocatedChannels;
+        }
+
+        /**
+         * @return the number of scored documents
+         */
+        public long getDocumentsNumber() {
+            return fDocumentsNumber;
+        }
+
+        /**
+         * @return the histogram of document durations in nanoseconds
+         */
+        public Histogram getDurations() {
+            return fDurations;
+        }
+
+        /**
+         * @return the maximal depth of scored documents
+         */
+        public int getMaxDepth() {
+            return fMaxDepth;
+        }
+
+        /**
+         * @return the number of propagation steps
+         */
+        public long getPropagationSteps() {
+            return fPropagationSteps;
+        }
+
+        /**
+         * @return the histogram of numbers of tags in documents
+         */
+        public Histogram getSizes() {
+            return fSizes;
+        }
+
+        /**
+         * @return the number of scored tags
+         */
+        public long getTagsNumber() {
+            return fSizes.getSum();
+        }
+
+        /**
+         * @return the number of characters in scored texts
+         */
+        public long getTextLength() {
+            return fTextLength;
+        }
+
+        @Override
+        public String toString() {
+            return "{documents="
+                + fDocumentsNumber
+                + ", tags="
+                + getTagsNumber()
+                + ", text="
+                + fTextLength
+                + ", maxDepth="
+                + fMaxDepth
+                + ", steps="
+                + fPropagationSteps
+                + ", channels="
+                + fAllocatedChannels
+                + ", durations="
+                + fDurations
+                + ", sizes="
+                + fSizes
+                + "}";
+        }
+
+    }
+
+    private long fAllocatedChannels;
+
+    private final Histogram fDurations = new Histogram();
+
+    private int fMaxDepth;
+
+    private long fPropagationSteps;
+
+    private final Histogram fSizes = new Histogram();
+
+    private long fTextLength;
+
+    /**
+     * Returns the current aggregated statistics.
+     * 
+     * @param reset if this flag is <code>true</code> then all statistics are
+     *        reset after the snapshot is taken
+     * @return a snapshot of aggregated statistics
+     */
+    public synchronized Snapshot getSnapshot(boolean reset) {
+        Snapshot snapshot = new Snapshot(this);
+        if (reset) {
+            reset();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.IScoringMetricsListener#onDocumentScored(org.ubimix.analyzer.scores.ScoringMetrics)
+     */
+    @Override
+    public synchronized void onDocumentScored(ScoringMetrics metrics) {
+        fAllocatedChannels += metrics.getAllocatedChannels();
+        fDurations.add(metrics.getDuration());
+        fMaxDepth = Math.max(fMaxDepth, metrics.getMaxDepth());
+        fPropagationSteps += metrics.getPropagationSteps();
+        fSizes.add(metrics.getTagsNumber());
+        fTextLength += metrics.getTextLength();
+    }
+
+    /**
+     * Resets all statistics.
+     */
+    public synchronized void reset() {
+        fAllocatedChannels = 0;
+        fDurations.clear();
+        fMaxDepth = 0;
+        fPropagationSteps = 0;
+        fSizes.clear();
+        fTextLength = 0;
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import org.ubimix.analyzer.scores.ArenaScoreGenerator;
+import org.ubimix.analyzer.scores.IChannelsManager;
+import org.ubimix.analyzer.scores.IScoreReductionProvider;
+import org.ubimix.analyzer.scores.ITagScoreDetector;
+import org.ubimix.analyzer.scores.ITagWeightDetector;
+import org.ubimix.analyzer.scores.ITextScoreDetector;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+
+/**
+ * An immutable scoring configuration. Instances of this class are created by
+ * the {@link ScoreGeneratorFactory#compile()} method. All detectors
+ * implementing the {@link IFreezable} interface are replaced by their frozen
+ * copies, so later modifications of the factory configuration do not change
+ * the model. A model could be shared by any number of threads; each thread
+ * should use its own score generators created by this model.
+ * <p>
+ * Detectors which are not {@link IFreezable} are used as is; they should be
+ * immutable and should return new {@link org.ubimix.analyzer.scores.Channels}
+ * instances from all detection methods. Text score detectors could also return
+ * shared read-only scores, as the {@link CachingTextScoreDetector} does.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public final class ScoringModel<T> {
+
+    @SuppressWarnings("unchecked")
+    private static <V> V freeze(V value) {
+        if (value instanceof IFreezable<?>) {
+            value = ((IFreezable<V>) value).freeze();
+        }
+        return value;
+    }
+
+    private final IChannelsManager fChannelsManager;
+
+    private final IScoreReductionProvider fScoreReductionProvider;
+
+    private final ITagScoreDetector<T> fTagScoreDetector;
+
+    private final ITagWeightDetector<T> fTagWeightDetector;
+
+    private final ITextScoreDetector fTextScoreDetector;
+
+    public ScoringModel(
+        IChannelsManager channelsManager,
+        ITagScoreDetector<T> tagScoreDetector,
+        ITagWeightDetector<T> tagWeightDetector,
+        ITextScoreDetector textScoreDetector,
+        IScoreReductionProvider scoreReductionProvider) {
+        fChannelsManager = channelsManager;
+        fTagScoreDetector = freeze(tagScoreDetector);
+        fTagWeightDetector = freeze(tagWeightDetector);
+        fTextScoreDetector = freeze(textScoreDetector);
+        fScoreReductionProvider = scoreReductionProvider;
+    }
+
+    public IChannelsManager getChannelsManager() {
+        return fChannelsManager;
+    }
+
+    public IScoreReductionProvider getScoreReductionProvider() {
+        return fScoreReductionProvider;
+    }
+
+    public ITagScoreDetector<T> getTagScoreDetector() {
+        return fTagScoreDetector;
+    }
+
+    public ITagWeightDetector<T> getTagWeightDetector() {
+        return fTagWeightDetector;
+    }
+
+    public ITextScoreDetector getTextScoreDetector() {
+        return fTextScoreDetector;
+    }
+
+    /**
+     * Returns a new score generator storing all tag scores in one flat array.
+     * 
+     * @return a new arena-based score generator
+     */
+    public ArenaScoreGenerator<T> newArenaScoreGenerator() {
+        return new ArenaScoreGenerator<T>(
+            fChannelsManager,
+            fTagScoreDetector,
+            fTagWeightDetector,
+            fTextScoreDetector,
+            fScoreReductionProvider);
+    }
+
+    /**
+     * Returns a new score generator using this model. Generators are not
+     * thread-safe and should not be shared between threads.
+     * 
+     * @return a new score generator
+     */
+    public ScoreGenerator<T> newScoreGenerator() {
+        return new ScoreGenerator<T>(
+            fChannelsManager,
+            fTagScoreDetector,
+            fTagWeightDetector,
+            fTextScoreDetector,
+            fScoreReductionProvider);
+    }
+
+}
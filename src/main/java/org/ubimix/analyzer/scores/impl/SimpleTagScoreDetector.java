@@ -3,6 +3,7 @@
  */
 package org.ubimix.analyzer.scores.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,10 +14,34 @@ import org.ubimix.analyzer.scores.ITextScoreDetector;
 /**
  * @author kotelnikov
  */
-public class SimpleTagScoreDetector<T> extends AbstractTagScoreDetector<T> {
+public class SimpleTagScoreDetector<T> extends AbstractTagScoreDetector<T>
+    implements
+    IFreezable<SimpleTagScoreDetector<T>> {
+
+    /**
+     * Returns a frozen copy of the given text score detector if it is
+     * freezable; otherwise returns the detector itself.
+     */
+    static ITextScoreDetector freeze(ITextScoreDetector detector) {
+        if (detector instanceof IFreezable<?>) {
+            Object frozen = ((IFreezable<?>) detector).freeze();
+            detector = (ITextScoreDetector) frozen;
+        }
+        return detector;
+    }
+
+    /**
+     * This flag is <code>true</code> if this detector could not be modified
+     */
+    private final boolean fFrozen;
 
     private Map<String, Channels> fTagScores = new HashMap<String, Channels>();
 
+    /**
+     * Tag scores indexed by tag identifiers
+     */
+    private final Channels[] fTagScoreTable;
+
     private Map<String, ITextScoreDetector> fTextScoreDetectors = new HashMap<String, ITextScoreDetector>();
 
     /**
@@ -26,47 +51,134 @@ public class SimpleTagScoreDetector<T> extends AbstractTagScoreDetector<T> {
         ITagInfoProvider<T> provider,
         IChannelsManager channelsManager) {
         super(channelsManager, provider);
+        fTagScoreTable = new Channels[TagSymbols.getTagsNumber()];
+        fFrozen = false;
+    }
+
+    /**
+     * A copy constructor creating an immutable copy of the given detector
+     */
+    private SimpleTagScoreDetector(SimpleTagScoreDetector<T> detector) {
+        super(detector.fChannelsManager, detector.fTagInfoProvider);
+        fTagScores = Collections
+            .unmodifiableMap(SimpleTagWeightDetector.copy(
+                detector.fTagScores,
+                new HashMap<String, Channels>()));
+        fTagScoreTable = SimpleTagWeightDetector.newTagTable(fTagScores);
+        Map<ITextScoreDetector, ITextScoreDetector> frozen = new HashMap<ITextScoreDetector, ITextScoreDetector>();
+        Map<String, ITextScoreDetector> textScoreDetectors = new HashMap<String, ITextScoreDetector>();
+        for (Map.Entry<String, ITextScoreDetector> entry : detector.fTextScoreDetectors
+            .entrySet()) {
+            ITextScoreDetector textScoreDetector = entry.getValue();
+            ITextScoreDetector copy = frozen.get(textScoreDetector);
+            if (copy == null) {
+                copy = freeze(textScoreDetector);
+                frozen.put(textScoreDetector, copy);
+            }
+            textScoreDetectors.put(entry.getKey(), copy);
+        }
+        fTextScoreDetectors = Collections.unmodifiableMap(textScoreDetectors);
+        fFrozen = true;
+    }
+
+    private void addAttributeScore(
+        Channels score,
+        String attrName,
+        String attrValue) {
+        if (attrValue != null && !"".equals(attrValue)) {
+            ITextScoreDetector detector = fTextScoreDetectors.get(attrName);
+            if (detector != null) {
+                Channels value = detector.getTextScore(attrValue);
+                if (value != null) {
+                    score.add(value);
+                }
+            }
+        }
     }
 
     public void addTagScore(Channels weight, String... tags) {
+        checkNotFrozen();
         for (String tag : tags) {
             fTagScores.put(tag, weight);
+            int tagId = TagSymbols.getTagId(tag);
+            if (tagId != TagSymbols.UNKNOWN) {
+                fTagScoreTable[tagId] = weight;
+            }
         }
     }
 
     public void addTextScore(
         ITextScoreDetector textScoreDetector,
         String... attrNames) {
+        checkNotFrozen();
         for (String attr : attrNames) {
             fTextScoreDetectors.put(attr, textScoreDetector);
         }
     }
 
+    private void checkNotFrozen() {
+        if (fFrozen) {
+            throw new IllegalStateException("This detector is frozen.");
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.IFreezable#freeze()
+     */
+    @Override
+    public SimpleTagScoreDetector<T> freeze() {
+        return new SimpleTagScoreDetector<T>(this);
+    }
+
     /**
      * @see org.ubimix.analyzer.scores.ITagScoreDetector#getTagScore(T)
      */
     @Override
     public Channels getTagScore(T tag) {
-        String tagName = getTagName(tag);
-        Channels score = fTagScores.get(tagName);
-        if (score == null) {
+        return getTagScore(tag, getTagId(tag));
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ITagIdScoreDetector#getTagScore(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public Channels getTagScore(T tag, int tagId) {
+        Channels score;
+        if (tagId != TagSymbols.UNKNOWN) {
+            score = fTagScoreTable[tagId];
+        } else {
+            String tagName = getTagName(tag);
+            score = fTagScores.get(tagName);
+        }
+        if (score != null) {
+            // Stored scores are shared and should never be modified
+            score = score.getCopy();
+        } else {
             score = fChannelsManager.newChannels(0);
         }
-        Iterable<Map.Entry<String, String>> attributes = getTagAttributes(tag);
-        for (Map.Entry<String, String> entry : attributes) {
-            String attrName = entry.getKey();
-            String attrValue = entry.getValue();
-            if (attrValue != null && !"".equals(attrValue)) {
-                ITextScoreDetector detector = fTextScoreDetectors.get(attrName);
-                if (detector != null) {
-                    Channels value = detector.getTextScore(attrValue);
-                    if (value != null) {
-                        score.add(value);
-                    }
-                }
+        ITagAttributesProvider<T> provider = fTagAttributesProvider;
+        if (provider != null) {
+            int attributesNumber = provider.getAttributesNumber(tag);
+            for (int i = 0; i < attributesNumber; i++) {
+                addAttributeScore(
+                    score,
+                    provider.getAttributeName(tag, i),
+                    provider.getAttributeValue(tag, i));
+            }
+        } else {
+            for (Map.Entry<String, String> entry : getTagAttributes(tag)) {
+                addAttributeScore(score, entry.getKey(), entry.getValue());
             }
         }
         return score;
     }
 
+    /**
+     * @return <code>true</code> if this detector could not be modified
+     */
+    public boolean isFrozen() {
+        return fFrozen;
+    }
+
 }
@@ -3,52 +3,273 @@
  */
 package org.ubimix.analyzer.scores.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
-import org.ubimix.analyzer.scores.ITagWeightDetector;
+import org.ubimix.analyzer.scores.ITagIdWeightDetector;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagIdProvider;
 import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagInfoProvider;
 
 /**
  * @author kotelnikov
  */
-public class SimpleTagWeightDetector<T> implements ITagWeightDetector<T> {
+public class SimpleTagWeightDetector<T>
+    implements
+    ITagIdWeightDetector<T>,
+    IFreezable<SimpleTagWeightDetector<T>> {
 
+    /**
+     * Weights of all attribute values (markers) registered for one attribute
+     * name. Markers are searched in attribute values with a
+     * {@link MarkerAutomaton}, so the search time does not depend on the
+     * number of markers.
+     */
     private static class AttrValueWeights {
 
         private Map<String, Channels> fMap = new LinkedHashMap<String, Channels>();
 
+        /**
+         * Compiled markers; this object is re-created when a new marker is
+         * added
+         */
+        private Markers fMarkers;
+
         public AttrValueWeights() {
         }
 
+        /**
+         * A copy constructor creating an immutable copy of the given object
+         */
+        public AttrValueWeights(AttrValueWeights weights) {
+            fMap = Collections.unmodifiableMap(copy(
+                weights.fMap,
+                new LinkedHashMap<String, Channels>()));
+            getMarkers();
+        }
+
         public void add(String value, Channels weight) {
             fMap.put(value, weight);
+            fMarkers = null;
+        }
+
+        /**
+         * Multiplies the given weight by weights of markers found in the
+         * specified attribute value. An empty marker matches all values. Other
+         * markers are matched as <code>attrValue.indexOf(marker) > 0</code>:
+         * only the first occurrence of a marker is taken into account, so a
+         * value starting with a marker never matches it, even if the marker
+         * occurs again later in the value.
+         * 
+         * @param attrValue the attribute value
+         * @param weight the weight to update
+         * @param combination defines how weights of several found markers are
+         *        combined
+         */
+        public void apply(
+            String attrValue,
+            Channels weight,
+            WeightCombination combination) {
+            Markers markers = getMarkers();
+            MarkerAutomaton automaton = markers.fAutomaton;
+            Channels[] weights = markers.fWeights;
+            int len = attrValue.length();
+            if (combination == WeightCombination.FIRST) {
+                int first = markers.fFirstEmpty;
+                int state = automaton.getRoot();
+                for (int i = 0; i < len && first != 0; i++) {
+                    state = automaton.next(state, attrValue.charAt(i));
+                    for (int out = automaton.getOutput(state); out >= 0; out = automaton
+                        .getNextOutput(out)) {
+                        int marker = automaton.getMarker(out);
+                        if ((first < 0 || marker < first)
+                            && isMatch(markers, attrValue, marker, i)) {
+                            first = marker;
+                        }
+                    }
+                }
+                if (first >= 0 && weights[first] != null) {
+                    weight.multiply(weights[first]);
+                }
+            } else {
+                boolean[] found = null;
+                int state = automaton.getRoot();
+                for (int i = 0; i < len; i++) {
+                    state = automaton.next(state, attrValue.charAt(i));
+                    for (int out = automaton.getOutput(state); out >= 0; out = automaton
+                        .getNextOutput(out)) {
+                        int marker = automaton.getMarker(out);
+                        if (found == null) {
+                            found = new boolean[weights.length];
+                        }
+                        if (!found[marker]) {
+                            // Only the first occurrence of a marker is checked
+                            found[marker] = true;
+                            if (weights[marker] != null
+                                && isMatch(markers, attrValue, marker, i)) {
+                                weight.multiply(weights[marker]);
+                            }
+                        }
+                    }
+                }
+                if (markers.fFirstEmpty >= 0
+                    && weights[markers.fFirstEmpty] != null) {
+                    weight.multiply(weights[markers.fFirstEmpty]);
+                }
+            }
         }
 
-        public Channels getWeight(String attrValue) {
-            Channels result = null;
-            for (Map.Entry<String, Channels> entry : fMap.entrySet()) {
-                String value = entry.getKey();
-                if ("".equals(value) || attrValue.indexOf(value) > 0) {
-                    result = entry.getValue();
-                    break;
+        private Markers getMarkers() {
+            Markers markers = fMarkers;
+            if (markers == null) {
+                markers = new Markers(fMap);
+                fMarkers = markers;
+            }
+            return markers;
+        }
+
+        /**
+         * Returns <code>true</code> if the given marker ending at the
+         * specified position should be taken into account. It is the case if
+         * the marker is not at the beginning of the value and if its first
+         * occurrence is not at the beginning of the value either.
+         */
+        private boolean isMatch(
+            Markers markers,
+            String attrValue,
+            int marker,
+            int end) {
+            int start = end - markers.fAutomaton.getMarkerLength(marker) + 1;
+            return start > 0 && !attrValue.startsWith(markers.fValues[marker]);
+        }
+    }
+
+    /**
+     * Markers of one attribute compiled in an automaton with their weights
+     */
+    private static class Markers {
+
+        private final MarkerAutomaton fAutomaton;
+
+        /**
+         * The index of the empty marker or -1
+         */
+        private final int fFirstEmpty;
+
+        /**
+         * Markers in the order of their registration
+         */
+        private final String[] fValues;
+
+        /**
+         * Weights of markers in the order of their registration
+         */
+        private final Channels[] fWeights;
+
+        public Markers(Map<String, Channels> map) {
+            String[] markers = new String[map.size()];
+            fWeights = new Channels[markers.length];
+            int firstEmpty = -1;
+            int i = 0;
+            for (Map.Entry<String, Channels> entry : map.entrySet()) {
+                markers[i] = entry.getKey();
+                fWeights[i] = entry.getValue();
+                if (firstEmpty < 0 && markers[i].length() == 0) {
+                    firstEmpty = i;
                 }
+                i++;
             }
-            return result;
+            fFirstEmpty = firstEmpty;
+            fValues = markers;
+            fAutomaton = new MarkerAutomaton(markers);
         }
     }
 
+    /**
+     * Defines how weights of several markers found in the same attribute
+     * value are combined.
+     */
+    public enum WeightCombination {
+
+        /**
+         * Only the weight of the marker registered first is used.
+         */
+        FIRST,
+
+        /**
+         * Weights of all different found markers are multiplied.
+         */
+        PRODUCT
+    }
+
+    /**
+     * Copies all values of the given map to the target map and returns the
+     * target map.
+     */
+    static Map<String, Channels> copy(
+        Map<String, Channels> map,
+        Map<String, Channels> target) {
+        for (Map.Entry<String, Channels> entry : map.entrySet()) {
+            Channels value = entry.getValue();
+            target.put(entry.getKey(), value != null ? value.getCopy() : null);
+        }
+        return target;
+    }
+
+    /**
+     * Returns an array with values of the given map indexed by identifiers of
+     * known tag names (see {@link TagSymbols}).
+     */
+    static Channels[] newTagTable(Map<String, Channels> map) {
+        Channels[] table = new Channels[TagSymbols.getTagsNumber()];
+        for (Map.Entry<String, Channels> entry : map.entrySet()) {
+            int tagId = TagSymbols.getTagId(entry.getKey());
+            if (tagId != TagSymbols.UNKNOWN) {
+                table[tagId] = entry.getValue();
+            }
+        }
+        return table;
+    }
+
     private Map<String, AttrValueWeights> fAttrWeights = new HashMap<String, AttrValueWeights>();
 
     private IChannelsManager fChannelsManager;
 
+    /**
+     * This flag is <code>true</code> if this detector could not be modified
+     */
+    private final boolean fFrozen;
+
+    /**
+     * The tag info provider if it gives indexed access to attributes or
+     * <code>null</code>
+     */
+    private final ITagAttributesProvider<T> fTagAttributesProvider;
+
+    /**
+     * The tag info provider if it returns tag identifiers
+     */
+    private final ITagIdProvider<T> fTagIdProvider;
+
     private ITagInfoProvider<T> fTagInfoProvider;
 
     private Map<String, Channels> fTagWeights = new HashMap<String, Channels>();
 
+    /**
+     * Tag weights indexed by tag identifiers
+     */
+    private final Channels[] fTagWeightTable;
+
+    /**
+     * Defines how weights of several markers found in the same attribute
+     * value are combined
+     */
+    private WeightCombination fWeightCombination = WeightCombination.FIRST;
+
     /**
      * @param channelsManager
      */
@@ -57,12 +278,42 @@ public class SimpleTagWeightDetector<T> implements ITagWeightDetector<T> {
         IChannelsManager channelsManager) {
         fChannelsManager = channelsManager;
         fTagInfoProvider = provider;
+        fTagAttributesProvider = AbstractTagScoreDetector
+            .getTagAttributesProvider(provider);
+        fTagIdProvider = AbstractTagScoreDetector.getTagIdProvider(provider);
+        fTagWeightTable = new Channels[TagSymbols.getTagsNumber()];
+        fFrozen = false;
+    }
+
+    /**
+     * A copy constructor creating an immutable copy of the given detector
+     */
+    private SimpleTagWeightDetector(SimpleTagWeightDetector<T> detector) {
+        fChannelsManager = detector.fChannelsManager;
+        fTagInfoProvider = detector.fTagInfoProvider;
+        fTagAttributesProvider = detector.fTagAttributesProvider;
+        fTagIdProvider = detector.fTagIdProvider;
+        Map<String, AttrValueWeights> attrWeights = new HashMap<String, AttrValueWeights>();
+        for (Map.Entry<String, AttrValueWeights> entry : detector.fAttrWeights
+            .entrySet()) {
+            attrWeights.put(
+                entry.getKey(),
+                new AttrValueWeights(entry.getValue()));
+        }
+        fAttrWeights = Collections.unmodifiableMap(attrWeights);
+        fTagWeights = Collections.unmodifiableMap(copy(
+            detector.fTagWeights,
+            new HashMap<String, Channels>()));
+        fTagWeightTable = newTagTable(fTagWeights);
+        fWeightCombination = detector.fWeightCombination;
+        fFrozen = true;
     }
 
     public void addAttrWeight(
         String attr,
         Channels weight,
         String... attrValues) {
+        checkNotFrozen();
         AttrValueWeights w = fAttrWeights.get(attr);
         if (w == null) {
             w = new AttrValueWeights();
@@ -83,35 +334,113 @@ public class SimpleTagWeightDetector<T> implements ITagWeightDetector<T> {
     }
 
     public void addTagWeight(Channels weight, String... tags) {
+        checkNotFrozen();
         for (String tag : tags) {
             fTagWeights.put(tag, weight);
+            int tagId = TagSymbols.getTagId(tag);
+            if (tagId != TagSymbols.UNKNOWN) {
+                fTagWeightTable[tagId] = weight;
+            }
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (fFrozen) {
+            throw new IllegalStateException("This detector is frozen.");
         }
     }
 
+    /**
+     * @see org.ubimix.analyzer.scores.impl.IFreezable#freeze()
+     */
+    @Override
+    public SimpleTagWeightDetector<T> freeze() {
+        return new SimpleTagWeightDetector<T>(this);
+    }
+
     /**
      * @see org.ubimix.analyzer.scores.ITagWeightDetector#getTagWeight(java.lang.Object)
      */
     @Override
     public Channels getTagWeight(T tag) {
-        String tagName = fTagInfoProvider.getTagName(tag);
-        Iterable<Map.Entry<String, String>> attributes = fTagInfoProvider
-            .getTagAttributes(tag);
-        Channels weight = fTagWeights.get(tagName);
-        if (weight == null) {
+        int tagId = fTagIdProvider != null
+            ? fTagIdProvider.getTagId(tag)
+            : TagSymbols.UNKNOWN;
+        return getTagWeight(tag, tagId);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ITagIdWeightDetector#getTagWeight(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public Channels getTagWeight(T tag, int tagId) {
+        Channels weight;
+        if (tagId != TagSymbols.UNKNOWN) {
+            weight = fTagWeightTable[tagId];
+        } else {
+            String tagName = fTagInfoProvider.getTagName(tag);
+            weight = fTagWeights.get(tagName);
+        }
+        if (weight != null) {
+            // Stored weights are shared and should never be modified
+            weight = weight.getCopy();
+        } else {
             weight = fChannelsManager.newChannels(1);
         }
-        for (Map.Entry<String, String> entry : attributes) {
-            String attrName = entry.getKey();
-            AttrValueWeights w = fAttrWeights.get(attrName);
-            if (w != null) {
-                String attrValue = entry.getValue();
-                Channels attrWeight = w.getWeight(attrValue);
-                if (attrWeight != null) {
-                    weight.multiply(attrWeight);
+        ITagAttributesProvider<T> provider = fTagAttributesProvider;
+        if (provider != null) {
+            int attributesNumber = provider.getAttributesNumber(tag);
+            for (int i = 0; i < attributesNumber; i++) {
+                AttrValueWeights w = fAttrWeights.get(provider
+                    .getAttributeName(tag, i));
+                if (w != null) {
+                    String attrValue = provider.getAttributeValue(tag, i);
+                    if (attrValue != null) {
+                        w.apply(attrValue, weight, fWeightCombination);
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<String, String> entry : fTagInfoProvider
+                .getTagAttributes(tag)) {
+                AttrValueWeights w = fAttrWeights.get(entry.getKey());
+                if (w != null) {
+                    String attrValue = entry.getValue();
+                    if (attrValue != null) {
+                        w.apply(attrValue, weight, fWeightCombination);
+                    }
                 }
             }
         }
         return weight;
     }
 
+    /**
+     * @return the mode of combination of weights of several markers found in
+     *         the same attribute value
+     */
+    public WeightCombination getWeightCombination() {
+        return fWeightCombination;
+    }
+
+    /**
+     * @return <code>true</code> if this detector could not be modified
+     */
+    public boolean isFrozen() {
+        return fFrozen;
+    }
+
+    /**
+     * Sets the mode of combination of weights of several markers found in the
+     * same attribute value. By default only the weight of the first
+     * registered marker is used ({@link WeightCombination#FIRST}).
+     * 
+     * @param weightCombination the combination mode to set
+     */
+    public void setWeightCombination(WeightCombination weightCombination) {
+        checkNotFrozen();
+        fWeightCombination = weightCombination;
+    }
+
 }
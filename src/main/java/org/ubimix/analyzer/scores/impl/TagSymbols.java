@@ -0,0 +1,191 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A fixed dictionary of known HTML element names. Each name has a small
+ * integer identifier which could be used as an index in detector tables
+ * instead of hash lookups by the tag name. Names are case-sensitive; the
+ * dictionary contains only lower-case names. Unknown names have the
+ * {@link #UNKNOWN} identifier.
+ * 
+ * @author kotelnikov
+ */
+public final class TagSymbols {
+
+    /**
+     * The identifier of all names which are not in the dictionary
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final String[] NAMES = {
+        "a",
+        "abbr",
+        "acronym",
+        "address",
+        "applet",
+        "area",
+        "article",
+        "aside",
+        "audio",
+        "b",
+        "base",
+        "basefont",
+        "bdi",
+        "bdo",
+        "big",
+        "blockquote",
+        "body",
+        "br",
+        "button",
+        "canvas",
+        "caption",
+        "center",
+        "cite",
+        "code",
+        "col",
+        "colgroup",
+        "data",
+        "datalist",
+        "dd",
+        "del",
+        "details",
+        "dfn",
+        "dialog",
+        "dir",
+        "div",
+        "dl",
+        "dt",
+        "em",
+        "embed",
+        "fieldset",
+        "figcaption",
+        "figure",
+        "font",
+        "footer",
+        "form",
+        "frame",
+        "frameset",
+        "h1",
+        "h2",
+        "h3",
+        "h4",
+        "h5",
+        "h6",
+        "head",
+        "header",
+        "hgroup",
+        "hr",
+        "html",
+        "i",
+        "iframe",
+        "img",
+        "input",
+        "ins",
+        "kbd",
+        "keygen",
+        "label",
+        "legend",
+        "li",
+        "link",
+        "main",
+        "map",
+        "mark",
+        "menu",
+        "meta",
+        "meter",
+        "nav",
+        "noframes",
+        "noscript",
+        "object",
+        "ol",
+        "optgroup",
+        "option",
+        "output",
+        "p",
+        "param",
+        "picture",
+        "pre",
+        "progress",
+        "q",
+        "rp",
+        "rt",
+        "ruby",
+        "s",
+        "samp",
+        "script",
+        "section",
+        "select",
+        "small",
+        "source",
+        "span",
+        "strike",
+        "strong",
+        "style",
+        "sub",
+        "summary",
+        "sup",
+        "svg",
+        "table",
+        "tbody",
+        "td",
+        "template",
+        "textarea",
+        "tfoot",
+        "th",
+        "thead",
+        "time",
+        "title",
+        "tr",
+        "track",
+        "tt",
+        "u",
+        "ul",
+        "var",
+        "video",
+        "wbr" };
+
+    private static final Map<String, Integer> IDS = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            IDS.put(NAMES[i], i);
+        }
+    }
+
+    /**
+     * Returns the identifier of the tag with the specified name.
+     * 
+     * @param name the name of the tag
+     * @return the identifier of the tag or {@link #UNKNOWN} if the name is not
+     *         in the dictionary
+     */
+    public static int getTagId(String name) {
+        Integer id = name != null ? IDS.get(name) : null;
+        return id != null ? id.intValue() : UNKNOWN;
+    }
+
+    /**
+     * @param tagId the identifier of a tag
+     * @return the name corresponding to the specified tag identifier
+     */
+    public static String getTagName(int tagId) {
+        return NAMES[tagId];
+    }
+
+    /**
+     * @return the number of names in the dictionary; all tag identifiers are
+     *         less than this value
+     */
+    public static int getTagsNumber() {
+        return NAMES.length;
+    }
+
+    private TagSymbols() {
+    }
+
+}
@@ -1,7 +1,15 @@
 package org.ubimix.analyzer.scores.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
@@ -10,16 +18,250 @@ import org.ubimix.analyzer.scores.ITextScoreDetector;
 /**
  * @author kotelnikov
  */
-public class TagWeightDetector<T> extends AbstractTagScoreDetector<T> {
+public class TagWeightDetector<T> extends AbstractTagScoreDetector<T>
+    implements
+    IFreezable<TagWeightDetector<T>> {
+
+    /**
+     * A set of matchers compiled for fast lookups. Values of
+     * {@link TextMatcher}s are indexed in a hash map. Consecutive instances
+     * of the {@link TextMatcher} and {@link RegexMatcher} classes themselves
+     * are joined in one alternation pattern; the first matching alternative
+     * gives the result, so the order of matchers is respected. Other matchers
+     * (including subclasses of these classes) are called individually.
+     * Resolved keys are cached, so the lookup of an already seen key is one
+     * hash lookup without allocations. Matchers should be deterministic.
+     */
+    private static class CompiledMatchers<N> {
+
+        /**
+         * The maximal number of cached keys
+         */
+        private static final int MAX_CACHE_SIZE = 1024;
+
+        /**
+         * This value is used in the cache for keys without results
+         */
+        private static final Object NULL = new Object();
+
+        /**
+         * Returns <code>true</code> if the given regular expression could not
+         * be joined with other expressions (it contains back references or
+         * named groups).
+         */
+        private static boolean isStandalone(String regex) {
+            for (int i = 0; i < regex.length() - 1; i++) {
+                char ch = regex.charAt(i);
+                if (ch == '\\') {
+                    char next = regex.charAt(i + 1);
+                    if (Character.isDigit(next) || next == 'k') {
+                        return true;
+                    }
+                    i++;
+                } else if (ch == '(' && regex.startsWith("(?<", i)) {
+                    if (!regex.startsWith("(?<=", i)
+                        && !regex.startsWith("(?<!", i)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private final Map<String, Object> fCache = new ConcurrentHashMap<String, Object>();
+
+        /**
+         * Values of text matchers
+         */
+        private final Map<String, N> fLiterals = new HashMap<String, N>();
+
+        /**
+         * Lookup steps in the order of matchers; each step is a
+         * {@link PatternStep} or an {@link IMatcher}
+         */
+        private final List<Object> fSteps = new ArrayList<Object>();
+
+        /**
+         * Values corresponding to steps; for patterns these are arrays of
+         * values corresponding to alternatives
+         */
+        private final List<Object> fValues = new ArrayList<Object>();
+
+        public CompiledMatchers(Map<IMatcher, N> map) {
+            List<Map.Entry<IMatcher, N>> run = new ArrayList<Map.Entry<IMatcher, N>>();
+            for (Map.Entry<IMatcher, N> entry : map.entrySet()) {
+                IMatcher matcher = entry.getKey();
+                if (matcher instanceof TextMatcher) {
+                    String value = ((TextMatcher) matcher).fValue;
+                    if (!fLiterals.containsKey(value)) {
+                        fLiterals.put(value, entry.getValue());
+                    }
+                }
+                Class<?> type = matcher.getClass();
+                boolean joined = type == TextMatcher.class;
+                if (type == RegexMatcher.class) {
+                    joined = !isStandalone(((RegexMatcher) matcher).fValue);
+                }
+                if (joined) {
+                    run.add(entry);
+                } else {
+                    addPatternSteps(run);
+                    fSteps.add(matcher);
+                    fValues.add(entry.getValue());
+                }
+            }
+            addPatternSteps(run);
+        }
+
+        /**
+         * Joins the given text and regex matchers in one pattern and clears
+         * the list.
+         */
+        private void addPatternSteps(List<Map.Entry<IMatcher, N>> run) {
+            if (run.isEmpty()) {
+                return;
+            }
+            StringBuilder buf = new StringBuilder();
+            int[] groups = new int[run.size()];
+            Object[] values = new Object[run.size()];
+            int group = 1;
+            for (int i = 0; i < run.size(); i++) {
+                Map.Entry<IMatcher, N> entry = run.get(i);
+                IMatcher matcher = entry.getKey();
+                String literal = Pattern.quote(((TextMatcher) matcher).fValue);
+                String regex;
+                int groupCount = 0;
+                if (matcher instanceof RegexMatcher) {
+                    Pattern pattern = ((RegexMatcher) matcher).getPattern();
+                    groupCount = pattern.matcher("").groupCount();
+                    regex = literal + "|" + pattern.pattern();
+                } else {
+                    regex = literal;
+                }
+                if (i > 0) {
+                    buf.append('|');
+                }
+                buf.append('(').append(regex).append(')');
+                groups[i] = group;
+                values[i] = entry.getValue();
+                group += groupCount + 1;
+            }
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(buf.toString());
+            } catch (PatternSyntaxException e) {
+                // Expressions could not be joined; use them individually
+                for (Map.Entry<IMatcher, N> entry : run) {
+                    fSteps.add(entry.getKey());
+                    fValues.add(entry.getValue());
+                }
+                run.clear();
+                return;
+            }
+            fSteps.add(new PatternStep(pattern, groups));
+            fValues.add(values);
+            run.clear();
+        }
+
+        /**
+         * Returns the value of the first matcher accepting the given key.
+         * 
+         * @param key the key to check
+         * @return the value of the first matching matcher
+         */
+        @SuppressWarnings("unchecked")
+        public N get(String key) {
+            if (key == null) {
+                return null;
+            }
+            Object result = fCache.get(key);
+            if (result == null) {
+                result = resolve(key);
+                if (fCache.size() < MAX_CACHE_SIZE) {
+                    fCache.put(key, result != null ? result : NULL);
+                }
+            } else if (result == NULL) {
+                result = null;
+            }
+            return (N) result;
+        }
+
+        private Object resolve(String key) {
+            Object result = fLiterals.get(key);
+            if (result != null) {
+                return result;
+            }
+            for (int i = 0; i < fSteps.size(); i++) {
+                Object step = fSteps.get(i);
+                if (step instanceof PatternStep) {
+                    int idx = ((PatternStep) step).match(key);
+                    if (idx >= 0) {
+                        return ((Object[]) fValues.get(i))[idx];
+                    }
+                } else if (((IMatcher) step).match(key)) {
+                    return fValues.get(i);
+                }
+            }
+            return null;
+        }
+    }
 
     public static interface IMatcher {
         boolean match(String value);
     }
 
+    /**
+     * A pattern joining several matchers with the groups corresponding to
+     * individual matchers
+     */
+    private static class PatternStep {
+
+        /**
+         * Indexes of groups corresponding to alternatives
+         */
+        private final int[] fGroups;
+
+        private final Pattern fPattern;
+
+        public PatternStep(Pattern pattern, int[] groups) {
+            fPattern = pattern;
+            fGroups = groups;
+        }
+
+        /**
+         * Returns the index of the first alternative matching the given
+         * value or -1.
+         */
+        public int match(String value) {
+            Matcher matcher = fPattern.matcher(value);
+            if (matcher.matches()) {
+                for (int i = 0; i < fGroups.length; i++) {
+                    if (matcher.start(fGroups[i]) >= 0) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
     public static class RegexMatcher extends TagWeightDetector.TextMatcher {
 
+        /**
+         * The compiled regular expression
+         */
+        private final Pattern fPattern;
+
         public RegexMatcher(String regex) {
             super(regex);
+            fPattern = Pattern.compile(fValue);
+        }
+
+        /**
+         * @return the compiled regular expression of this matcher
+         */
+        public Pattern getPattern() {
+            return fPattern;
         }
 
         @Override
@@ -27,7 +269,7 @@ public class TagWeightDetector<T> extends AbstractTagScoreDetector<T> {
             if (super.match(value)) {
                 return true;
             }
-            return value.matches(fValue);
+            return value != null && fPattern.matcher(value).matches();
         }
     }
 
@@ -74,44 +316,124 @@ public class TagWeightDetector<T> extends AbstractTagScoreDetector<T> {
 
     }
 
+    /**
+     * This flag is <code>true</code> if this detector could not be modified
+     */
+    private final boolean fFrozen;
+
+    /**
+     * Compiled tag matchers; this field is reset when a new tag score is
+     * added
+     */
+    private CompiledMatchers<Channels> fTagMatchers;
+
     private Map<TagWeightDetector.IMatcher, Channels> fTagScores = new LinkedHashMap<TagWeightDetector.IMatcher, Channels>();
 
+    /**
+     * Scores of known tags (see {@link TagSymbols}) indexed by their
+     * identifiers; this field is reset when a new tag score is added and the
+     * table is re-calculated on the next lookup.
+     */
+    private Channels[] fTagScoreTable;
+
+    /**
+     * Compiled attribute matchers; this field is reset when a new text score
+     * detector is added
+     */
+    private CompiledMatchers<ITextScoreDetector> fTextMatchers;
+
     private Map<TagWeightDetector.IMatcher, ITextScoreDetector> fTextScores = new LinkedHashMap<TagWeightDetector.IMatcher, ITextScoreDetector>();
 
     public TagWeightDetector(
         ITagInfoProvider<T> provider,
         IChannelsManager channelsManager) {
         super(channelsManager, provider);
+        fFrozen = false;
+    }
+
+    /**
+     * A copy constructor creating an immutable copy of the given detector
+     */
+    private TagWeightDetector(TagWeightDetector<T> detector) {
+        super(detector.fChannelsManager, detector.fTagInfoProvider);
+        Map<TagWeightDetector.IMatcher, Channels> tagScores = new LinkedHashMap<TagWeightDetector.IMatcher, Channels>();
+        for (Map.Entry<TagWeightDetector.IMatcher, Channels> entry : detector.fTagScores
+            .entrySet()) {
+            Channels value = entry.getValue();
+            tagScores.put(entry.getKey(), value != null
+                ? value.getCopy()
+                : null);
+        }
+        fTagScores = Collections.unmodifiableMap(tagScores);
+        getTagScoreTable();
+        Map<TagWeightDetector.IMatcher, ITextScoreDetector> textScores = new LinkedHashMap<TagWeightDetector.IMatcher, ITextScoreDetector>();
+        for (Map.Entry<TagWeightDetector.IMatcher, ITextScoreDetector> entry : detector.fTextScores
+            .entrySet()) {
+            textScores.put(
+                entry.getKey(),
+                SimpleTagScoreDetector.freeze(entry.getValue()));
+        }
+        fTextScores = Collections.unmodifiableMap(textScores);
+        getTextMatchers();
+        fFrozen = true;
+    }
+
+    private void addAttributeScore(
+        CompiledMatchers<ITextScoreDetector> textMatchers,
+        Channels weight,
+        String attrName,
+        String attrValue) {
+        if (attrValue != null && !"".equals(attrValue)) {
+            ITextScoreDetector detector = textMatchers.get(attrName);
+            if (detector != null) {
+                Channels value = detector.getTextScore(attrValue);
+                if (value != null) {
+                    weight.add(value);
+                }
+            }
+        }
     }
 
     public TagWeightDetector<T> addTagScore(
         TagWeightDetector.IMatcher tagMatcher,
         Channels tagScore) {
+        checkNotFrozen();
         fTagScores.put(tagMatcher, tagScore);
+        fTagMatchers = null;
+        fTagScoreTable = null;
         return this;
     }
 
     public TagWeightDetector<T> addTextScore(
         TagWeightDetector.IMatcher attrMatcher,
         ITextScoreDetector textScoretDetector) {
+        checkNotFrozen();
         fTextScores.put(attrMatcher, textScoretDetector);
+        fTextMatchers = null;
         return this;
     }
 
-    private <N> N get(Map<TagWeightDetector.IMatcher, N> map, String key) {
-        TagWeightDetector.IMatcher matcher = new TextMatcher(key);
-        N result = map.get(matcher);
-        if (result == null) {
-            for (Map.Entry<TagWeightDetector.IMatcher, N> entry : map
-                .entrySet()) {
-                matcher = entry.getKey();
-                if (matcher.match(key)) {
-                    result = entry.getValue();
-                    break;
-                }
-            }
+    private void checkNotFrozen() {
+        if (fFrozen) {
+            throw new IllegalStateException("This detector is frozen.");
         }
-        return result;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.IFreezable#freeze()
+     */
+    @Override
+    public TagWeightDetector<T> freeze() {
+        return new TagWeightDetector<T>(this);
+    }
+
+    private CompiledMatchers<Channels> getTagMatchers() {
+        CompiledMatchers<Channels> matchers = fTagMatchers;
+        if (matchers == null) {
+            matchers = new CompiledMatchers<Channels>(fTagScores);
+            fTagMatchers = matchers;
+        }
+        return matchers;
     }
 
     /**
@@ -119,26 +441,79 @@ public class TagWeightDetector<T> extends AbstractTagScoreDetector<T> {
      */
     @Override
     public Channels getTagScore(T tag) {
-        String tagName = getTagName(tag);
-        Channels weight = get(fTagScores, tagName);
-        if (weight == null) {
+        return getTagScore(tag, getTagId(tag));
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ITagIdScoreDetector#getTagScore(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public Channels getTagScore(T tag, int tagId) {
+        Channels weight;
+        if (tagId != TagSymbols.UNKNOWN) {
+            weight = getTagScoreTable()[tagId];
+        } else {
+            String tagName = getTagName(tag);
+            weight = getTagMatchers().get(tagName);
+        }
+        if (weight != null) {
+            // Stored scores are shared and should never be modified
+            weight = weight.getCopy();
+        } else {
             weight = fChannelsManager.newChannels(0);
         }
-        Iterable<Map.Entry<String, String>> attributes = getTagAttributes(tag);
-        for (Map.Entry<String, String> entry : attributes) {
-            String attrName = entry.getKey();
-            String attrValue = entry.getValue();
-            if (attrValue != null && !"".equals(attrValue)) {
-                ITextScoreDetector detector = get(fTextScores, attrName);
-                if (detector != null) {
-                    Channels value = detector.getTextScore(attrValue);
-                    if (value != null) {
-                        weight.add(value);
-                    }
-                }
+        CompiledMatchers<ITextScoreDetector> textMatchers = getTextMatchers();
+        ITagAttributesProvider<T> provider = fTagAttributesProvider;
+        if (provider != null) {
+            int attributesNumber = provider.getAttributesNumber(tag);
+            for (int i = 0; i < attributesNumber; i++) {
+                addAttributeScore(
+                    textMatchers,
+                    weight,
+                    provider.getAttributeName(tag, i),
+                    provider.getAttributeValue(tag, i));
+            }
+        } else {
+            for (Map.Entry<String, String> entry : getTagAttributes(tag)) {
+                addAttributeScore(
+                    textMatchers,
+                    weight,
+                    entry.getKey(),
+                    entry.getValue());
             }
         }
         return weight;
     }
 
+    private Channels[] getTagScoreTable() {
+        Channels[] table = fTagScoreTable;
+        if (table == null) {
+            CompiledMatchers<Channels> matchers = getTagMatchers();
+            table = new Channels[TagSymbols.getTagsNumber()];
+            for (int i = 0; i < table.length; i++) {
+                String tagName = TagSymbols.getTagName(i);
+                table[i] = matchers.get(tagName);
+            }
+            fTagScoreTable = table;
+        }
+        return table;
+    }
+
+    private CompiledMatchers<ITextScoreDetector> getTextMatchers() {
+        CompiledMatchers<ITextScoreDetector> matchers = fTextMatchers;
+        if (matchers == null) {
+            matchers = new CompiledMatchers<ITextScoreDetector>(fTextScores);
+            fTextMatchers = matchers;
+        }
+        return matchers;
+    }
+
+    /**
+     * @return <code>true</code> if this detector could not be modified
+     */
+    public boolean isFrozen() {
+        return fFrozen;
+    }
+
 }
\ No newline at end of file
@@ -1,16 +1,128 @@
 package org.ubimix.analyzer.scores.impl;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.ubimix.analyzer.scores.Channels;
 import org.ubimix.analyzer.scores.IChannelsManager;
-import org.ubimix.analyzer.scores.ITextScoreDetector;
+import org.ubimix.analyzer.scores.ICharTextScoreDetector;
 
-public class TextScoreDetector implements ITextScoreDetector {
+public class TextScoreDetector
+    implements
+    ICharTextScoreDetector,
+    IFreezable<TextScoreDetector> {
+
+    /**
+     * Character class of letters and digits which are not in upper case
+     */
+    protected static final int LOWER_CASE = 2;
+
+    /**
+     * Character class of spaces and new lines
+     */
+    protected static final int SPACE = 0;
+
+    /**
+     * Character class of all other characters
+     */
+    protected static final int SYMBOL = 3;
+
+    /**
+     * Character class of upper case letters and digits
+     */
+    protected static final int UPPER_CASE = 1;
+
+    /**
+     * Setting this system property to <code>false</code> disables the
+     * vectorized text score detector
+     */
+    public static final String VECTOR_PROPERTY = "org.ubimix.analyzer.vector";
+
+    /**
+     * The name of the vectorized detector class available on Java 17+
+     */
+    private static final String VECTOR_DETECTOR_CLASS = "org.ubimix.analyzer.scores.impl.VectorTextScoreDetector";
+
+    /**
+     * The number of characters in the Latin-1 range
+     */
+    private static final int LATIN1_SIZE = 256;
+
+    /**
+     * Classes of characters in the Latin-1 range
+     */
+    private static final byte[] LATIN1_CLASSES = new byte[LATIN1_SIZE];
+
+    static {
+        for (int i = 0; i < LATIN1_SIZE; i++) {
+            LATIN1_CLASSES[i] = (byte) classify((char) i);
+        }
+    }
+
+    /**
+     * Calculates the class of the given character using the
+     * {@link Character} methods.
+     */
+    private static int classify(char ch) {
+        if (Character.isSpaceChar(ch)
+            || ch == '\n'
+            || ch == '\r'
+            || ch == '\t') {
+            return SPACE;
+        }
+        if (Character.isLetterOrDigit(ch)) {
+            return Character.isUpperCase(ch) ? UPPER_CASE : LOWER_CASE;
+        }
+        return SYMBOL;
+    }
+
+    /**
+     * Returns the class of the specified character: {@link #SPACE},
+     * {@link #UPPER_CASE}, {@link #LOWER_CASE} or {@link #SYMBOL}.
+     * 
+     * @param ch the character to check
+     * @return the class of the character
+     */
+    protected static int getCharClass(char ch) {
+        return ch < LATIN1_SIZE ? LATIN1_CLASSES[ch] : classify(ch);
+    }
+
+    /**
+     * Returns a new text score detector. If the vectorized implementation
+     * (<code>VectorTextScoreDetector</code>) is present in the classpath and
+     * the <code>jdk.incubator.vector</code> module is available then this
+     * method returns an instance of this class; otherwise it returns a
+     * scalar {@link TextScoreDetector}. The vectorized detector could be
+     * disabled with the {@link #VECTOR_PROPERTY} system property.
+     * 
+     * @param channelsManager the channels manager
+     * @return a new text score detector
+     */
+    public static TextScoreDetector newInstance(IChannelsManager channelsManager) {
+        if (!"false".equals(System.getProperty(VECTOR_PROPERTY))) {
+            try {
+                Class<?> type = Class.forName(VECTOR_DETECTOR_CLASS);
+                Object detector = type
+                    .getConstructor(IChannelsManager.class)
+                    .newInstance(channelsManager);
+                return (TextScoreDetector) detector;
+            } catch (Exception e) {
+                // The vectorized detector is not available
+            } catch (LinkageError e) {
+                // The vector module is not available
+            }
+        }
+        return new TextScoreDetector(channelsManager);
+    }
 
     private IChannelsManager fChannelsManager;
 
+    /**
+     * This flag is <code>true</code> if this detector could not be modified
+     */
+    private final boolean fFrozen;
+
     private double fLowerCaseWeight = 1.0;
 
     private double fSpaceWeight = 0.8;
@@ -23,14 +135,44 @@ public class TextScoreDetector implements ITextScoreDetector {
 
     public TextScoreDetector(IChannelsManager channelsManager) {
         fChannelsManager = channelsManager;
+        fFrozen = false;
+    }
+
+    /**
+     * A copy constructor creating an immutable copy of the given detector
+     */
+    protected TextScoreDetector(TextScoreDetector detector) {
+        fChannelsManager = detector.fChannelsManager;
+        fLowerCaseWeight = detector.fLowerCaseWeight;
+        fSpaceWeight = detector.fSpaceWeight;
+        fSymbolWeight = detector.fSymbolWeight;
+        fTextAttributes = Collections
+            .unmodifiableSet(new HashSet<String>(detector.fTextAttributes));
+        fUpperCaseWeight = detector.fUpperCaseWeight;
+        fFrozen = true;
     }
 
     public void addTextAttributes(String... attributes) {
+        checkNotFrozen();
         for (String attr : attributes) {
             fTextAttributes.add(attr);
         }
     }
 
+    private void checkNotFrozen() {
+        if (fFrozen) {
+            throw new IllegalStateException("This detector is frozen.");
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.IFreezable#freeze()
+     */
+    @Override
+    public TextScoreDetector freeze() {
+        return new TextScoreDetector(this);
+    }
+
     public Channels getAttributeWeight(
         String tagName,
         String attrName,
@@ -67,73 +209,220 @@ public class TextScoreDetector implements ITextScoreDetector {
         return channels;
     }
 
+    /**
+     * Returns the score of the text in the specified range of the given
+     * buffer.
+     * 
+     * @see org.ubimix.analyzer.scores.ICharTextScoreDetector#getTextScore(char[],
+     *      int, int)
+     */
+    @Override
+    public Channels getTextScore(char[] buf, int start, int len) {
+        double weight = getTextWeight(buf, start, len, true);
+        return fChannelsManager.newChannels(weight);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ICharTextScoreDetector#getTextScore(java.lang.CharSequence)
+     */
+    @Override
+    public Channels getTextScore(CharSequence text) {
+        double weight = getTextWeight(text, true);
+        return fChannelsManager.newChannels(weight);
+    }
+
     public Channels getTextScore(String text) {
         return getTextChannels(text, true);
     }
 
-    protected double getTextWeight(String value, boolean reduceSpaces) {
-        char[] array = value.toCharArray();
-        int startPos = 0;
-        int lastPos = array.length - 1;
+    /**
+     * Calculates the weight of the text in the specified range of the given
+     * buffer. The result is the same as for the
+     * {@link #getTextWeight(CharSequence, boolean)} method called for a
+     * string with the same characters.
+     * 
+     * @param buf the buffer containing the text
+     * @param start the position of the first character of the text
+     * @param len the length of the text
+     * @param reduceSpaces if this flag is <code>true</code> then sequences of
+     *        spaces are counted as one space
+     * @return the weight of the text
+     */
+    protected double getTextWeight(
+        char[] buf,
+        int start,
+        int len,
+        boolean reduceSpaces) {
+        int end = start + len;
+        double spaceWeight = fSpaceWeight;
+        double weight = 0;
+
+        // Leading spaces; whitespace-only texts are handled here
+        int i = start;
+        while (i < end) {
+            char ch = buf[i];
+            int charClass = ch < LATIN1_SIZE
+                ? LATIN1_CLASSES[ch]
+                : classify(ch);
+            if (charClass != SPACE) {
+                break;
+            }
+            if (!reduceSpaces || i == start) {
+                weight += spaceWeight;
+            }
+            i++;
+        }
+
+        double upperCaseWeight = fUpperCaseWeight;
+        double lowerCaseWeight = fLowerCaseWeight;
+        double symbolWeight = fSymbolWeight;
+        boolean prevSpace = false;
+        for (; i < end; i++) {
+            char ch = buf[i];
+            int charClass = ch < LATIN1_SIZE
+                ? LATIN1_CLASSES[ch]
+                : classify(ch);
+            switch (charClass) {
+                case SPACE:
+                    if (!reduceSpaces || !prevSpace) {
+                        weight += spaceWeight;
+                    }
+                    prevSpace = true;
+                    break;
+                case UPPER_CASE:
+                    weight += upperCaseWeight;
+                    prevSpace = false;
+                    break;
+                case LOWER_CASE:
+                    weight += lowerCaseWeight;
+                    prevSpace = false;
+                    break;
+                default:
+                    weight += symbolWeight;
+                    prevSpace = false;
+                    break;
+            }
+        }
+        return weight;
+    }
 
+    /**
+     * Calculates the weight of the given text. Each character adds the weight
+     * of its class (upper case letter, other letter or digit, space or
+     * symbol). If the <code>reduceSpaces</code> flag is <code>true</code>
+     * then each sequence of spaces adds the space weight only once.
+     * Characters of the Latin-1 range are classified with a pre-calculated
+     * table; other characters use the {@link Character} methods.
+     * 
+     * @param value the text to analyze
+     * @param reduceSpaces if this flag is <code>true</code> then sequences of
+     *        spaces are counted as one space
+     * @return the weight of the text
+     */
+    protected double getTextWeight(CharSequence value, boolean reduceSpaces) {
+        int len = value.length();
+        double spaceWeight = fSpaceWeight;
         double weight = 0;
+
+        // Leading spaces; whitespace-only texts are handled here
+        int i = 0;
+        while (i < len) {
+            char ch = value.charAt(i);
+            int charClass = ch < LATIN1_SIZE
+                ? LATIN1_CLASSES[ch]
+                : classify(ch);
+            if (charClass != SPACE) {
+                break;
+            }
+            if (!reduceSpaces || i == 0) {
+                weight += spaceWeight;
+            }
+            i++;
+        }
+
+        double upperCaseWeight = fUpperCaseWeight;
+        double lowerCaseWeight = fLowerCaseWeight;
+        double symbolWeight = fSymbolWeight;
         boolean prevSpace = false;
-        for (int i = startPos; i <= lastPos; i++) {
-            char ch = array[i];
-            if (Character.isSpaceChar(ch)
-                || ch == '\n'
-                || ch == '\r'
-                || ch == '\t') {
-                if (!reduceSpaces || !prevSpace) {
-                    weight += fSpaceWeight;
-                }
-                prevSpace = true;
-            } else {
-                if (Character.isLetterOrDigit(ch)) {
-                    if (Character.isUpperCase(ch)) {
-                        weight += fUpperCaseWeight;
-                    } else {
-                        weight += fLowerCaseWeight;
+        for (; i < len; i++) {
+            char ch = value.charAt(i);
+            int charClass = ch < LATIN1_SIZE
+                ? LATIN1_CLASSES[ch]
+                : classify(ch);
+            switch (charClass) {
+                case SPACE:
+                    if (!reduceSpaces || !prevSpace) {
+                        weight += spaceWeight;
                     }
-                } else {
-                    weight += fSymbolWeight;
-                }
-                prevSpace = false;
+                    prevSpace = true;
+                    break;
+                case UPPER_CASE:
+                    weight += upperCaseWeight;
+                    prevSpace = false;
+                    break;
+                case LOWER_CASE:
+                    weight += lowerCaseWeight;
+                    prevSpace = false;
+                    break;
+                default:
+                    weight += symbolWeight;
+                    prevSpace = false;
+                    break;
             }
         }
         return weight;
     }
 
+    /**
+     * @see #getTextWeight(CharSequence, boolean)
+     */
+    protected double getTextWeight(String value, boolean reduceSpaces) {
+        return getTextWeight((CharSequence) value, reduceSpaces);
+    }
+
     public double getUpperCaseWeight() {
         return fUpperCaseWeight;
     }
 
+    /**
+     * @return <code>true</code> if this detector could not be modified
+     */
+    public boolean isFrozen() {
+        return fFrozen;
+    }
+
     public TextScoreDetector setChannelsManager(IChannelsManager channelsManager) {
+        checkNotFrozen();
         fChannelsManager = channelsManager;
         return this;
     }
 
     public TextScoreDetector setLowerCaseWeight(double lowerCaseWeight) {
+        checkNotFrozen();
         fLowerCaseWeight = lowerCaseWeight;
         return this;
     }
 
     public TextScoreDetector setSpaceWeight(double spaceWeight) {
+        checkNotFrozen();
         fSpaceWeight = spaceWeight;
         return this;
     }
 
     public TextScoreDetector setSymbolWeight(double symbolWeight) {
+        checkNotFrozen();
         fSymbolWeight = symbolWeight;
         return this;
     }
 
     public TextScoreDetector setTextAttributes(Set<String> textAttributes) {
+        checkNotFrozen();
         fTextAttributes = textAttributes;
         return this;
     }
 
     public TextScoreDetector setUpperCaseWeight(double upperCaseWeight) {
+        checkNotFrozen();
         fUpperCaseWeight = upperCaseWeight;
         return this;
     }
@@ -0,0 +1,273 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import org.ubimix.analyzer.scores.ITagListener;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+
+/**
+ * This listener keeps only a fixed number of tags with the best full scores.
+ * The score of each tag is a weighted sum of its full score channels. Tags are
+ * stored in a primitive min-heap, so the selection of K best tags among N
+ * requires O(N*log(K)) operations and the memory used by this object does not
+ * depend on the number of tags.
+ * 
+ * @author kotelnikov
+ */
+public class TopTagsCollector<T> implements ITagListener<T> {
+
+    private static double[] channelWeights(int channelsNumber, int channelId) {
+        double[] weights = new double[channelsNumber];
+        weights[channelId] = 1;
+        return weights;
+    }
+
+    /**
+     * Weights of individual channels used to calculate tag scores
+     */
+    private final double[] fChannelWeights;
+
+    /**
+     * Positions of heap elements
+     */
+    private final int[] fHeapPositions;
+
+    /**
+     * Scores of heap elements
+     */
+    private final double[] fHeapScores;
+
+    /**
+     * Tags of heap elements
+     */
+    private final Object[] fHeapTags;
+
+    /**
+     * Indexes of heap elements ordered by their scores
+     */
+    private final int[] fOrder;
+
+    /**
+     * The number of tags in the heap
+     */
+    private int fSize;
+
+    /**
+     * This flag is <code>true</code> when the {@link #fOrder} array
+     * corresponds to the current heap content.
+     */
+    private boolean fSorted;
+
+    /**
+     * This constructor creates a collector selecting tags by the full score in
+     * the specified channel.
+     * 
+     * @param count the maximal number of tags to keep
+     * @param channelsNumber the number of channels in scores
+     * @param channelId the identifier of the channel used to compare tags
+     */
+    public TopTagsCollector(int count, int channelsNumber, int channelId) {
+        this(count, channelWeights(channelsNumber, channelId));
+    }
+
+    /**
+     * This constructor creates a collector selecting tags by a weighted sum of
+     * their full score channels.
+     * 
+     * @param count the maximal number of tags to keep
+     * @param channelWeights weights of individual channels
+     */
+    public TopTagsCollector(int count, double... channelWeights) {
+        if (count <= 0) {
+            throw new IllegalArgumentException(
+                "The number of tags should be positive.");
+        }
+        fChannelWeights = channelWeights;
+        fHeapPositions = new int[count];
+        fHeapScores = new double[count];
+        fHeapTags = new Object[count];
+        fOrder = new int[count];
+    }
+
+    /**
+     * @return the maximal number of tags kept by this collector
+     */
+    public int getCapacity() {
+        return fHeapScores.length;
+    }
+
+    /**
+     * Returns the index of the tag with the specified rank in the heap
+     * 
+     * @param rank the rank of the tag; 0 corresponds to the best tag
+     * @return the index of the tag in the heap
+     */
+    private int getIndex(int rank) {
+        if (rank < 0 || rank >= fSize) {
+            throw new IndexOutOfBoundsException("Rank: "
+                + rank
+                + "; Size: "
+                + fSize);
+        }
+        if (!fSorted) {
+            for (int i = 0; i < fSize; i++) {
+                int idx = i;
+                int j = i - 1;
+                while (j >= 0 && isBefore(idx, fOrder[j])) {
+                    fOrder[j + 1] = fOrder[j];
+                    j--;
+                }
+                fOrder[j + 1] = idx;
+            }
+            fSorted = true;
+        }
+        return fOrder[rank];
+    }
+
+    /**
+     * Returns the score of the tag with the specified rank.
+     * 
+     * @param rank the rank of the tag; 0 corresponds to the best tag
+     * @return the score of the tag
+     */
+    public double getScore(int rank) {
+        return fHeapScores[getIndex(rank)];
+    }
+
+    /**
+     * Returns the score of the given tag used to select the best tags.
+     * 
+     * @param tagInfo the tag to evaluate
+     * @return the weighted sum of the full score channels of the tag
+     */
+    protected double getScore(TagInfo<T> tagInfo) {
+        double score = 0;
+        for (int i = 0; i < fChannelWeights.length; i++) {
+            double weight = fChannelWeights[i];
+            if (weight != 0) {
+                score += weight * tagInfo.getFullScoreLevel(i);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return the number of collected tags
+     */
+    public int getSize() {
+        return fSize;
+    }
+
+    /**
+     * Returns the tag with the specified rank.
+     * 
+     * @param rank the rank of the tag; 0 corresponds to the best tag
+     * @return the tag with the specified rank
+     */
+    @SuppressWarnings("unchecked")
+    public T getTag(int rank) {
+        return (T) fHeapTags[getIndex(rank)];
+    }
+
+    /**
+     * Returns the absolute linear position of the tag with the specified rank.
+     * 
+     * @param rank the rank of the tag; 0 corresponds to the best tag
+     * @return the position of the tag in the document
+     * @see TagInfo#getTagPos()
+     */
+    public int getTagPos(int rank) {
+        return fHeapPositions[getIndex(rank)];
+    }
+
+    /**
+     * Returns <code>true</code> if the first heap element should be placed
+     * before the second one in the list of results. Elements with the same
+     * score are ordered by their positions in the document.
+     */
+    private boolean isBefore(int first, int second) {
+        double a = fHeapScores[first];
+        double b = fHeapScores[second];
+        return a > b
+            || (a == b && fHeapPositions[first] < fHeapPositions[second]);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.ITagListener#onEndTag(org.ubimix.analyzer.scores.ScoreGenerator.TagInfo)
+     */
+    @Override
+    public void onEndTag(TagInfo<T> tagInfo) {
+        double score = getScore(tagInfo);
+        if (fSize < fHeapScores.length) {
+            int idx = fSize++;
+            set(idx, score, tagInfo);
+            siftUp(idx);
+            fSorted = false;
+        } else if (score > fHeapScores[0]) {
+            set(0, score, tagInfo);
+            siftDown(0);
+            fSorted = false;
+        }
+    }
+
+    /**
+     * Removes all collected tags.
+     */
+    public void reset() {
+        for (int i = 0; i < fSize; i++) {
+            fHeapTags[i] = null;
+        }
+        fSize = 0;
+        fSorted = false;
+    }
+
+    private void set(int idx, double score, TagInfo<T> tagInfo) {
+        fHeapScores[idx] = score;
+        fHeapPositions[idx] = tagInfo.getTagPos();
+        fHeapTags[idx] = tagInfo.getTag();
+    }
+
+    private void siftDown(int idx) {
+        while (true) {
+            int left = idx * 2 + 1;
+            if (left >= fSize) {
+                break;
+            }
+            int child = left;
+            int right = left + 1;
+            if (right < fSize && isBefore(child, right)) {
+                child = right;
+            }
+            if (!isBefore(idx, child)) {
+                break;
+            }
+            swap(idx, child);
+            idx = child;
+        }
+    }
+
+    private void siftUp(int idx) {
+        while (idx > 0) {
+            int parent = (idx - 1) / 2;
+            if (!isBefore(parent, idx)) {
+                break;
+            }
+            swap(idx, parent);
+            idx = parent;
+        }
+    }
+
+    private void swap(int first, int second) {
+        double score = fHeapScores[first];
+        fHeapScores[first] = fHeapScores[second];
+        fHeapScores[second] = score;
+        int pos = fHeapPositions[first];
+        fHeapPositions[first] = fHeapPositions[second];
+        fHeapPositions[second] = pos;
+        Object tag = fHeapTags[first];
+        fHeapTags[first] = fHeapTags[second];
+        fHeapTags[second] = tag;
+    }
+
+}
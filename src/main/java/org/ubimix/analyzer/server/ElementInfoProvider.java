@@ -4,16 +4,25 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagInfoProvider;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagIdProvider;
+import org.ubimix.analyzer.scores.impl.TagSymbols;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 /**
+ * This provider gives access to names and attributes of DOM elements.
+ * Attributes are accessed by their indexes in the {@link NamedNodeMap} of
+ * elements, so detectors inspect them without allocations.
+ * 
  * @author kotelnikov
  */
-public class ElementInfoProvider implements ITagInfoProvider<Element> {
+public class ElementInfoProvider
+    implements
+    ITagIdProvider<Element>,
+    ITagAttributesProvider<Element> {
 
     public static String getName(Node node) {
         String name = node.getNodeName();
@@ -23,6 +32,43 @@ public class ElementInfoProvider implements ITagInfoProvider<Element> {
         return name;
     }
 
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeName(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public String getAttributeName(Element tag, int index) {
+        return getName(tag.getAttributes().item(index));
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributesNumber(java.lang.Object)
+     */
+    @Override
+    public int getAttributesNumber(Element tag) {
+        return tag.getAttributes().getLength();
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeValue(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public String getAttributeValue(Element tag, int index) {
+        Attr attr = (Attr) tag.getAttributes().item(index);
+        return attr.getValue();
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeValue(java.lang.Object,
+     *      java.lang.String)
+     */
+    @Override
+    public String getAttributeValue(Element tag, String name) {
+        Attr attr = tag.getAttributeNode(name);
+        return attr != null ? attr.getValue() : null;
+    }
+
     @Override
     public Iterable<Map.Entry<String, String>> getTagAttributes(Element tag) {
         final NamedNodeMap attrs = tag.getAttributes();
@@ -78,6 +124,11 @@ public class ElementInfoProvider implements ITagInfoProvider<Element> {
         };
     }
 
+    @Override
+    public int getTagId(Element tag) {
+        return TagSymbols.getTagId(getName(tag));
+    }
+
     @Override
     public String getTagName(Element tag) {
         return getName(tag);
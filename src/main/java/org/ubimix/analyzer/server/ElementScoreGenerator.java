@@ -6,10 +6,21 @@ import org.w3c.dom.CDATASection;
 import org.w3c.dom.Element;
 import org.w3c.dom.Entity;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
 /**
+ * This object visits DOM trees and reports their tags and texts to a score
+ * generator. Trees are traversed without recursion: the path to the current
+ * element is kept in an array-backed stack and siblings are iterated with the
+ * {@link Node#getFirstChild()}/{@link Node#getNextSibling()} links, so the
+ * depth of visited trees is not limited by the thread stack. Tags and texts
+ * are reported in the document order.
+ * <p>
+ * The visited depth could be limited (see {@link #setMaxDepth(int)}). Elements
+ * deeper than the limit are not reported as tags; their texts are reported as
+ * texts of the deepest visited ancestor.
+ * </p>
+ * 
  * @author kotelnikov
  */
 public class ElementScoreGenerator {
@@ -22,8 +33,41 @@ public class ElementScoreGenerator {
         return name;
     }
 
+    /**
+     * Returns the text content of the given non-element node.
+     * 
+     * @param child the node to check
+     * @return the text content of the node or <code>null</code> if this node
+     *         does not contain any text
+     */
+    public static String getText(Node child) {
+        String content = null;
+        if (child instanceof CDATASection) {
+            CDATASection cdata = (CDATASection) child;
+            // content = cdata.getTextContent();
+            content = cdata.getData();
+        } else if (child instanceof Text) {
+            Text text = (Text) child;
+            content = text.getTextContent();
+        } else if (child instanceof Entity) {
+            Entity entity = (Entity) child;
+            content = entity.getTextContent();
+        }
+        return content;
+    }
+
     private ScoreGenerator<Element> fGenerator;
 
+    /**
+     * The maximal depth of reported tags
+     */
+    private int fMaxDepth = Integer.MAX_VALUE;
+
+    /**
+     * The stack of visited elements; it is re-used by consecutive visits.
+     */
+    private Element[] fStack = new Element[64];
+
     public ElementScoreGenerator(ScoreGenerator<Element> generator) {
         fGenerator = generator;
     }
@@ -36,35 +80,111 @@ public class ElementScoreGenerator {
         return fGenerator.endTag();
     }
 
+    /**
+     * This method is called when the given element is reached by the
+     * traversal. By default it begins a new tag. Subclasses could override it
+     * to handle the whole subtree in a different way.
+     * 
+     * @param tag the element to visit
+     * @return <code>true</code> if children of the element should be visited;
+     *         if this method returns <code>false</code> then the
+     *         {@link #exitTag(Element)} method is not called for this element
+     */
+    protected boolean enterTag(Element tag) {
+        beginTag(tag);
+        return true;
+    }
+
+    /**
+     * This method is called after all children of an entered element are
+     * visited. By default it ends the current tag.
+     * 
+     * @param tag the visited element
+     */
+    protected void exitTag(Element tag) {
+        endTag();
+    }
+
+    /**
+     * @return the generator used to score tags
+     */
+    public ScoreGenerator<Element> getGenerator() {
+        return fGenerator;
+    }
+
+    /**
+     * @return the maximal depth of reported tags or 0 if the depth is not
+     *         limited
+     */
+    public int getMaxDepth() {
+        return fMaxDepth < Integer.MAX_VALUE ? fMaxDepth : 0;
+    }
+
     public void onText(String content) {
         fGenerator.onText(content);
     }
 
-    public void visit(Element tag) {
-        beginTag(tag);
-        NodeList children = tag.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child instanceof Element) {
-                visit((Element) child);
-            } else {
-                String content = null;
-                if (child instanceof CDATASection) {
-                    CDATASection cdata = (CDATASection) child;
-                    // content = cdata.getTextContent();
-                    content = cdata.getData();
-                } else if (child instanceof Text) {
-                    Text text = (Text) child;
-                    content = text.getTextContent();
-                } else if (child instanceof Entity) {
-                    Entity entity = (Entity) child;
-                    content = entity.getTextContent();
-                }
-                if (content != null) {
-                    onText(content);
+    /**
+     * Sets the maximal depth of reported tags. The root of a visited tree has
+     * the depth 1.
+     * 
+     * @param maxDepth the maximal depth; if this value is 0 or less then the
+     *        depth is not limited
+     */
+    public void setMaxDepth(int maxDepth) {
+        fMaxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Visits the given tree.
+     * 
+     * @param root the root of the tree
+     */
+    public void visit(Element root) {
+        if (!enterTag(root)) {
+            return;
+        }
+        // A nested visit (started by a subclass) gets its own stack
+        Element[] stack = fStack != null ? fStack : new Element[64];
+        fStack = null;
+        int depth = 0;
+        try {
+            stack[depth++] = root;
+            Node node = root.getFirstChild();
+            while (depth > 0) {
+                if (node == null) {
+                    Element tag = stack[--depth];
+                    stack[depth] = null;
+                    if (depth < fMaxDepth) {
+                        exitTag(tag);
+                    }
+                    node = depth > 0 ? tag.getNextSibling() : null;
+                } else if (node instanceof Element) {
+                    Element tag = (Element) node;
+                    if (depth >= fMaxDepth || enterTag(tag)) {
+                        if (depth == stack.length) {
+                            Element[] array = new Element[depth * 2];
+                            System.arraycopy(stack, 0, array, 0, depth);
+                            stack = array;
+                        }
+                        stack[depth++] = tag;
+                        node = tag.getFirstChild();
+                    } else {
+                        node = node.getNextSibling();
+                    }
+                } else {
+                    String content = getText(node);
+                    if (content != null) {
+                        onText(content);
+                    }
+                    node = node.getNextSibling();
                 }
             }
+        } finally {
+            for (int i = 0; i < depth; i++) {
+                stack[i] = null;
+            }
+            fStack = stack;
         }
-        endTag();
     }
 }
\ No newline at end of file
@@ -0,0 +1,458 @@
+package org.ubimix.analyzer.server;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.IChannelsManager;
+import org.ubimix.analyzer.scores.ITagListener;
+import org.ubimix.analyzer.scores.ScoreContributions;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+import org.ubimix.analyzer.scores.ScorePropagator;
+import org.ubimix.analyzer.scores.impl.ScoringModel;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This object keeps scores of all tags of a DOM tree and updates them when
+ * the tree is modified. Each tag keeps the contributions it propagates to its
+ * parent (see {@link ScorePropagator}) and the sum of contributions received
+ * from its children. When a subtree is inserted, removed or modified only the
+ * tags of the modified subtree are re-scored; then the old contributions of
+ * the subtree are replaced by the new ones in the sum of its parent and the
+ * update goes up while the propagated contributions change. Scores are
+ * propagated only on a limited distance, so the number of updated ancestors
+ * is bounded and the cost of an update does not depend on the number of
+ * siblings of modified tags.
+ * <p>
+ * Full scores calculated by the {@link #visit(Element)} method are the same as
+ * scores calculated by a {@link org.ubimix.analyzer.scores.ScoreGenerator} with
+ * the buffered propagation. After modifications they could differ by rounding
+ * errors, because contributions of modified subtrees are subtracted from sums
+ * of their parents. Each modification of the tree should be reported to this
+ * object by the corresponding <code>onXxx</code> method after it is done.
+ * Positions of tags (see {@link TagInfo#getTagPos()}) are assigned by the
+ * {@link #visit(Element)} method; new tags get positions after all existing
+ * ones. Instances of this class are not thread-safe.
+ * </p>
+ * 
+ * @author kotelnikov
+ * @see org.ubimix.analyzer.scores.ScoreGenerator#setBufferedPropagation(boolean)
+ */
+public class IncrementalElementScorer {
+
+    /**
+     * The state of one scored tag
+     */
+    private static class TagState {
+
+        /**
+         * The sum of contributions propagated by children of the tag
+         */
+        private final ScoreContributions fIncoming;
+
+        private final TagInfo<Element> fInfo;
+
+        /**
+         * Contributions propagated to the parent tag
+         */
+        private ScoreContributions fOutgoing;
+
+        private final TagState fParent;
+
+        /**
+         * The score of the tag itself without texts
+         */
+        private final Channels fTagScore;
+
+        public TagState(
+            TagState parent,
+            TagInfo<Element> info,
+            Channels tagScore,
+            int channelsNumber) {
+            fParent = parent;
+            fInfo = info;
+            fTagScore = tagScore;
+            fIncoming = new ScoreContributions(channelsNumber);
+        }
+
+    }
+
+    private static boolean equals(
+        ScoreContributions first,
+        ScoreContributions second) {
+        int size = first.getSize();
+        if (size != second.getSize()) {
+            return false;
+        }
+        int n = first.getChannelsNumber();
+        for (int idx = 0; idx < size; idx++) {
+            if (first.getDistance(idx) != second.getDistance(idx)
+                || first.getStop(idx) != second.getStop(idx)) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (first.getLevel(idx, i) != second.getLevel(idx, i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private final IChannelsManager fChannelsManager;
+
+    private final double[] fDelta;
+
+    private final double[] fFull;
+
+    private ITagListener<Element> fListener;
+
+    /**
+     * Maximal full scores of all tags or <code>null</code> if they should be
+     * re-calculated
+     */
+    private Channels fMaxScore;
+
+    private final ScoringModel<Element> fModel;
+
+    /**
+     * Contributions of children of the re-scored tag
+     */
+    private final ScoreContributions fPending;
+
+    private final ScorePropagator fPropagator;
+
+    private Element fRoot;
+
+    /**
+     * States of all scored tags
+     */
+    private final Map<Element, TagState> fStates = new IdentityHashMap<Element, TagState>();
+
+    /**
+     * The position of the next new tag
+     */
+    private int fTagPos;
+
+    /**
+     * The number of tags re-scored by the last operation
+     */
+    private int fUpdatedTagsNumber;
+
+    /**
+     * @param model the scoring model
+     */
+    public IncrementalElementScorer(ScoringModel<Element> model) {
+        fModel = model;
+        fChannelsManager = model.getChannelsManager();
+        int n = fChannelsManager.getChannelsNumber();
+        fPropagator = new ScorePropagator(n, model.getScoreReductionProvider());
+        fPending = new ScoreContributions(n);
+        fDelta = new double[n];
+        fFull = new double[n];
+    }
+
+    /**
+     * @return maximal full scores of all tags
+     */
+    public Channels getMaxScore() {
+        if (fMaxScore == null) {
+            Channels maxScore = fChannelsManager.newChannels(0);
+            for (TagState state : fStates.values()) {
+                maxScore.max(state.fInfo.getFullScore());
+            }
+            fMaxScore = maxScore;
+        }
+        return fMaxScore;
+    }
+
+    private Channels getOwnScore(Element tag, Channels tagScore) {
+        Channels ownScore = tagScore.getCopy();
+        for (Node child = tag.getFirstChild(); child != null; child = child
+            .getNextSibling()) {
+            if (!(child instanceof Element)) {
+                String content = ElementScoreGenerator.getText(child);
+                if (content != null) {
+                    Channels weight = fModel
+                        .getTextScoreDetector()
+                        .getTextScore(content);
+                    ownScore.add(weight);
+                }
+            }
+        }
+        return ownScore;
+    }
+
+    /**
+     * @return the root of the scored tree
+     */
+    public Element getRoot() {
+        return fRoot;
+    }
+
+    private TagState getState(Element tag) {
+        TagState state = fStates.get(tag);
+        if (state == null) {
+            throw new IllegalArgumentException("The tag "
+                + ElementScoreGenerator.getName(tag)
+                + " is not scored.");
+        }
+        return state;
+    }
+
+    /**
+     * Returns the information about the specified tag.
+     * 
+     * @param tag the tag
+     * @return the tag information or <code>null</code> if the given tag is not
+     *         scored
+     */
+    public TagInfo<Element> getTagInfo(Element tag) {
+        TagState state = fStates.get(tag);
+        return state != null ? state.fInfo : null;
+    }
+
+    /**
+     * @return the number of scored tags
+     */
+    public int getTagsNumber() {
+        return fStates.size();
+    }
+
+    /**
+     * @return the number of tags re-scored by the last operation; it includes
+     *         tags of the modified subtree and updated ancestors
+     */
+    public int getUpdatedTagsNumber() {
+        return fUpdatedTagsNumber;
+    }
+
+    /**
+     * This method should be called when attributes of the given tag are
+     * changed. Weights of all tags in its subtree depend on these attributes,
+     * so the whole subtree is re-scored.
+     * 
+     * @param tag the modified tag
+     */
+    public void onAttributesChanged(Element tag) {
+        TagState state = getState(tag);
+        fUpdatedTagsNumber = 0;
+        score(tag, state.fParent);
+        updateAncestors(state.fParent);
+    }
+
+    /**
+     * This method should be called when a new subtree is added to a scored
+     * tag.
+     * 
+     * @param tag the root of the inserted subtree; it should be already added
+     *        to its parent
+     */
+    public void onSubtreeInserted(Element tag) {
+        Node parentNode = tag.getParentNode();
+        if (!(parentNode instanceof Element)) {
+            throw new IllegalArgumentException(
+                "The inserted tag has no parent element.");
+        }
+        TagState parent = getState((Element) parentNode);
+        fUpdatedTagsNumber = 0;
+        score(tag, parent);
+        updateAncestors(parent);
+    }
+
+    /**
+     * This method should be called when a subtree is removed from a scored
+     * tag.
+     * 
+     * @param parent the former parent of the removed subtree
+     * @param tag the root of the removed subtree
+     */
+    public void onSubtreeRemoved(Element parent, Element tag) {
+        TagState state = getState(parent);
+        fUpdatedTagsNumber = 0;
+        TagState removed = fStates.get(tag);
+        if (removed != null && removed.fOutgoing != null) {
+            state.fIncoming.subtract(removed.fOutgoing);
+        }
+        removeStates(tag);
+        fMaxScore = null;
+        updateAncestors(state);
+    }
+
+    /**
+     * This method should be called when texts of the specified tag (but not
+     * texts of its children) are added, removed or modified.
+     * 
+     * @param tag the tag with modified texts
+     */
+    public void onTextChanged(Element tag) {
+        TagState state = getState(tag);
+        fUpdatedTagsNumber = 0;
+        state.fInfo.setOwnScore(getOwnScore(tag, state.fTagScore));
+        updateAncestors(state);
+    }
+
+    private TagState newState(Element tag, TagState parent) {
+        // Tags which are already scored keep their positions
+        TagState prev = fStates.get(tag);
+        TagInfo<Element> info = new TagInfo<Element>(tag);
+        info.setTagPos(prev != null ? prev.fInfo.getTagPos() : fTagPos++);
+        Channels tagScore = fModel.getTagScoreDetector().getTagScore(tag);
+        Channels tagWeight = fModel.getTagWeightDetector().getTagWeight(tag);
+        info.setTagWeight(tagWeight);
+        Channels cumulatedWeight = tagWeight.getCopy();
+        if (parent != null) {
+            cumulatedWeight.multiply(parent.fInfo.getCumulatedWeight());
+        }
+        info.setCumulatedWeight(cumulatedWeight);
+        info.setOwnScore(getOwnScore(tag, tagScore));
+        info.setFullScore(fChannelsManager.newChannels(0));
+        TagState state = new TagState(
+            parent,
+            info,
+            tagScore,
+            fDelta.length);
+        fStates.put(tag, state);
+        return state;
+    }
+
+    /**
+     * Re-calculates the full score and outgoing contributions of the given
+     * tag from its own score and contributions of its children. If outgoing
+     * contributions are changed then they replace the old ones in the sum of
+     * the parent.
+     * 
+     * @return <code>true</code> if outgoing contributions are changed
+     */
+    private boolean rescore(TagState state) {
+        TagInfo<Element> info = state.fInfo;
+        fPending.add(state.fIncoming);
+        int n = fDelta.length;
+        Channels ownScore = info.getOwnScore();
+        Channels cumulatedWeight = info.getCumulatedWeight();
+        for (int i = 0; i < n; i++) {
+            fDelta[i] = ownScore.getLevel(i) * cumulatedWeight.getLevel(i);
+            fFull[i] = 0;
+        }
+        ScoreContributions outgoing = new ScoreContributions(n);
+        fPropagator.propagate(fPending, fDelta, 0, fFull, 0, outgoing);
+        Channels fullScore = info.getFullScore();
+        for (int i = 0; i < n; i++) {
+            fullScore.setLevel(i, fFull[i]);
+        }
+        boolean changed = state.fOutgoing == null
+            || !equals(state.fOutgoing, outgoing);
+        if (changed && state.fParent != null) {
+            ScoreContributions incoming = state.fParent.fIncoming;
+            if (state.fOutgoing != null) {
+                incoming.subtract(state.fOutgoing);
+            }
+            incoming.add(outgoing);
+        }
+        state.fOutgoing = outgoing;
+        fUpdatedTagsNumber++;
+        fMaxScore = null;
+        if (fListener != null) {
+            fListener.onEndTag(info);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes states of all tags of the given subtree. The subtree is
+     * traversed without recursion.
+     * 
+     * @param tag the root of the subtree
+     */
+    private void removeStates(Element tag) {
+        fStates.remove(tag);
+        Node node = tag.getFirstChild();
+        while (node != null) {
+            Node next = null;
+            if (node instanceof Element) {
+                fStates.remove(node);
+                next = node.getFirstChild();
+            }
+            while (next == null && node != tag) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Scores the given subtree. The subtree is traversed without recursion;
+     * states of open tags are linked with their parents, so they are used as
+     * the stack.
+     * 
+     * @param tag the root of the subtree
+     * @param parent the state of the parent tag
+     */
+    private void score(Element tag, TagState parent) {
+        TagState prev = fStates.get(tag);
+        TagState root = newState(tag, parent);
+        if (prev != null) {
+            // Contributions of the old subtree are replaced in the parent
+            root.fOutgoing = prev.fOutgoing;
+        }
+        TagState state = root;
+        Node next = tag.getFirstChild();
+        while (true) {
+            if (next != null) {
+                if (next instanceof Element) {
+                    state = newState((Element) next, state);
+                    next = next.getFirstChild();
+                } else {
+                    next = next.getNextSibling();
+                }
+                continue;
+            }
+            rescore(state);
+            if (state == root) {
+                break;
+            }
+            next = state.fInfo.getTag().getNextSibling();
+            state = state.fParent;
+        }
+    }
+
+    /**
+     * Sets the listener notified about all re-scored tags. Tags are reported
+     * after their full scores are updated; the root of a modified subtree is
+     * reported after its children, ancestors are reported after the subtree.
+     * 
+     * @param listener the listener to set; it could be <code>null</code>
+     */
+    public void setTagListener(ITagListener<Element> listener) {
+        fListener = listener;
+    }
+
+    /**
+     * Re-scores the given tag and its ancestors while contributions
+     * propagated to parents are changed.
+     */
+    private void updateAncestors(TagState state) {
+        while (state != null && rescore(state)) {
+            state = state.fParent;
+        }
+    }
+
+    /**
+     * Scores all tags of the given tree. Results of the previous analysis are
+     * removed.
+     * 
+     * @param root the root of the tree
+     */
+    public void visit(Element root) {
+        fStates.clear();
+        fTagPos = 0;
+        fUpdatedTagsNumber = 0;
+        fRoot = root;
+        score(root, null);
+    }
+
+}
@@ -0,0 +1,357 @@
+package org.ubimix.analyzer.server;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This class scores big DOM trees in parallel using a {@link ForkJoinPool}.
+ * Subtrees containing more tags than the specified threshold are scored by
+ * independent generators in separate tasks. Scores propagated from these
+ * subtrees to their ancestors are merged to the parent generator before the
+ * subtree parent is closed. All generators use the buffered propagation (see
+ * {@link ScoreGenerator#setBufferedPropagation(boolean)}), so resulting full
+ * scores and tag positions are the same as with a sequential
+ * {@link ElementScoreGenerator}.
+ * <p>
+ * Tag scores are reported to {@link org.ubimix.analyzer.scores.ITagListener}s
+ * registered in generators returned by the {@link #newScoreGenerator()}
+ * method. These listeners are called from different threads. Detectors used
+ * by the generators should be thread-safe.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ParallelElementScoreGenerator {
+
+    /**
+     * An open tag of a subtree scored by a task
+     */
+    private static class Frame {
+
+        /**
+         * The cumulated weight of the tag
+         */
+        private final Channels fCumulatedWeight;
+
+        /**
+         * This flag is <code>true</code> if big subtrees of children of this
+         * tag are scored in separate tasks.
+         */
+        private final boolean fFork;
+
+        /**
+         * The next child to visit
+         */
+        private Node fNext;
+
+        /**
+         * Tasks scoring subtrees of children of this tag
+         */
+        private List<SubtreeTask> fTasks;
+
+        public Frame(Element element, Channels cumulatedWeight, boolean fork) {
+            fNext = element.getFirstChild();
+            fCumulatedWeight = cumulatedWeight;
+            fFork = fork;
+        }
+    }
+
+    /**
+     * Scores one subtree and returns the generator used to score it.
+     */
+    private class SubtreeTask extends RecursiveTask<ScoreGenerator<Element>> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The root of the subtree
+         */
+        private final Element fElement;
+
+        /**
+         * The position of the subtree root in the full document
+         */
+        private final int fFirstPos;
+
+        /**
+         * Maximal scores of all tags in the subtree
+         */
+        private Channels fMaxScore;
+
+        /**
+         * The cumulated weight of the subtree parent
+         */
+        private final Channels fParentWeight;
+
+        public SubtreeTask(Element element, Channels parentWeight, int firstPos) {
+            fElement = element;
+            fParentWeight = parentWeight;
+            fFirstPos = firstPos;
+        }
+
+        /**
+         * Scores the subtree. Children containing less tags than the threshold
+         * are scored by this task. If a tag has several big children then
+         * each of them is scored in a separate task. A single big child is
+         * scored by this task, so long chains of nested tags are not split in
+         * nested tasks.
+         */
+        @Override
+        protected ScoreGenerator<Element> compute() {
+            ScoreGenerator<Element> generator = newScoreGenerator();
+            generator.setBufferedPropagation(true);
+            generator.setRootCumulatedWeight(fParentWeight);
+            generator.skipTags(fFirstPos);
+            ElementScoreGenerator visitor = new ElementScoreGenerator(
+                generator);
+
+            Channels maxScore = null;
+            List<Frame> stack = new ArrayList<Frame>();
+            stack.add(openTag(generator, fElement));
+            int pos = fFirstPos + 1;
+            while (!stack.isEmpty()) {
+                Frame frame = stack.get(stack.size() - 1);
+                Node child = frame.fNext;
+                if (child == null) {
+                    stack.remove(stack.size() - 1);
+                    if (frame.fTasks != null) {
+                        for (SubtreeTask task : frame.fTasks) {
+                            ScoreGenerator<Element> subtreeGenerator = task
+                                .join();
+                            generator.addContributions(subtreeGenerator
+                                .getRootContributions());
+                            if (maxScore == null) {
+                                maxScore = task.fMaxScore.getCopy();
+                            } else {
+                                maxScore.max(task.fMaxScore);
+                            }
+                        }
+                    }
+                    generator.endTag();
+                    continue;
+                }
+                frame.fNext = child.getNextSibling();
+                if (child instanceof Element) {
+                    Element element = (Element) child;
+                    int size = getSize(element);
+                    if (size < fThreshold) {
+                        visitor.visit(element);
+                    } else if (frame.fFork) {
+                        SubtreeTask task = new SubtreeTask(
+                            element,
+                            frame.fCumulatedWeight,
+                            pos);
+                        task.fork();
+                        if (frame.fTasks == null) {
+                            frame.fTasks = new ArrayList<SubtreeTask>();
+                        }
+                        frame.fTasks.add(task);
+                        generator.skipTags(size);
+                    } else {
+                        stack.add(openTag(generator, element));
+                        pos++;
+                        continue;
+                    }
+                    pos += size;
+                } else {
+                    String content = ElementScoreGenerator.getText(child);
+                    if (content != null) {
+                        generator.onText(content);
+                    }
+                }
+            }
+
+            fMaxScore = generator.getMaxScore().getCopy();
+            if (maxScore != null) {
+                fMaxScore.max(maxScore);
+            }
+            return generator;
+        }
+
+        private Frame openTag(
+            ScoreGenerator<Element> generator,
+            Element element) {
+            TagInfo<Element> info = generator.beginTag(element);
+            int bigChildren = 0;
+            for (Node child = element.getFirstChild(); child != null
+                && bigChildren < 2; child = child.getNextSibling()) {
+                if (child instanceof Element
+                    && getSize((Element) child) >= fThreshold) {
+                    bigChildren++;
+                }
+            }
+            return new Frame(
+                element,
+                info.getCumulatedWeight(),
+                bigChildren > 1);
+        }
+    }
+
+    /**
+     * Returns the numbers of elements in all subtrees of the specified
+     * element. Sizes are calculated in one pass without recursion.
+     * 
+     * @param element the root of the tree
+     * @return a map containing numbers of elements in subtrees (including
+     *         their roots) by roots of these subtrees
+     */
+    public static Map<Element, Integer> countSubtreeTags(Element element) {
+        Map<Element, Integer> result = new IdentityHashMap<Element, Integer>();
+        Element[] stack = new Element[64];
+        int[] counts = new int[64];
+        int depth = 0;
+        stack[depth] = element;
+        counts[depth] = 1;
+        depth++;
+        Node next = element.getFirstChild();
+        while (depth > 0) {
+            if (next != null) {
+                if (next instanceof Element) {
+                    if (depth == stack.length) {
+                        Element[] array = new Element[depth * 2];
+                        System.arraycopy(stack, 0, array, 0, depth);
+                        stack = array;
+                        int[] array2 = new int[depth * 2];
+                        System.arraycopy(counts, 0, array2, 0, depth);
+                        counts = array2;
+                    }
+                    stack[depth] = (Element) next;
+                    counts[depth] = 1;
+                    depth++;
+                    next = next.getFirstChild();
+                } else {
+                    next = next.getNextSibling();
+                }
+            } else {
+                depth--;
+                Element tag = stack[depth];
+                int count = counts[depth];
+                result.put(tag, count);
+                if (depth > 0) {
+                    counts[depth - 1] += count;
+                    next = tag.getNextSibling();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of elements in the specified subtree.
+     * 
+     * @param element the root of the subtree
+     * @return the number of elements in the subtree (including the root)
+     */
+    public static int countTags(Element element) {
+        int count = 1;
+        Node node = element.getFirstChild();
+        while (node != null) {
+            Node next = null;
+            if (node instanceof Element) {
+                count++;
+                next = node.getFirstChild();
+            }
+            while (next == null && node != element) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+        return count;
+    }
+
+    private final ScoreGeneratorFactory<Element> fFactory;
+
+    private Channels fMaxScore;
+
+    private int fNodeCount;
+
+    /**
+     * Numbers of tags in all subtrees of the visited tree; they are
+     * calculated once before the tree is scored
+     */
+    private Map<Element, Integer> fSizes;
+
+    private final ForkJoinPool fPool;
+
+    /**
+     * Subtrees with this number of tags or more are scored in separate tasks.
+     */
+    private final int fThreshold;
+
+    /**
+     * @param factory the factory of score generators
+     * @param pool the pool used to score subtrees
+     * @param threshold the minimal number of tags in subtrees scored in
+     *        separate tasks
+     */
+    public ParallelElementScoreGenerator(
+        ScoreGeneratorFactory<Element> factory,
+        ForkJoinPool pool,
+        int threshold) {
+        fFactory = factory;
+        fPool = pool;
+        fThreshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * @return maximal full scores of tags analyzed by the last call of the
+     *         {@link #visit(Element)} method
+     */
+    public Channels getMaxScore() {
+        return fMaxScore;
+    }
+
+    /**
+     * @return the number of tags analyzed by the last call of the
+     *         {@link #visit(Element)} method
+     */
+    public int getNodeCount() {
+        return fNodeCount;
+    }
+
+    private int getSize(Element element) {
+        return fSizes.get(element);
+    }
+
+    /**
+     * Creates and returns a new generator used to score a subtree. This method
+     * could be overloaded to register listeners in new generators.
+     * 
+     * @return a new score generator
+     */
+    protected ScoreGenerator<Element> newScoreGenerator() {
+        return fFactory.newScoreGenerator();
+    }
+
+    /**
+     * Scores all tags of the specified element.
+     * 
+     * @param tag the root element to score
+     */
+    public void visit(Element tag) {
+        fSizes = countSubtreeTags(tag);
+        try {
+            fNodeCount = getSize(tag);
+            SubtreeTask task = new SubtreeTask(tag, null, 0);
+            fPool.invoke(task);
+            fMaxScore = task.fMaxScore;
+        } finally {
+            fSizes = null;
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+package org.ubimix.analyzer.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreContributions;
+
+/**
+ * This cache keeps results of the analysis of subtrees shared by pages of the
+ * same site (headers, navigation menus, footers...). Each template is
+ * identified by the host of the page, by a hash of the subtree structure and
+ * texts, and by the number of tags in the subtree. A template contains
+ * contributions propagated by the subtree to its ancestors and maximal full
+ * scores of tags in the subtree, so the subtree could be skipped when it is
+ * found again (see {@link TemplateElementScoreGenerator}).
+ * <p>
+ * The memory used by templates is limited by the specified budget; least
+ * recently used templates are removed first. Templates are valid only for
+ * the scoring configuration used to create them. Methods of this class are
+ * synchronized, so one cache could be shared by many threads.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class TemplateCache {
+
+    /**
+     * A key of templates
+     */
+    private static class Key {
+
+        private final long fHash;
+
+        private final String fHost;
+
+        private final int fTagsNumber;
+
+        public Key(String host, long hash, int tagsNumber) {
+            fHost = host != null ? host : "";
+            fHash = hash;
+            fTagsNumber = tagsNumber;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) obj;
+            return fHash == o.fHash
+                && fTagsNumber == o.fTagsNumber
+                && fHost.equals(o.fHost);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fHash ^ (fHash >>> 32)) ^ fHost.hashCode();
+        }
+
+    }
+
+    /**
+     * Results of the analysis of one subtree. Instances of this class are
+     * immutable; returned objects should not be modified.
+     */
+    public static class Template {
+
+        private final ScoreContributions fContributions;
+
+        private final Channels fMaxScore;
+
+        private final int fTagsNumber;
+
+        /**
+         * @param contributions contributions propagated out of the subtree
+         * @param maxScore maximal full scores of tags in the subtree
+         * @param tagsNumber the number of tags in the subtree
+         */
+        public Template(
+            ScoreContributions contributions,
+            Channels maxScore,
+            int tagsNumber) {
+            fContributions = contributions;
+            fMaxScore = maxScore;
+            fTagsNumber = tagsNumber;
+        }
+
+        /**
+         * @return contributions propagated out of the subtree
+         */
+        public ScoreContributions getContributions() {
+            return fContributions;
+        }
+
+        /**
+         * @return maximal full scores of tags in the subtree
+         */
+        public Channels getMaxScore() {
+            return fMaxScore;
+        }
+
+        /**
+         * @return the number of tags in the subtree
+         */
+        public int getTagsNumber() {
+            return fTagsNumber;
+        }
+
+    }
+
+    /**
+     * The approximate number of bytes used by a template without its values
+     */
+    public static final int ENTRY_SIZE = 160;
+
+    /**
+     * Returns the approximate number of bytes used by the given template.
+     * 
+     * @param template the template to check
+     * @return the size of the template in bytes
+     */
+    public static long getSize(Template template) {
+        ScoreContributions contributions = template.getContributions();
+        int n = contributions.getChannelsNumber();
+        // Each contribution has two distances and a value for each channel
+        return ENTRY_SIZE
+            + contributions.getSize()
+            * (8 + n * 8)
+            + template.getMaxScore().getChannelsNumber()
+            * 8;
+    }
+
+    private long fEvictions;
+
+    private long fHits;
+
+    private final long fMaxSize;
+
+    private long fMisses;
+
+    private long fSize;
+
+    private final LinkedHashMap<Key, Template> fTemplates = new LinkedHashMap<Key, Template>(
+        16,
+        0.75f,
+        true);
+
+    /**
+     * @param maxSize the memory budget of this cache in bytes
+     */
+    public TemplateCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(
+                "The size of the cache should be positive.");
+        }
+        fMaxSize = maxSize;
+    }
+
+    /**
+     * Removes all templates.
+     */
+    public synchronized void clear() {
+        fTemplates.clear();
+        fSize = 0;
+    }
+
+    /**
+     * Removes all templates of the specified host. This method could be used
+     * when the site design is changed.
+     * 
+     * @param host the host of removed templates
+     */
+    public synchronized void clear(String host) {
+        host = host != null ? host : "";
+        Iterator<Map.Entry<Key, Template>> iterator = fTemplates
+            .entrySet()
+            .iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Template> entry = iterator.next();
+            if (host.equals(entry.getKey().fHost)) {
+                fSize -= getSize(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of templates removed to free space for new ones
+     */
+    public synchronized long getEvictions() {
+        return fEvictions;
+    }
+
+    /**
+     * @return the number of templates found in this cache
+     */
+    public synchronized long getHits() {
+        return fHits;
+    }
+
+    /**
+     * @return the memory budget of this cache in bytes
+     */
+    public long getMaxSize() {
+        return fMaxSize;
+    }
+
+    /**
+     * @return the number of subtrees which were not found in this cache
+     */
+    public synchronized long getMisses() {
+        return fMisses;
+    }
+
+    /**
+     * @return the approximate number of bytes used by all templates
+     */
+    public synchronized long getSize() {
+        return fSize;
+    }
+
+    /**
+     * Returns the template with the specified key or <code>null</code>.
+     * 
+     * @param host the host of the page
+     * @param hash the hash of the subtree
+     * @param tagsNumber the number of tags in the subtree
+     * @return the template or <code>null</code> if it is not found
+     */
+    public synchronized Template getTemplate(
+        String host,
+        long hash,
+        int tagsNumber) {
+        Template template = fTemplates.get(new Key(host, hash, tagsNumber));
+        if (template != null) {
+            fHits++;
+        } else {
+            fMisses++;
+        }
+        return template;
+    }
+
+    /**
+     * @return the number of templates in this cache
+     */
+    public synchronized int getTemplatesNumber() {
+        return fTemplates.size();
+    }
+
+    /**
+     * Adds a new template to this cache. Least recently used templates are
+     * removed when the cache is full. Templates bigger than the cache budget
+     * are not stored.
+     * 
+     * @param host the host of the page
+     * @param hash the hash of the subtree
+     * @param template the template to add
+     */
+    public synchronized void putTemplate(
+        String host,
+        long hash,
+        Template template) {
+        long size = getSize(template);
+        if (size > fMaxSize) {
+            return;
+        }
+        Key key = new Key(host, hash, template.getTagsNumber());
+        Template prev = fTemplates.put(key, template);
+        if (prev != null) {
+            fSize -= getSize(prev);
+        }
+        fSize += size;
+        Iterator<Map.Entry<Key, Template>> iterator = fTemplates
+            .entrySet()
+            .iterator();
+        while (fSize > fMaxSize) {
+            Map.Entry<Key, Template> eldest = iterator.next();
+            fSize -= getSize(eldest.getValue());
+            iterator.remove();
+            fEvictions++;
+        }
+    }
+
+}
@@ -0,0 +1,415 @@
+package org.ubimix.analyzer.server;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ScoreContributions;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * This visitor skips subtrees already analyzed on other pages of the same
+ * site. Before the analysis of a document it calculates hashes of all
+ * subtrees from their tag names, attributes and texts. Each subtree with
+ * enough tags is searched in a {@link TemplateCache}; if it is found then its
+ * cached contributions are added to the parent tag and the subtree is not
+ * visited. Otherwise the subtree is analyzed and contributions propagated out
+ * of it are captured and stored in the cache.
+ * <p>
+ * Contributions of a subtree depend on the cumulated weight of its parent, so
+ * this weight is a part of the template key. Resulting scores of the parents
+ * are the same as without the cache except the order of floating-point
+ * additions. Tags of skipped subtrees are not reported to listeners of the
+ * generator; their positions are reserved with the
+ * {@link ScoreGenerator#skipTags(int)} method. The generator is switched to
+ * the buffered propagation mode.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class TemplateElementScoreGenerator extends ElementScoreGenerator {
+
+    /**
+     * A subtree which is analyzed and whose propagated contributions are
+     * captured
+     */
+    private static class Capture {
+
+        /**
+         * Contributions propagated out of the subtree
+         */
+        private final ScoreContributions fContributions;
+
+        private final long fHash;
+
+        private final Channels fMaxScore;
+
+        /**
+         * Contributions of the parent replaced during the capture
+         */
+        private final ScoreContributions fPending;
+
+        private final Element fTag;
+
+        private final int fTagsNumber;
+
+        public Capture(
+            Element tag,
+            long hash,
+            int tagsNumber,
+            ScoreContributions contributions,
+            ScoreContributions pending,
+            Channels maxScore) {
+            fTag = tag;
+            fHash = hash;
+            fTagsNumber = tagsNumber;
+            fContributions = contributions;
+            fPending = pending;
+            fMaxScore = maxScore;
+        }
+
+    }
+
+    /**
+     * The hash and the size of a subtree
+     */
+    private static class Subtree {
+
+        private final long fHash;
+
+        private final int fTagsNumber;
+
+        public Subtree(long hash, int tagsNumber) {
+            fHash = hash;
+            fTagsNumber = tagsNumber;
+        }
+
+    }
+
+    /**
+     * Attributes and child elements are separated by this value in hashes
+     */
+    private static final long ATTRIBUTES_END = 0x5bd1e9955bd1e995L;
+
+    /**
+     * The default minimal number of tags in cached subtrees
+     */
+    public static final int DEFAULT_MIN_TAGS_NUMBER = 8;
+
+    /**
+     * The prime used to combine hashes (the 64-bit FNV prime)
+     */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * The initial value of hashes (the 64-bit FNV offset basis)
+     */
+    private static final long SEED = 0xcbf29ce484222325L;
+
+    /**
+     * Texts are prefixed by this value in hashes
+     */
+    private static final long TEXT = 0x27d4eb2f165667c5L;
+
+    private static long hash(long hash, long value) {
+        return (hash ^ mix(value)) * PRIME;
+    }
+
+    private static long hash(long hash, String str) {
+        if (str == null) {
+            return hash(hash, -1L);
+        }
+        int len = str.length();
+        hash = (hash ^ len) * PRIME;
+        for (int i = 0; i < len; i++) {
+            hash = (hash ^ str.charAt(i)) * PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * The finalization step of the MurmurHash3 64-bit hash
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private final TemplateCache fCache;
+
+    /**
+     * Subtrees which are currently captured
+     */
+    private Capture[] fCaptures = new Capture[8];
+
+    /**
+     * The number of subtrees which are currently captured
+     */
+    private int fCapturesNumber;
+
+    private String fHost;
+
+    private final int fMinTagsNumber;
+
+    /**
+     * Subtrees which could be cached by their roots; this map exists only
+     * during the analysis of a document.
+     */
+    private Map<Element, Subtree> fSubtrees;
+
+    /**
+     * @param generator the generator used to score tags
+     * @param cache the cache of templates
+     */
+    public TemplateElementScoreGenerator(
+        ScoreGenerator<Element> generator,
+        TemplateCache cache) {
+        this(generator, cache, DEFAULT_MIN_TAGS_NUMBER);
+    }
+
+    /**
+     * @param generator the generator used to score tags
+     * @param cache the cache of templates
+     * @param minTagsNumber the minimal number of tags in cached subtrees
+     */
+    public TemplateElementScoreGenerator(
+        ScoreGenerator<Element> generator,
+        TemplateCache cache,
+        int minTagsNumber) {
+        super(generator);
+        generator.setBufferedPropagation(true);
+        fCache = cache;
+        fMinTagsNumber = Math.max(minTagsNumber, 1);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.server.ElementScoreGenerator#endTag()
+     */
+    @Override
+    public TagInfo<Element> endTag() {
+        TagInfo<Element> info = super.endTag();
+        if (fCapturesNumber > 0) {
+            fCaptures[fCapturesNumber - 1].fMaxScore.max(info.getFullScore());
+        }
+        return info;
+    }
+
+    /**
+     * Skips the given subtree if it is found in the cache; otherwise starts
+     * to capture contributions propagated out of it.
+     * 
+     * @see org.ubimix.analyzer.server.ElementScoreGenerator#enterTag(org.w3c.dom.Element)
+     */
+    @Override
+    protected boolean enterTag(Element tag) {
+        ScoreGenerator<Element> generator = getGenerator();
+        Subtree subtree = fSubtrees != null ? fSubtrees.get(tag) : null;
+        TagInfo<Element> parent = subtree != null ? generator
+            .getCurrentTagInfo() : null;
+        if (parent == null) {
+            return super.enterTag(tag);
+        }
+        long hash = getTemplateHash(subtree.fHash, parent.getCumulatedWeight());
+        TemplateCache.Template template = fCache.getTemplate(
+            fHost,
+            hash,
+            subtree.fTagsNumber);
+        if (template != null) {
+            generator.addContributions(template.getContributions());
+            generator.skipTags(template.getTagsNumber());
+            Channels maxScore = template.getMaxScore();
+            generator.updateMaxScore(maxScore);
+            if (fCapturesNumber > 0) {
+                fCaptures[fCapturesNumber - 1].fMaxScore.max(maxScore);
+            }
+            return false;
+        }
+        int channelsNumber = generator.getChannelManager().getChannelsNumber();
+        ScoreContributions contributions = new ScoreContributions(
+            channelsNumber);
+        ScoreContributions pending = generator
+            .replaceContributions(contributions);
+        if (fCapturesNumber == fCaptures.length) {
+            Capture[] array = new Capture[fCaptures.length * 2];
+            System.arraycopy(fCaptures, 0, array, 0, fCapturesNumber);
+            fCaptures = array;
+        }
+        fCaptures[fCapturesNumber++] = new Capture(
+            tag,
+            hash,
+            subtree.fTagsNumber,
+            contributions,
+            pending,
+            generator.getChannelManager().newChannels(0));
+        return super.enterTag(tag);
+    }
+
+    /**
+     * Stores contributions of the given subtree in the cache if they are
+     * captured.
+     * 
+     * @see org.ubimix.analyzer.server.ElementScoreGenerator#exitTag(org.w3c.dom.Element)
+     */
+    @Override
+    protected void exitTag(Element tag) {
+        super.exitTag(tag);
+        if (fCapturesNumber == 0
+            || fCaptures[fCapturesNumber - 1].fTag != tag) {
+            return;
+        }
+        Capture capture = fCaptures[--fCapturesNumber];
+        fCaptures[fCapturesNumber] = null;
+        ScoreGenerator<Element> generator = getGenerator();
+        generator.replaceContributions(capture.fPending);
+        generator.addContributions(capture.fContributions);
+        fCache.putTemplate(fHost, capture.fHash, new TemplateCache.Template(
+            capture.fContributions,
+            capture.fMaxScore,
+            capture.fTagsNumber));
+        if (fCapturesNumber > 0) {
+            fCaptures[fCapturesNumber - 1].fMaxScore.max(capture.fMaxScore);
+        }
+    }
+
+    /**
+     * @return the cache of templates
+     */
+    public TemplateCache getCache() {
+        return fCache;
+    }
+
+    /**
+     * @return the host of the analyzed pages
+     */
+    public String getHost() {
+        return fHost;
+    }
+
+    /**
+     * @return the minimal number of tags in cached subtrees
+     */
+    public int getMinTagsNumber() {
+        return fMinTagsNumber;
+    }
+
+    /**
+     * Returns the hash of the name and attributes of the given element.
+     */
+    private long getTagHash(Element tag) {
+        long hash = hash(SEED, getName(tag));
+        NamedNodeMap attributes = tag.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            hash = hash(hash, getName(attr));
+            hash = hash(hash, attr.getValue());
+        }
+        return hash(hash, ATTRIBUTES_END);
+    }
+
+    /**
+     * Returns the key of the template for the given subtree hash and the
+     * cumulated weight of the subtree parent.
+     */
+    private long getTemplateHash(long hash, Channels parentWeight) {
+        for (int i = 0; i < parentWeight.getChannelsNumber(); i++) {
+            double level = parentWeight.getLevel(i);
+            hash = hash(hash, Double.doubleToLongBits(level));
+        }
+        return hash;
+    }
+
+    /**
+     * Calculates hashes of all subtrees of the given tree and stores hashes of
+     * subtrees with enough tags in the {@link #fSubtrees} map. The tree is
+     * traversed without recursion, like in the
+     * {@link ElementScoreGenerator#visit(Element)} method.
+     * 
+     * @param root the root of the tree
+     */
+    private void hashSubtrees(Element root) {
+        Element[] tags = new Element[64];
+        long[] hashes = new long[tags.length];
+        int[] firsts = new int[tags.length];
+        int tagsCounter = 0;
+        int depth = 0;
+        Node node = root;
+        while (true) {
+            if (node == null) {
+                Element tag = tags[--depth];
+                int tagsNumber = tagsCounter - firsts[depth];
+                long hash = mix(hashes[depth] ^ tagsNumber);
+                if (tagsNumber >= fMinTagsNumber) {
+                    fSubtrees.put(tag, new Subtree(hash, tagsNumber));
+                }
+                if (depth == 0) {
+                    break;
+                }
+                hashes[depth - 1] = hash(hashes[depth - 1], hash);
+                node = tag.getNextSibling();
+            } else if (node instanceof Element) {
+                Element tag = (Element) node;
+                if (depth == tags.length) {
+                    tags = Arrays.copyOf(tags, depth * 2);
+                    hashes = Arrays.copyOf(hashes, depth * 2);
+                    firsts = Arrays.copyOf(firsts, depth * 2);
+                }
+                tags[depth] = tag;
+                hashes[depth] = getTagHash(tag);
+                firsts[depth] = tagsCounter++;
+                depth++;
+                node = tag.getFirstChild();
+            } else {
+                String content = getText(node);
+                if (content != null) {
+                    hashes[depth - 1] = hash(
+                        hash(hashes[depth - 1], TEXT),
+                        content);
+                }
+                node = node.getNextSibling();
+            }
+        }
+    }
+
+    /**
+     * Sets the host of the following analyzed pages. Templates are shared
+     * only between pages of the same host.
+     * 
+     * @param host the host of pages
+     */
+    public void setHost(String host) {
+        fHost = host;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.server.ElementScoreGenerator#visit(org.w3c.dom.Element)
+     */
+    @Override
+    public void visit(Element tag) {
+        if (fSubtrees != null) {
+            super.visit(tag);
+        } else {
+            fSubtrees = new IdentityHashMap<Element, Subtree>();
+            try {
+                hashSubtrees(tag);
+                super.visit(tag);
+            } finally {
+                fSubtrees = null;
+                for (int i = 0; i < fCapturesNumber; i++) {
+                    fCaptures[i] = null;
+                }
+                fCapturesNumber = 0;
+            }
+        }
+    }
+
+}
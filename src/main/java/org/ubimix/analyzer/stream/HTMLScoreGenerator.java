@@ -0,0 +1,285 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+
+/**
+ * This class scores raw HTML documents without building any tree. It uses an
+ * {@link HTMLTokenizer} to read the document and feeds the score generator
+ * with found tags and texts. Void elements (like <code>br</code> or
+ * <code>img</code>) are closed immediately and end tags implied by the HTML
+ * syntax are generated for the most common cases (paragraphs, list items,
+ * table rows and cells, options...). End tags without corresponding start tags
+ * are ignored.
+ * 
+ * @author kotelnikov
+ */
+public class HTMLScoreGenerator implements HTMLTokenizer.IHandler {
+
+    private static final Set<String> BLOCK_SCOPE = set(
+        "html",
+        "table",
+        "td",
+        "th",
+        "caption",
+        "button",
+        "object");
+
+    private static final Set<String> DEFINITION_SCOPE = set(
+        "html",
+        "dl",
+        "table");
+
+    private static final Set<String> LIST_SCOPE = set(
+        "html",
+        "ul",
+        "ol",
+        "table");
+
+    private static final Set<String> OPTION_SCOPE = set(
+        "html",
+        "select",
+        "datalist");
+
+    /**
+     * Start tags of these elements close the open paragraph.
+     */
+    private static final Set<String> PARAGRAPH_CLOSERS = set(
+        "address",
+        "article",
+        "aside",
+        "blockquote",
+        "dd",
+        "div",
+        "dl",
+        "dt",
+        "fieldset",
+        "figure",
+        "footer",
+        "form",
+        "h1",
+        "h2",
+        "h3",
+        "h4",
+        "h5",
+        "h6",
+        "header",
+        "hr",
+        "li",
+        "main",
+        "menu",
+        "nav",
+        "ol",
+        "p",
+        "pre",
+        "section",
+        "table",
+        "ul");
+
+    private static final Set<String> ROW_SCOPE = set("html", "tr", "table");
+
+    private static final Set<String> TABLE_SCOPE = set("html", "table");
+
+    /**
+     * Elements which never have content.
+     */
+    private static final Set<String> VOID_ELEMENTS = set(
+        "area",
+        "base",
+        "br",
+        "col",
+        "embed",
+        "hr",
+        "img",
+        "input",
+        "keygen",
+        "link",
+        "meta",
+        "param",
+        "source",
+        "track",
+        "wbr");
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    private ScoreGenerator<TagDescriptor> fGenerator;
+
+    /**
+     * Names of all open elements
+     */
+    private String[] fStack = new String[32];
+
+    private int fStackSize;
+
+    public HTMLScoreGenerator(ScoreGenerator<TagDescriptor> generator) {
+        fGenerator = generator;
+    }
+
+    public TagInfo<TagDescriptor> beginTag(TagDescriptor tag) {
+        return fGenerator.beginTag(tag);
+    }
+
+    /**
+     * Closes all open elements up to the element with the specified name if
+     * this element is open and it is not hidden by one of the given scope
+     * elements.
+     * 
+     * @param name the name of the element to close
+     * @param scope names of elements limiting the search
+     */
+    private void close(String name, Set<String> scope) {
+        for (int i = fStackSize - 1; i >= 0; i--) {
+            String open = fStack[i];
+            if (name.equals(open)) {
+                closeTo(i);
+                break;
+            }
+            if (scope.contains(open)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Closes elements implicitly ended by the start tag with the specified
+     * name.
+     * 
+     * @param name the name of the opened element
+     */
+    private void closeImplied(String name) {
+        if (PARAGRAPH_CLOSERS.contains(name)) {
+            close("p", BLOCK_SCOPE);
+        }
+        if ("li".equals(name)) {
+            close("li", LIST_SCOPE);
+        } else if ("dd".equals(name) || "dt".equals(name)) {
+            close("dd", DEFINITION_SCOPE);
+            close("dt", DEFINITION_SCOPE);
+        } else if ("option".equals(name) || "optgroup".equals(name)) {
+            close("option", OPTION_SCOPE);
+            if ("optgroup".equals(name)) {
+                close("optgroup", OPTION_SCOPE);
+            }
+        } else if ("tr".equals(name)) {
+            close("tr", TABLE_SCOPE);
+        } else if ("td".equals(name) || "th".equals(name)) {
+            close("td", ROW_SCOPE);
+            close("th", ROW_SCOPE);
+        } else if ("thead".equals(name)
+            || "tbody".equals(name)
+            || "tfoot".equals(name)) {
+            close("thead", TABLE_SCOPE);
+            close("tbody", TABLE_SCOPE);
+            close("tfoot", TABLE_SCOPE);
+        } else if ("body".equals(name)) {
+            close("head", TABLE_SCOPE);
+        } else if ("a".equals(name)) {
+            close("a", BLOCK_SCOPE);
+        }
+    }
+
+    /**
+     * Closes all open elements with depth more or equal to the specified one.
+     * 
+     * @param depth the depth of the last element to close
+     */
+    private void closeTo(int depth) {
+        while (fStackSize > depth) {
+            fStack[--fStackSize] = null;
+            endTag();
+        }
+    }
+
+    public TagInfo<TagDescriptor> endTag() {
+        return fGenerator.endTag();
+    }
+
+    /**
+     * @see org.ubimix.analyzer.stream.HTMLTokenizer.IHandler#onEndTag(java.lang.String)
+     */
+    @Override
+    public void onEndTag(String name) {
+        for (int i = fStackSize - 1; i >= 0; i--) {
+            if (name.equals(fStack[i])) {
+                closeTo(i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.stream.HTMLTokenizer.IHandler#onStartTag(java.lang.String,
+     *      java.lang.String[], boolean)
+     */
+    @Override
+    public void onStartTag(String name, String[] attributes, boolean selfClosing) {
+        closeImplied(name);
+        beginTag(new TagDescriptor(name, attributes));
+        if (selfClosing || VOID_ELEMENTS.contains(name)) {
+            endTag();
+        } else {
+            if (fStackSize == fStack.length) {
+                String[] array = new String[fStack.length * 2];
+                System.arraycopy(fStack, 0, array, 0, fStackSize);
+                fStack = array;
+            }
+            fStack[fStackSize++] = name;
+        }
+    }
+
+    public void onText(String content) {
+        fGenerator.onText(content);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.stream.HTMLTokenizer.IHandler#onText(char[],
+     *      int, int)
+     */
+    @Override
+    public void onText(char[] buf, int start, int len) {
+        if (fStackSize > 0) {
+            fGenerator.onText(buf, start, len);
+        }
+    }
+
+    /**
+     * Reads and scores the given HTML document. All elements which are still
+     * open at the end of the document are closed. The stream is not closed by
+     * this method.
+     * 
+     * @param input the stream containing the document
+     * @param charset the encoding of the document; only "UTF-8" and
+     *        "ISO-8859-1" (or "US-ASCII") encodings are supported
+     * @throws IOException
+     */
+    public void visit(InputStream input, String charset) throws IOException {
+        boolean utf8;
+        if ("UTF-8".equalsIgnoreCase(charset)
+            || "UTF8".equalsIgnoreCase(charset)) {
+            utf8 = true;
+        } else if ("ISO-8859-1".equalsIgnoreCase(charset)
+            || "Latin1".equalsIgnoreCase(charset)
+            || "US-ASCII".equalsIgnoreCase(charset)) {
+            utf8 = false;
+        } else {
+            throw new UnsupportedEncodingException(charset);
+        }
+        fStackSize = 0;
+        HTMLTokenizer tokenizer = new HTMLTokenizer(this, utf8);
+        tokenizer.parse(input);
+        closeTo(0);
+    }
+
+}
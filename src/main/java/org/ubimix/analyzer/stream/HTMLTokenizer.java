@@ -0,0 +1,618 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A forgiving HTML tokenizer working directly with UTF-8 or Latin-1 encoded
+ * bytes. It does not build any tree; it just reports start tags, end tags and
+ * text blocks to an {@link IHandler}. Tag and attribute names are converted to
+ * lower case, character references in texts and attribute values are decoded.
+ * Comments, processing instructions and declarations are skipped. Content of
+ * <code>script</code>, <code>style</code> and other raw text elements is
+ * reported as a text without any interpretation.
+ * <p>
+ * Instances of this class are not thread-safe but could be re-used to parse
+ * several documents one after another.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class HTMLTokenizer {
+
+    /**
+     * Instances of this type are notified about tokens found in HTML
+     * documents.
+     * 
+     * @author kotelnikov
+     */
+    public interface IHandler {
+
+        /**
+         * Notifies about a closing tag
+         * 
+         * @param name the name of the tag in lower case
+         */
+        void onEndTag(String name);
+
+        /**
+         * Notifies about an opening tag.
+         * 
+         * @param name the name of the tag in lower case
+         * @param attributes pairs of attribute names and values
+         * @param selfClosing this flag is <code>true</code> if the tag ends
+         *        with "/&gt;"
+         */
+        void onStartTag(String name, String[] attributes, boolean selfClosing);
+
+        /**
+         * Notifies about a text block. The given buffer is re-used by the
+         * tokenizer, so it should not be stored.
+         * 
+         * @param buf the buffer containing the text
+         * @param start the position of the first character of the text
+         * @param len the length of the text
+         */
+        void onText(char[] buf, int start, int len);
+
+    }
+
+    private static final int EOF = -1;
+
+    /**
+     * Named character references recognized by this tokenizer.
+     */
+    private static final Map<String, Character> ENTITIES = new HashMap<String, Character>();
+
+    /**
+     * The maximal length of character references.
+     */
+    private static final int MAX_REFERENCE_LENGTH = 32;
+
+    static {
+        entity("amp", '&');
+        entity("lt", '<');
+        entity("gt", '>');
+        entity("quot", '"');
+        entity("apos", '\'');
+        entity("nbsp", '\u00A0');
+        entity("copy", '\u00A9');
+        entity("reg", '\u00AE');
+        entity("trade", '\u2122');
+        entity("laquo", '\u00AB');
+        entity("raquo", '\u00BB');
+        entity("lsquo", '\u2018');
+        entity("rsquo", '\u2019');
+        entity("ldquo", '\u201C');
+        entity("rdquo", '\u201D');
+        entity("ndash", '\u2013');
+        entity("mdash", '\u2014');
+        entity("hellip", '\u2026');
+        entity("bull", '\u2022');
+        entity("middot", '\u00B7');
+        entity("euro", '\u20AC');
+    }
+
+    private static void entity(String name, char ch) {
+        ENTITIES.put(name, ch);
+    }
+
+    /**
+     * Returns <code>true</code> if the content of elements with the specified
+     * name is not interpreted as HTML.
+     * 
+     * @param name the name of the element
+     * @return <code>true</code> if the specified element contains raw text
+     */
+    public static boolean isRawTextElement(String name) {
+        return "script".equals(name)
+            || "style".equals(name)
+            || "textarea".equals(name)
+            || "title".equals(name)
+            || "xmp".equals(name)
+            || "iframe".equals(name)
+            || "noembed".equals(name)
+            || "noframes".equals(name)
+            || "plaintext".equals(name);
+    }
+
+    private static boolean isLetter(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isSpace(int ch) {
+        return ch == ' '
+            || ch == '\n'
+            || ch == '\r'
+            || ch == '\t'
+            || ch == '\f';
+    }
+
+    private static int toLowerCase(int ch) {
+        return (ch >= 'A' && ch <= 'Z') ? ch + ('a' - 'A') : ch;
+    }
+
+    private List<String> fAttributes = new ArrayList<String>();
+
+    /**
+     * Buffer of encoded bytes
+     */
+    private byte[] fBytes = new byte[8192];
+
+    private int fBytesLen;
+
+    private int fBytesPos;
+
+    private final IHandler fHandler;
+
+    private InputStream fInput;
+
+    /**
+     * A low surrogate character which should be returned after the
+     * corresponding high surrogate.
+     */
+    private int fLowSurrogate = EOF;
+
+    /**
+     * Buffer used to read names and attribute values.
+     */
+    private StringBuilder fName = new StringBuilder();
+
+    /**
+     * Characters returned back to the stream.
+     */
+    private int[] fPushback = new int[MAX_REFERENCE_LENGTH + 8];
+
+    private int fPushbackSize;
+
+    /**
+     * Buffer of accumulated text characters.
+     */
+    private char[] fText = new char[1024];
+
+    private int fTextLen;
+
+    /**
+     * This flag is <code>true</code> if the input bytes are UTF-8 encoded;
+     * otherwise they are considered as Latin-1 (ISO-8859-1) characters.
+     */
+    private final boolean fUtf8;
+
+    /**
+     * @param handler the handler notified about found tokens
+     * @param utf8 if this flag is <code>true</code> then the input is decoded
+     *        as UTF-8; otherwise it is decoded as Latin-1
+     */
+    public HTMLTokenizer(IHandler handler, boolean utf8) {
+        fHandler = handler;
+        fUtf8 = utf8;
+    }
+
+    private void appendText(int ch) {
+        if (fTextLen == fText.length) {
+            char[] array = new char[fText.length * 2];
+            System.arraycopy(fText, 0, array, 0, fTextLen);
+            fText = array;
+        }
+        fText[fTextLen++] = (char) ch;
+    }
+
+    private void flushText() {
+        if (fTextLen > 0) {
+            fHandler.onText(fText, 0, fTextLen);
+            fTextLen = 0;
+        }
+    }
+
+    /**
+     * Reads the given HTML document and reports all found tokens to the
+     * handler. The stream is not closed by this method.
+     * 
+     * @param input the stream containing the document
+     * @throws IOException
+     */
+    public void parse(InputStream input) throws IOException {
+        fInput = input;
+        fBytesPos = 0;
+        fBytesLen = 0;
+        fPushbackSize = 0;
+        fLowSurrogate = EOF;
+        fTextLen = 0;
+        try {
+            int ch;
+            while ((ch = read()) != EOF) {
+                if (ch == '<') {
+                    readMarkup();
+                } else if (ch == '&') {
+                    fName.setLength(0);
+                    readReference(fName);
+                    for (int i = 0; i < fName.length(); i++) {
+                        appendText(fName.charAt(i));
+                    }
+                } else {
+                    appendText(ch);
+                }
+            }
+            flushText();
+        } finally {
+            fInput = null;
+        }
+    }
+
+    private int read() throws IOException {
+        if (fPushbackSize > 0) {
+            return fPushback[--fPushbackSize];
+        }
+        if (fLowSurrogate != EOF) {
+            int ch = fLowSurrogate;
+            fLowSurrogate = EOF;
+            return ch;
+        }
+        int b = readByte();
+        if (b < 0x80 || !fUtf8) {
+            return b;
+        }
+        int count;
+        int code;
+        if ((b & 0xE0) == 0xC0) {
+            count = 1;
+            code = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+            count = 2;
+            code = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+            count = 3;
+            code = b & 0x07;
+        } else {
+            return '\uFFFD';
+        }
+        for (int i = 0; i < count; i++) {
+            int next = readByte();
+            if ((next & 0xC0) != 0x80) {
+                if (next != EOF) {
+                    fBytesPos--;
+                }
+                return '\uFFFD';
+            }
+            code = (code << 6) | (next & 0x3F);
+        }
+        if (code >= 0x10000) {
+            if (code > 0x10FFFF) {
+                return '\uFFFD';
+            }
+            code -= 0x10000;
+            fLowSurrogate = 0xDC00 + (code & 0x3FF);
+            return 0xD800 + (code >> 10);
+        }
+        return code;
+    }
+
+    /**
+     * Reads attributes of a start tag and notifies the handler about the tag.
+     * 
+     * @param name the name of the tag
+     * @throws IOException
+     */
+    private void readAttributes(String name) throws IOException {
+        fAttributes.clear();
+        boolean selfClosing = false;
+        while (true) {
+            int ch = skipSpaces();
+            if (ch == EOF || ch == '>') {
+                break;
+            }
+            if (ch == '/') {
+                selfClosing = true;
+                continue;
+            }
+            selfClosing = false;
+            String attrName = readName(ch, true);
+            ch = skipSpaces();
+            String attrValue = "";
+            if (ch == '=') {
+                attrValue = readAttributeValue();
+            } else {
+                unread(ch);
+            }
+            if (!fAttributes.contains(attrName)) {
+                fAttributes.add(attrName);
+                fAttributes.add(attrValue);
+            }
+        }
+        String[] attributes = fAttributes.toArray(new String[fAttributes
+            .size()]);
+        fHandler.onStartTag(name, attributes, selfClosing);
+        if (!selfClosing && isRawTextElement(name)) {
+            readRawText(name);
+        }
+    }
+
+    private String readAttributeValue() throws IOException {
+        fName.setLength(0);
+        int ch = skipSpaces();
+        if (ch == '"' || ch == '\'') {
+            int quote = ch;
+            while ((ch = read()) != EOF && ch != quote) {
+                if (ch == '&') {
+                    readReference(fName);
+                } else {
+                    fName.append((char) ch);
+                }
+            }
+        } else {
+            while (ch != EOF && ch != '>' && !isSpace(ch)) {
+                if (ch == '&') {
+                    readReference(fName);
+                } else {
+                    fName.append((char) ch);
+                }
+                ch = read();
+            }
+            unread(ch);
+        }
+        return fName.toString();
+    }
+
+    private int readByte() throws IOException {
+        if (fBytesPos >= fBytesLen) {
+            fBytesLen = fInput.read(fBytes);
+            fBytesPos = 0;
+            if (fBytesLen <= 0) {
+                fBytesLen = 0;
+                return EOF;
+            }
+        }
+        return fBytes[fBytesPos++] & 0xFF;
+    }
+
+    /**
+     * Reads a comment, a CDATA section or a declaration after the "&lt;!"
+     * sequence.
+     * 
+     * @throws IOException
+     */
+    private void readDeclaration() throws IOException {
+        int ch = read();
+        if (ch == '-') {
+            int next = read();
+            if (next == '-') {
+                skipComment();
+                return;
+            }
+            unread(next);
+        } else if (ch == '[' && readSequence("CDATA[")) {
+            int brackets = 0;
+            while ((ch = read()) != EOF) {
+                if (ch == '>' && brackets >= 2) {
+                    fTextLen -= 2;
+                    break;
+                }
+                brackets = ch == ']' ? brackets + 1 : 0;
+                appendText(ch);
+            }
+            return;
+        }
+        unread(ch);
+        skipTo('>');
+    }
+
+    private void readEndTag() throws IOException {
+        int ch = read();
+        if (isLetter(ch)) {
+            String name = readName(ch, false);
+            skipTo('>');
+            flushText();
+            fHandler.onEndTag(name);
+        } else if (ch != '>') {
+            unread(ch);
+            skipTo('>');
+        }
+    }
+
+    /**
+     * Reads a tag, a comment or a declaration after the '&lt;' character. If
+     * the '&lt;' character does not start a markup then it is considered as a
+     * text.
+     * 
+     * @throws IOException
+     */
+    private void readMarkup() throws IOException {
+        int ch = read();
+        if (isLetter(ch)) {
+            String name = readName(ch, false);
+            flushText();
+            readAttributes(name);
+        } else if (ch == '/') {
+            readEndTag();
+        } else if (ch == '!') {
+            readDeclaration();
+        } else if (ch == '?') {
+            skipTo('>');
+        } else {
+            appendText('<');
+            unread(ch);
+        }
+    }
+
+    /**
+     * Reads a tag or an attribute name and returns it in lower case.
+     * 
+     * @param ch the first character of the name
+     * @param attr if this flag is <code>true</code> then an attribute name is
+     *        read and the '=' character ends the name
+     * @return the name
+     * @throws IOException
+     */
+    private String readName(int ch, boolean attr) throws IOException {
+        fName.setLength(0);
+        while (ch != EOF
+            && ch != '>'
+            && ch != '/'
+            && !isSpace(ch)
+            && !(attr && ch == '=' && fName.length() > 0)) {
+            fName.append((char) toLowerCase(ch));
+            ch = read();
+        }
+        unread(ch);
+        return fName.toString();
+    }
+
+    /**
+     * Reads the content of a raw text element up to the corresponding closing
+     * tag.
+     * 
+     * @param name the name of the element
+     * @throws IOException
+     */
+    private void readRawText(String name) throws IOException {
+        int ch;
+        while ((ch = read()) != EOF) {
+            if (ch == '<') {
+                int next = read();
+                if (next == '/') {
+                    int len = 0;
+                    while (len < name.length()) {
+                        int c = read();
+                        if (toLowerCase(c) != name.charAt(len)) {
+                            unread(c);
+                            break;
+                        }
+                        len++;
+                    }
+                    int c = read();
+                    unread(c);
+                    if (len == name.length()
+                        && (c == EOF || c == '>' || c == '/' || isSpace(c))) {
+                        skipTo('>');
+                        break;
+                    }
+                    appendText('<');
+                    appendText('/');
+                    for (int i = 0; i < len; i++) {
+                        appendText(name.charAt(i));
+                    }
+                    continue;
+                }
+                unread(next);
+            }
+            appendText(ch);
+        }
+        flushText();
+        fHandler.onEndTag(name);
+    }
+
+    /**
+     * Reads a character reference after the '&amp;' character and appends the
+     * decoded character to the given buffer. Unknown references are appended
+     * as is.
+     * 
+     * @param buf the buffer where the decoded character should be added
+     * @throws IOException
+     */
+    private void readReference(StringBuilder buf) throws IOException {
+        int start = buf.length();
+        buf.append('&');
+        int ch = read();
+        while (buf.length() - start < MAX_REFERENCE_LENGTH
+            && (isLetter(ch) || (ch >= '0' && ch <= '9') || ch == '#')) {
+            buf.append((char) ch);
+            ch = read();
+        }
+        int decoded = EOF;
+        int len = buf.length() - start;
+        if (len > 2 && buf.charAt(start + 1) == '#') {
+            boolean hex = buf.charAt(start + 2) == 'x'
+                || buf.charAt(start + 2) == 'X';
+            try {
+                String number = buf.substring(start + (hex ? 3 : 2));
+                decoded = Integer.parseInt(number, hex ? 16 : 10);
+            } catch (NumberFormatException e) {
+                decoded = EOF;
+            }
+            if (decoded < 0 || decoded > 0xFFFF) {
+                decoded = decoded > 0xFFFF && decoded <= 0x10FFFF
+                    ? '\uFFFD'
+                    : EOF;
+            }
+        } else if (len > 1 && ch == ';') {
+            Character value = ENTITIES.get(buf.substring(start + 1));
+            if (value != null) {
+                decoded = value.charValue();
+            }
+        }
+        if (decoded != EOF) {
+            buf.setLength(start);
+            buf.append((char) decoded);
+            if (ch != ';') {
+                unread(ch);
+            }
+        } else {
+            unread(ch);
+        }
+    }
+
+    /**
+     * Reads the given sequence of characters. If the next characters in the
+     * stream do not correspond to the sequence then all of them are returned
+     * back to the stream.
+     * 
+     * @param sequence the expected characters
+     * @return <code>true</code> if the sequence was read
+     * @throws IOException
+     */
+    private boolean readSequence(String sequence) throws IOException {
+        int len = sequence.length();
+        int[] read = new int[len];
+        for (int i = 0; i < len; i++) {
+            int ch = read();
+            read[i] = ch;
+            if (ch != sequence.charAt(i)) {
+                for (int j = i; j >= 0; j--) {
+                    unread(read[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipComment() throws IOException {
+        int dashes = 0;
+        int ch;
+        while ((ch = read()) != EOF) {
+            if (ch == '>' && dashes >= 2) {
+                break;
+            }
+            dashes = ch == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    private int skipSpaces() throws IOException {
+        int ch;
+        do {
+            ch = read();
+        } while (isSpace(ch));
+        return ch;
+    }
+
+    private void skipTo(int end) throws IOException {
+        int ch;
+        do {
+            ch = read();
+        } while (ch != EOF && ch != end);
+    }
+
+    private void unread(int ch) {
+        if (ch != EOF) {
+            fPushback[fPushbackSize++] = ch;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.stream;
+
+import org.ubimix.analyzer.scores.impl.TagSymbols;
+
+/**
+ * A lightweight description of a tag used by streaming score generators. It
+ * contains only the name of the tag and its attributes.
+ * 
+ * @author kotelnikov
+ */
+public class TagDescriptor {
+
+    private static final String[] EMPTY = new String[0];
+
+    /**
+     * Attribute names and values. Names have even indexes and values odd
+     * indexes.
+     */
+    private final String[] fAttributes;
+
+    /**
+     * The name of the tag
+     */
+    private final String fName;
+
+    /**
+     * The identifier of the tag name in the {@link TagSymbols} dictionary
+     */
+    private final int fTagId;
+
+    /**
+     * @param name the name of the tag
+     * @param attributes pairs of attribute names and values
+     */
+    public TagDescriptor(String name, String... attributes) {
+        if (attributes == null) {
+            attributes = EMPTY;
+        }
+        if (attributes.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                "Attribute names and values should go in pairs.");
+        }
+        fName = name;
+        fTagId = TagSymbols.getTagId(name);
+        fAttributes = attributes;
+    }
+
+    /**
+     * Returns the value of the attribute with the specified name.
+     * 
+     * @param name the name of the attribute
+     * @return the value of the attribute or <code>null</code> if there is no
+     *         such an attribute
+     */
+    public String getAttribute(String name) {
+        for (int i = 0; i < fAttributes.length; i += 2) {
+            if (name.equals(fAttributes[i])) {
+                return fAttributes[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of attributes of this tag
+     */
+    public int getAttributeCount() {
+        return fAttributes.length / 2;
+    }
+
+    /**
+     * @param idx the index of the attribute
+     * @return the name of the attribute with the specified index
+     */
+    public String getAttributeName(int idx) {
+        return fAttributes[idx * 2];
+    }
+
+    /**
+     * @param idx the index of the attribute
+     * @return the value of the attribute with the specified index
+     */
+    public String getAttributeValue(int idx) {
+        return fAttributes[idx * 2 + 1];
+    }
+
+    /**
+     * @return the name of this tag
+     */
+    public String getName() {
+        return fName;
+    }
+
+    /**
+     * @return the identifier of the tag name in the {@link TagSymbols}
+     *         dictionary or {@link TagSymbols#UNKNOWN}
+     */
+    public int getTagId() {
+        return fTagId;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("<").append(fName);
+        for (int i = 0; i < fAttributes.length; i += 2) {
+            buf.append(" ").append(fAttributes[i]);
+            buf.append("=\"").append(fAttributes[i + 1]).append("\"");
+        }
+        buf.append(">");
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.stream;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagIdProvider;
+
+/**
+ * @author kotelnikov
+ */
+public class TagDescriptorInfoProvider
+    implements
+    ITagIdProvider<TagDescriptor>,
+    ITagAttributesProvider<TagDescriptor> {
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeName(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public String getAttributeName(TagDescriptor tag, int index) {
+        return tag.getAttributeName(index);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributesNumber(java.lang.Object)
+     */
+    @Override
+    public int getAttributesNumber(TagDescriptor tag) {
+        return tag.getAttributeCount();
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeValue(java.lang.Object,
+     *      int)
+     */
+    @Override
+    public String getAttributeValue(TagDescriptor tag, int index) {
+        return tag.getAttributeValue(index);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagAttributesProvider#getAttributeValue(java.lang.Object,
+     *      java.lang.String)
+     */
+    @Override
+    public String getAttributeValue(TagDescriptor tag, String name) {
+        return tag.getAttribute(name);
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> getTagAttributes(
+        final TagDescriptor tag) {
+        return new Iterable<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+
+                    private int fPos;
+
+                    @Override
+                    public boolean hasNext() {
+                        return fPos < tag.getAttributeCount();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (fPos >= tag.getAttributeCount()) {
+                            throw new NoSuchElementException();
+                        }
+                        int idx = fPos++;
+                        return new SimpleImmutableEntry<String, String>(
+                            tag.getAttributeName(idx),
+                            tag.getAttributeValue(idx));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public int getTagId(TagDescriptor tag) {
+        return tag.getTagId();
+    }
+
+    @Override
+    public String getTagName(TagDescriptor tag) {
+        return tag.getName();
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.stream;
+
+import java.io.Reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+
+/**
+ * This class feeds a score generator directly from a StAX
+ * {@link XMLStreamReader}, so documents are scored without building a DOM. The
+ * memory used by this class is proportional to the depth of the document and
+ * not to its size.
+ * 
+ * @author kotelnikov
+ */
+public class XMLStreamScoreGenerator {
+
+    /**
+     * Returns the qualified name of an element or an attribute.
+     * 
+     * @param prefix the namespace prefix
+     * @param localName the local name
+     * @return the qualified name
+     */
+    private static String getName(String prefix, String localName) {
+        if (prefix == null || "".equals(prefix)) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+
+    /**
+     * Creates and returns a new descriptor of the element corresponding to the
+     * current <code>START_ELEMENT</code> event of the given reader.
+     * 
+     * @param reader the reader positioned on an element start
+     * @return a new descriptor of the current element
+     */
+    public static TagDescriptor newTagDescriptor(XMLStreamReader reader) {
+        String name = getName(reader.getPrefix(), reader.getLocalName());
+        int count = reader.getAttributeCount();
+        String[] attributes = new String[count * 2];
+        for (int i = 0; i < count; i++) {
+            attributes[i * 2] = getName(
+                reader.getAttributePrefix(i),
+                reader.getAttributeLocalName(i));
+            attributes[i * 2 + 1] = reader.getAttributeValue(i);
+        }
+        return new TagDescriptor(name, attributes);
+    }
+
+    private ScoreGenerator<TagDescriptor> fGenerator;
+
+    /**
+     * Accumulates adjacent text events; they are reported as one text block.
+     */
+    private StringBuilder fText = new StringBuilder();
+
+    public XMLStreamScoreGenerator(ScoreGenerator<TagDescriptor> generator) {
+        fGenerator = generator;
+    }
+
+    public TagInfo<TagDescriptor> beginTag(TagDescriptor tag) {
+        return fGenerator.beginTag(tag);
+    }
+
+    public TagInfo<TagDescriptor> endTag() {
+        return fGenerator.endTag();
+    }
+
+    private void flushText() {
+        if (fText.length() > 0) {
+            fGenerator.onText(fText);
+            fText.setLength(0);
+        }
+    }
+
+    public void onText(String content) {
+        fGenerator.onText(content);
+    }
+
+    /**
+     * Reads the given XML document and scores all its elements.
+     * 
+     * @param reader the source of the XML document
+     * @throws XMLStreamException
+     */
+    public void visit(Reader reader) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XMLStreamReader streamReader = factory.createXMLStreamReader(reader);
+        try {
+            visit(streamReader);
+        } finally {
+            streamReader.close();
+        }
+    }
+
+    /**
+     * Scores elements from the given reader. If the reader is positioned on an
+     * element start then only this element is visited and the reader stays on
+     * the corresponding element end. Otherwise all elements are visited until
+     * the end of the document.
+     * 
+     * @param reader the reader to visit
+     * @throws XMLStreamException
+     */
+    public void visit(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        int event = reader.getEventType();
+        while (true) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    flushText();
+                    beginTag(newTagDescriptor(reader));
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    flushText();
+                    endTag();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth > 0) {
+                        fText.append(
+                            reader.getTextCharacters(),
+                            reader.getTextStart(),
+                            reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (depth > 0) {
+                        fText.append(reader.getText());
+                    }
+                    break;
+                default:
+                    flushText();
+                    break;
+            }
+            if (depth == 0 && event == XMLStreamConstants.END_ELEMENT
+                || event == XMLStreamConstants.END_DOCUMENT
+                || !reader.hasNext()) {
+                break;
+            }
+            event = reader.next();
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import org.ubimix.analyzer.scores.IScoringMetricsListener;
+import org.ubimix.analyzer.scores.IScoringPhaseListener;
+import org.ubimix.analyzer.scores.ScoringMetrics;
+
+/**
+ * A metrics listener emitting Java Flight Recorder events, so scoring
+ * statistics are visible in continuous recordings together with GC, I/O and
+ * thread events. For each scored document this listener emits an
+ * <code>org.ubimix.analyzer.DocumentScored</code> event starting when the
+ * first tag is opened and committed when the document is finished. For each
+ * call of a scoring phase (tag detectors, text detector or propagation)
+ * taking more time than the specified threshold it emits an
+ * <code>org.ubimix.analyzer.SlowScoringPhase</code> event spanning this call.
+ * Phases are reported and the total phase times of documents are known only
+ * if the generator measures them (see
+ * {@link org.ubimix.analyzer.scores.ScoreGenerator#setMetricsListener(IScoringMetricsListener, boolean)}
+ * ). Events are not committed when they are disabled in the recording
+ * settings.
+ * <p>
+ * This class requires Java 11 or later; it is compiled only by the
+ * <code>vector</code> build profile (Java 17).
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class JfrScoringMetricsListener implements IScoringPhaseListener {
+
+    /**
+     * Events of one document kept in its statistics
+     */
+    private static class DocumentState {
+
+        private final DocumentScoredEvent fDocument;
+
+        /**
+         * The event of the current phase; it is re-used until it is
+         * committed
+         */
+        private SlowScoringPhaseEvent fPhase;
+
+        public DocumentState(DocumentScoredEvent document) {
+            fDocument = document;
+        }
+
+    }
+
+    /**
+     * Statistics of one scored document
+     */
+    @Name("org.ubimix.analyzer.DocumentScored")
+    @Label("Document Scored")
+    @Category({ "Ubimix", "Analyzer" })
+    @Description("Statistics of a document scored by the analyzer")
+    @StackTrace(false)
+    static class DocumentScoredEvent extends Event {
+
+        @Label("Allocated Channels")
+        long allocatedChannels;
+
+        @Label("Scoring Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long scoringTime;
+
+        @Label("Maximal Depth")
+        int maxDepth;
+
+        @Label("Propagation Steps")
+        long propagationSteps;
+
+        @Label("Propagation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long propagationTime;
+
+        @Label("Tag Detectors Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long tagDetectorsTime;
+
+        @Label("Tags")
+        int tagsNumber;
+
+        @Label("Text Detector Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long textDetectorTime;
+
+        @Label("Text Length")
+        @Description("The number of characters in texts")
+        long textLength;
+
+        @Label("Traversal Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long traversalTime;
+
+    }
+
+    /**
+     * A call of a scoring phase which took too much time
+     */
+    @Name("org.ubimix.analyzer.SlowScoringPhase")
+    @Label("Slow Scoring Phase")
+    @Category({ "Ubimix", "Analyzer" })
+    @Description("A scoring phase taking more time than the threshold")
+    @StackTrace(false)
+    static class SlowScoringPhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Phase Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseTime;
+
+        @Label("Tags")
+        @Description("The number of tags opened before the end of the phase")
+        int tagsNumber;
+
+    }
+
+    /**
+     * The default threshold of slow phases in milliseconds
+     */
+    public static final long DEFAULT_THRESHOLD = 10;
+
+    private final IScoringMetricsListener fListener;
+
+    /**
+     * The threshold of slow phases in nanoseconds
+     */
+    private final long fThreshold;
+
+    /**
+     * This constructor uses the default threshold of slow phases.
+     */
+    public JfrScoringMetricsListener() {
+        this(DEFAULT_THRESHOLD, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * @param threshold the minimal duration of reported phases
+     * @param unit the unit of the threshold
+     * @param listener the listener notified about scored documents after
+     *        this one; it could be <code>null</code>
+     */
+    public JfrScoringMetricsListener(
+        long threshold,
+        TimeUnit unit,
+        IScoringMetricsListener listener) {
+        fThreshold = unit.toNanos(threshold);
+        fListener = listener;
+    }
+
+    /**
+     * @return the events of the document or <code>null</code> if the
+     *         document was started before this listener was set
+     */
+    private DocumentState getState(ScoringMetrics metrics) {
+        return (DocumentState) metrics.getListenerState();
+    }
+
+    /**
+     * @return the threshold of slow phases in nanoseconds
+     */
+    public long getThreshold() {
+        return fThreshold;
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.IScoringMetricsListener#onDocumentScored(org.ubimix.analyzer.scores.ScoringMetrics)
+     */
+    @Override
+    public void onDocumentScored(ScoringMetrics metrics) {
+        DocumentState state = getState(metrics);
+        DocumentScoredEvent event = state != null
+            ? state.fDocument
+            : new DocumentScoredEvent();
+        if (event.isEnabled()) {
+            event.allocatedChannels = metrics.getAllocatedChannels();
+            event.maxDepth = metrics.getMaxDepth();
+            event.propagationSteps = metrics.getPropagationSteps();
+            event.propagationTime = metrics.getPropagationTime();
+            event.scoringTime = metrics.getDuration();
+            event.tagDetectorsTime = metrics.getTagDetectorsTime();
+            event.tagsNumber = metrics.getTagsNumber();
+            event.textDetectorTime = metrics.getTextDetectorTime();
+            event.textLength = metrics.getTextLength();
+            event.traversalTime = metrics.getTraversalTime();
+            event.commit();
+        }
+        if (fListener != null) {
+            fListener.onDocumentScored(metrics);
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.IScoringPhaseListener#onDocumentStarted(org.ubimix.analyzer.scores.ScoringMetrics)
+     */
+    @Override
+    public void onDocumentStarted(ScoringMetrics metrics) {
+        DocumentScoredEvent event = new DocumentScoredEvent();
+        event.begin();
+        metrics.setListenerState(new DocumentState(event));
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.IScoringPhaseListener#onPhaseFinished(org.ubimix.analyzer.scores.ScoringMetrics,
+     *      org.ubimix.analyzer.scores.ScoringMetrics.Phase, long)
+     */
+    @Override
+    public void onPhaseFinished(
+        ScoringMetrics metrics,
+        ScoringMetrics.Phase phase,
+        long duration) {
+        DocumentState state = getState(metrics);
+        if (state == null || state.fPhase == null || duration < fThreshold) {
+            return;
+        }
+        SlowScoringPhaseEvent event = state.fPhase;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase.getName();
+            event.phaseTime = duration;
+            event.tagsNumber = metrics.getTagsNumber();
+            event.commit();
+            state.fPhase = null;
+        }
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.IScoringPhaseListener#onPhaseStarted(org.ubimix.analyzer.scores.ScoringMetrics,
+     *      org.ubimix.analyzer.scores.ScoringMetrics.Phase)
+     */
+    @Override
+    public void onPhaseStarted(
+        ScoringMetrics metrics,
+        ScoringMetrics.Phase phase) {
+        DocumentState state = getState(metrics);
+        if (state == null) {
+            return;
+        }
+        if (state.fPhase == null) {
+            state.fPhase = new SlowScoringPhaseEvent();
+        }
+        state.fPhase.begin();
+    }
+
+}
@@ -0,0 +1,253 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.scores.impl;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import org.ubimix.analyzer.scores.IChannelsManager;
+
+/**
+ * A text score detector classifying characters of long texts in SIMD lanes
+ * with the <code>jdk.incubator.vector</code> API. Blocks of ASCII characters
+ * are classified with vector comparisons; blocks containing other characters
+ * and short texts are analyzed by the scalar code of the parent class. This
+ * detector counts characters of each class and multiplies the counts by the
+ * class weights, so its results could differ from the scalar detector by
+ * floating-point rounding errors.
+ * <p>
+ * This class requires Java 17 and the <code>jdk.incubator.vector</code>
+ * module; it is compiled only by the <code>vector</code> build profile. Use
+ * the {@link TextScoreDetector#newInstance(IChannelsManager)} method to
+ * create it when it is available.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class VectorTextScoreDetector extends TextScoreDetector {
+
+    /**
+     * Per-thread buffers used to copy texts
+     */
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>();
+
+    /**
+     * The maximal size of per-thread buffers; longer texts are copied to
+     * temporary buffers, so one huge text does not stay in memory for the
+     * lifetime of a thread
+     */
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Texts shorter than this value are analyzed by the scalar code
+     */
+    private static final int MIN_LENGTH = 64;
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private static char[] getBuffer(int len) {
+        if (len > MAX_BUFFER_SIZE) {
+            return new char[len];
+        }
+        char[] buf = BUFFER.get();
+        if (buf == null || buf.length < len) {
+            buf = new char[Math.max(len, 1024)];
+            BUFFER.set(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Returns a mask of ASCII spaces (space, tab, new line, carriage return)
+     */
+    private static VectorMask<Short> getSpaces(ShortVector v) {
+        return v
+            .compare(VectorOperators.EQ, (short) ' ')
+            .or(v.compare(VectorOperators.EQ, (short) '\t'))
+            .or(v.compare(VectorOperators.EQ, (short) '\n'))
+            .or(v.compare(VectorOperators.EQ, (short) '\r'));
+    }
+
+    public VectorTextScoreDetector(IChannelsManager channelsManager) {
+        super(channelsManager);
+    }
+
+    /**
+     * A copy constructor creating an immutable copy of the given detector
+     */
+    protected VectorTextScoreDetector(VectorTextScoreDetector detector) {
+        super(detector);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.TextScoreDetector#freeze()
+     */
+    @Override
+    public TextScoreDetector freeze() {
+        return new VectorTextScoreDetector(this);
+    }
+
+    /**
+     * @see org.ubimix.analyzer.scores.impl.TextScoreDetector#getTextWeight(char[],
+     *      int, int, boolean)
+     */
+    @Override
+    protected double getTextWeight(
+        char[] buf,
+        int start,
+        int len,
+        boolean reduceSpaces) {
+        int lanes = SPECIES.length();
+        if (len < MIN_LENGTH || len < lanes * 2) {
+            return super.getTextWeight(buf, start, len, reduceSpaces);
+        }
+        int end = start + len;
+
+        // Counters of characters by classes; spaces are counted according
+        // to the reduceSpaces flag
+        long spaces = 0;
+        long upperCase = 0;
+        long lowerCase = 0;
+        long symbols = 0;
+
+        // The first character is analyzed separately, so the vector loop
+        // could always load the previous character
+        boolean prevSpace = getCharClass(buf[start]) == SPACE;
+        switch (getCharClass(buf[start])) {
+            case SPACE:
+                spaces++;
+                break;
+            case UPPER_CASE:
+                upperCase++;
+                break;
+            case LOWER_CASE:
+                lowerCase++;
+                break;
+            default:
+                symbols++;
+                break;
+        }
+        int i = start + 1;
+        for (; i + lanes <= end; i += lanes) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+            boolean ascii = v
+                .and((short) 0xFF80)
+                .compare(VectorOperators.EQ, (short) 0)
+                .allTrue();
+            if (!ascii) {
+                // Scalar analysis of blocks with non-ASCII characters
+                for (int j = i; j < i + lanes; j++) {
+                    int charClass = getCharClass(buf[j]);
+                    switch (charClass) {
+                        case SPACE:
+                            if (!reduceSpaces || !prevSpace) {
+                                spaces++;
+                            }
+                            break;
+                        case UPPER_CASE:
+                            upperCase++;
+                            break;
+                        case LOWER_CASE:
+                            lowerCase++;
+                            break;
+                        default:
+                            symbols++;
+                            break;
+                    }
+                    prevSpace = charClass == SPACE;
+                }
+                continue;
+            }
+            VectorMask<Short> space = getSpaces(v);
+            VectorMask<Short> upper = v
+                .compare(VectorOperators.GE, (short) 'A')
+                .and(v.compare(VectorOperators.LE, (short) 'Z'));
+            VectorMask<Short> lower = v
+                .compare(VectorOperators.GE, (short) 'a')
+                .and(v.compare(VectorOperators.LE, (short) 'z'))
+                .or(v
+                    .compare(VectorOperators.GE, (short) '0')
+                    .and(v.compare(VectorOperators.LE, (short) '9')));
+            int spaceCount = space.trueCount();
+            int upperCount = upper.trueCount();
+            int lowerCount = lower.trueCount();
+            symbols += lanes - spaceCount - upperCount - lowerCount;
+            upperCase += upperCount;
+            lowerCase += lowerCount;
+            if (reduceSpaces) {
+                // Only spaces following non-space characters are counted.
+                // The previous character of the first lane could be a
+                // non-ASCII character, so it is checked with the scalar flag.
+                ShortVector prev = ShortVector
+                    .fromCharArray(SPECIES, buf, i - 1);
+                VectorMask<Short> prevSpaces = getSpaces(prev);
+                spaces += space.andNot(prevSpaces).trueCount();
+                if (space.laneIsSet(0)
+                    && prevSpace != prevSpaces.laneIsSet(0)) {
+                    spaces += prevSpace ? -1 : 1;
+                }
+            } else {
+                spaces += spaceCount;
+            }
+            prevSpace = space.laneIsSet(lanes - 1);
+        }
+        for (; i < end; i++) {
+            int charClass = getCharClass(buf[i]);
+            switch (charClass) {
+                case SPACE:
+                    if (!reduceSpaces || !prevSpace) {
+                        spaces++;
+                    }
+                    break;
+                case UPPER_CASE:
+                    upperCase++;
+                    break;
+                case LOWER_CASE:
+                    lowerCase++;
+                    break;
+                default:
+                    symbols++;
+                    break;
+            }
+            prevSpace = charClass == SPACE;
+        }
+        return spaces
+            * getSpaceWeight()
+            + upperCase
+            * getUpperCaseWeight()
+            + lowerCase
+            * getLowerCaseWeight()
+            + symbols
+            * getSymbolWeight();
+    }
+
+    /**
+     * Copies long texts to a per-thread buffer and analyzes them with the
+     * {@link #getTextWeight(char[], int, int, boolean)} method.
+     * 
+     * @see org.ubimix.analyzer.scores.impl.TextScoreDetector#getTextWeight(java.lang.CharSequence,
+     *      boolean)
+     */
+    @Override
+    protected double getTextWeight(CharSequence value, boolean reduceSpaces) {
+        int len = value.length();
+        if (len < MIN_LENGTH) {
+            return super.getTextWeight(value, reduceSpaces);
+        }
+        char[] buf = getBuffer(len);
+        if (value instanceof String) {
+            ((String) value).getChars(0, len, buf, 0);
+        } else if (value instanceof StringBuilder) {
+            ((StringBuilder) value).getChars(0, len, buf, 0);
+        } else {
+            for (int i = 0; i < len; i++) {
+                buf[i] = value.charAt(i);
+            }
+        }
+        return getTextWeight(buf, 0, len, reduceSpaces);
+    }
+
+}
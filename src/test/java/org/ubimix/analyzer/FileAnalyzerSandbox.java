@@ -8,21 +8,22 @@ import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
 
 import junit.framework.TestCase;
 
+import org.htmlcleaner.TagNode;
 import org.ubimix.analyzer.scores.ScoreGenerator;
 import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
 import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.scores.impl.TopTagsCollector;
 import org.ubimix.analyzer.server.ElementInfoProvider;
 import org.ubimix.analyzer.server.ElementScoreGenerator;
 import org.ubimix.analyzer.utils.HTMLUtils;
 import org.ubimix.analyzer.utils.IOUtil;
+import org.ubimix.analyzer.utils.TagNodeInfoProvider;
+import org.ubimix.analyzer.utils.TagNodeScoreGenerator;
 import org.ubimix.analyzer.utils.XMLUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -39,6 +40,9 @@ public class FileAnalyzerSandbox extends TestCase {
     private ScoreGeneratorFactory<Element> fScoreGeneratorFactory = new ScoreGeneratorFactory<Element>(
         new ElementInfoProvider());
 
+    private ScoreGeneratorFactory<TagNode> fTagNodeScoreGeneratorFactory = new ScoreGeneratorFactory<TagNode>(
+        new TagNodeInfoProvider());
+
     protected File fXmlDir;
 
     public FileAnalyzerSandbox(String name) {
@@ -139,14 +143,19 @@ public class FileAnalyzerSandbox extends TestCase {
             Element root = doc.getDocumentElement();
             Element body = (Element) root.getChildNodes().item(1);
 
-            final List<TagInfo<Element>> tagInfoList = new ArrayList<TagInfo<Element>>();
+            int len = 300;
+            int count = 3;
             ScoreGenerator<Element> generator = fScoreGeneratorFactory
                 .newScoreGenerator();
+            TopTagsCollector<Element> collector = new TopTagsCollector<Element>(
+                count,
+                generator.getChannelManager().getChannelsNumber(),
+                0);
+            generator.addTagListener(collector);
             ElementScoreGenerator util = new ElementScoreGenerator(generator) {
                 @Override
                 public TagInfo<Element> endTag() {
                     TagInfo<Element> info = super.endTag();
-                    tagInfoList.add(info);
                     Element tag = info.getTag();
                     tag.setAttribute("score", ""
                         + info.getFullScore().getLevel(0));
@@ -154,37 +163,75 @@ public class FileAnalyzerSandbox extends TestCase {
                 }
             };
             util.visit(body);
-            Collections.sort(tagInfoList, new Comparator<TagInfo<Element>>() {
-                @Override
-                public int compare(TagInfo<Element> o1, TagInfo<Element> o2) {
-                    return -o1.getFullScore().compareTo(o2.getFullScore(), 0);
-                }
-            });
             String fileName = file.getName();
             println1("====================================================");
             println1(fileName);
             println1("----------------------------------------------------");
 
+            for (int i = 0; i < collector.getSize(); i++) {
+                if (i > 0) {
+                    println1("----------------------------------------------------");
+                }
+                Element element = collector.getTag(i);
+                double score = collector.getScore(i);
+                println(toString(len, element, score));
+            }
+        }
+    }
+
+    /**
+     * Scores cleaned HTML files directly from HtmlCleaner trees, without the
+     * conversion to DOM and XML files.
+     */
+    public void testTagNodes() throws Exception {
+        File[] list = getFiles(fHtmlDir, ".html");
+        for (File file : list) {
+            String str = IOUtil.readString(file);
+            TagNode root = HTMLUtils.cleanHTML(new StringReader(str));
+            TagNode body = root.findElementByName("body", false);
+            if (body == null) {
+                continue;
+            }
+
             int len = 300;
             int count = 3;
-            for (int i = 0; i < count; i++) {
+            ScoreGenerator<TagNode> generator = fTagNodeScoreGeneratorFactory
+                .newScoreGenerator();
+            TopTagsCollector<TagNode> collector = new TopTagsCollector<TagNode>(
+                count,
+                generator.getChannelManager().getChannelsNumber(),
+                0);
+            generator.addTagListener(collector);
+            TagNodeScoreGenerator util = new TagNodeScoreGenerator(generator);
+            util.visit(body);
+            println1("====================================================");
+            println1(file.getName());
+            println1("----------------------------------------------------");
+            for (int i = 0; i < collector.getSize(); i++) {
                 if (i > 0) {
                     println1("----------------------------------------------------");
                 }
-                TagInfo<Element> info = tagInfoList.get(i);
-                println(toString(len, info));
+                TagNode tag = collector.getTag(i);
+                double score = collector.getScore(i);
+                String text = String.valueOf(tag.getText());
+                text = text.replaceAll("[\r\n \t]+", " ");
+                text = text.substring(0, Math.min(len, text.length()));
+                println(String.format("%f", score)
+                    + " - <"
+                    + tag.getName()
+                    + "> "
+                    + text);
             }
         }
     }
 
-    public String toString(int len, TagInfo<Element> info) throws IOException {
-        Element element = info.getTag();
+    public String toString(int len, Element element, double fullScore)
+        throws IOException {
         String str = XMLUtil.serializeXML(element);
         str = str.replaceAll("[\r\n \t]+", " ");
         int l = Math.min(len, str.length());
         str = str.substring(0, l);
 
-        double fullScore = info.getFullScore().getLevel(0);
         str = String.format("%f", fullScore) + " - " + str;
         return str;
     }
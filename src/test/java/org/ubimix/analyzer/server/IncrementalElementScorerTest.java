@@ -0,0 +1,276 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.server;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ITagListener;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.ubimix.analyzer.scores.impl.ScoringModel;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that scores updated by the {@link IncrementalElementScorer} after
+ * random modifications are the same as scores of the whole modified tree.
+ * 
+ * @author kotelnikov
+ */
+public class IncrementalElementScorerTest extends TestCase {
+
+    private static final String[] CLASSES = {
+        "content",
+        "main-content",
+        "comment",
+        "nav menu",
+        "footer",
+        "sidebar" };
+
+    private static final String[] TAGS = {
+        "div",
+        "p",
+        "a",
+        "ul",
+        "li",
+        "span",
+        "h1",
+        "img",
+        "table",
+        "td" };
+
+    private static final String[] TEXTS = {
+        "Lorem ipsum dolor sit amet, consectetur adipiscing elit.",
+        "Home",
+        "Read more...",
+        "A short sentence. And another one!",
+        "" };
+
+    /**
+     * The maximal relative difference between incremental and full scores
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    private ScoringModel<Element> fModel;
+
+    public IncrementalElementScorerTest(String name) {
+        super(name);
+    }
+
+    private void addChildren(Element tag, Random random, int depth) {
+        Document doc = tag.getOwnerDocument();
+        int count = depth > 6 ? 0 : random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(3) == 0) {
+                String text = TEXTS[random.nextInt(TEXTS.length)];
+                tag.appendChild(doc.createTextNode(text));
+            } else {
+                tag.appendChild(newElement(doc, random));
+                addChildren((Element) tag.getLastChild(), random, depth + 1);
+            }
+        }
+    }
+
+    private void checkScores(IncrementalElementScorer scorer, String message) {
+        Element root = scorer.getRoot();
+        final Map<Element, Channels> scores = new IdentityHashMap<Element, Channels>();
+        ScoreGenerator<Element> generator = fModel.newScoreGenerator();
+        generator.setBufferedPropagation(true);
+        generator.addTagListener(new ITagListener<Element>() {
+            @Override
+            public void onEndTag(TagInfo<Element> info) {
+                scores.put(info.getTag(), info.getFullScore().getCopy());
+            }
+        });
+        new ElementScoreGenerator(generator).visit(root);
+        assertEquals(message, scores.size(), scorer.getTagsNumber());
+        for (Map.Entry<Element, Channels> entry : scores.entrySet()) {
+            TagInfo<Element> info = scorer.getTagInfo(entry.getKey());
+            assertNotNull(message, info);
+            checkScores(message, entry.getValue(), info.getFullScore());
+        }
+        checkScores(message, generator.getMaxScore(), scorer.getMaxScore());
+    }
+
+    private void checkScores(
+        String message,
+        Channels expected,
+        Channels value) {
+        int n = fModel.getChannelsManager().getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            double x = expected.getLevel(i);
+            double y = value.getLevel(i);
+            double error = Math.abs(x - y) / Math.max(1, Math.abs(x));
+            assertTrue(message + ": " + x + " != " + y, error <= TOLERANCE);
+        }
+    }
+
+    private List<Element> getElements(Element root) {
+        List<Element> result = new ArrayList<Element>();
+        result.add(root);
+        for (int i = 0; i < result.size(); i++) {
+            for (Node child = result.get(i).getFirstChild(); child != null; child = child
+                .getNextSibling()) {
+                if (child instanceof Element) {
+                    result.add((Element) child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Element newElement(Document doc, Random random) {
+        Element tag = doc.createElement(TAGS[random.nextInt(TAGS.length)]);
+        if (random.nextInt(3) == 0) {
+            tag.setAttribute("class", CLASSES[random.nextInt(CLASSES.length)]);
+        }
+        return tag;
+    }
+
+    private Element newRoot() throws Exception {
+        Document doc = DocumentBuilderFactory
+            .newInstance()
+            .newDocumentBuilder()
+            .newDocument();
+        Element root = doc.createElement("body");
+        doc.appendChild(root);
+        return root;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        fModel = new ScoreGeneratorFactory<Element>(new ElementInfoProvider())
+            .compile();
+    }
+
+    /**
+     * Very deep trees should be scored and modified without recursion.
+     */
+    public void testDeepTree() throws Exception {
+        final Element root = newRoot();
+        Document doc = root.getOwnerDocument();
+        Element tag = root;
+        for (int i = 0; i < 10000; i++) {
+            Element child = doc.createElement(i % 2 == 0 ? "div" : "p");
+            child.appendChild(doc.createTextNode(TEXTS[i % TEXTS.length]));
+            tag.appendChild(child);
+            tag = child;
+        }
+        final Element deepest = tag;
+        final IncrementalElementScorer scorer = new IncrementalElementScorer(
+            fModel);
+        final Throwable[] error = { null };
+        // A small stack makes sure that trees are not visited recursively
+        Thread thread = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scorer.visit(root);
+                    Element parent = (Element) root.getFirstChild();
+                    Element child = (Element) parent.getFirstChild()
+                        .getNextSibling();
+                    parent.removeChild(child);
+                    scorer.onSubtreeRemoved(parent, child);
+                    parent.appendChild(child);
+                    scorer.onSubtreeInserted(child);
+                    scorer.onAttributesChanged(parent);
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+            }
+        }, "deep", 256 * 1024);
+        thread.start();
+        thread.join();
+        if (error[0] != null) {
+            throw new AssertionError(error[0]);
+        }
+        assertEquals(10001, scorer.getTagsNumber());
+        assertNotNull(scorer.getTagInfo(deepest));
+    }
+
+    /**
+     * Random insertions, removals, text and attribute changes should give the
+     * same scores as the analysis of the whole modified tree.
+     */
+    public void testRandomModifications() throws Exception {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            Element root = newRoot();
+            addChildren(root, random, 0);
+            IncrementalElementScorer scorer = new IncrementalElementScorer(
+                fModel);
+            scorer.visit(root);
+            checkScores(scorer, "visit " + seed);
+            for (int step = 0; step < 50; step++) {
+                List<Element> elements = getElements(root);
+                Element tag = elements.get(random.nextInt(elements.size()));
+                String message = "seed " + seed + ", step " + step;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        if (tag != root) {
+                            Element parent = (Element) tag.getParentNode();
+                            parent.removeChild(tag);
+                            scorer.onSubtreeRemoved(parent, tag);
+                        }
+                        break;
+                    case 1:
+                        Element child = newElement(
+                            root.getOwnerDocument(),
+                            random);
+                        addChildren(child, random, 4);
+                        tag.insertBefore(child, tag.getFirstChild());
+                        scorer.onSubtreeInserted(child);
+                        break;
+                    case 2:
+                        String text = TEXTS[random.nextInt(TEXTS.length)];
+                        tag.appendChild(root.getOwnerDocument().createTextNode(
+                            text));
+                        scorer.onTextChanged(tag);
+                        break;
+                    default:
+                        tag.setAttribute(
+                            "class",
+                            CLASSES[random.nextInt(CLASSES.length)]);
+                        scorer.onAttributesChanged(tag);
+                }
+                checkScores(scorer, message);
+            }
+        }
+    }
+
+    /**
+     * Modifications of tags with many siblings should re-score only the
+     * modified tags and their ancestors.
+     */
+    public void testWideTree() throws Exception {
+        Element root = newRoot();
+        Document doc = root.getOwnerDocument();
+        Element list = doc.createElement("ul");
+        root.appendChild(list);
+        for (int i = 0; i < 20000; i++) {
+            Element item = doc.createElement("li");
+            item.appendChild(doc.createTextNode(TEXTS[i % TEXTS.length]));
+            list.appendChild(item);
+        }
+        IncrementalElementScorer scorer = new IncrementalElementScorer(fModel);
+        scorer.visit(root);
+        Element item = (Element) list.getChildNodes().item(10000);
+        item.appendChild(doc.createTextNode(TEXTS[0]));
+        scorer.onTextChanged(item);
+        assertTrue(scorer.getUpdatedTagsNumber() <= 3);
+        checkScores(scorer, "wide");
+    }
+
+}
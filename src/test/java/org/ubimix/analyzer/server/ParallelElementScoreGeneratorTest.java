@@ -0,0 +1,257 @@
+/**
+ *
+ */
+package org.ubimix.analyzer.server;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.ubimix.analyzer.scores.Channels;
+import org.ubimix.analyzer.scores.ITagListener;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+import org.ubimix.analyzer.scores.impl.ScoreGeneratorFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Checks that full scores and positions of tags scored by the
+ * {@link ParallelElementScoreGenerator} are the same as the results of a
+ * sequential {@link ElementScoreGenerator} with the buffered propagation.
+ *
+ * @author kotelnikov
+ */
+public class ParallelElementScoreGeneratorTest extends TestCase {
+
+    /**
+     * Results of one scored tag
+     */
+    private static class TagResult {
+
+        private final Channels fFullScore;
+
+        private final int fTagPos;
+
+        public TagResult(TagInfo<Element> info) {
+            fFullScore = info.getFullScore().getCopy();
+            fTagPos = info.getTagPos();
+        }
+
+    }
+
+    private static final String[] CLASSES = {
+        "content",
+        "main-content",
+        "comment",
+        "nav menu",
+        "footer",
+        "sidebar" };
+
+    private static final String[] TAGS = {
+        "div",
+        "p",
+        "a",
+        "ul",
+        "li",
+        "span",
+        "h1",
+        "img",
+        "table",
+        "td" };
+
+    private static final String[] TEXTS = {
+        "Lorem ipsum dolor sit amet, consectetur adipiscing elit.",
+        "Home",
+        "Read more...",
+        "A short sentence. And another one!",
+        "" };
+
+    /**
+     * Subtrees with this number of tags or more are scored in separate tasks
+     */
+    private static final int THRESHOLD = 8;
+
+    /**
+     * The maximal relative difference between parallel and sequential scores
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    private ScoreGeneratorFactory<Element> fFactory;
+
+    private ForkJoinPool fPool;
+
+    public ParallelElementScoreGeneratorTest(String name) {
+        super(name);
+    }
+
+    private void addChildren(Element tag, Random random, int depth) {
+        Document doc = tag.getOwnerDocument();
+        int count = depth > 8 ? 0 : random.nextInt(7);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(3) == 0) {
+                String text = TEXTS[random.nextInt(TEXTS.length)];
+                tag.appendChild(doc.createTextNode(text));
+            } else {
+                tag.appendChild(newElement(doc, random));
+                addChildren((Element) tag.getLastChild(), random, depth + 1);
+            }
+        }
+    }
+
+    private void checkScores(Element root, String message) {
+        final Map<Element, TagResult> expected = new IdentityHashMap<Element, TagResult>();
+        ScoreGenerator<Element> generator = fFactory.newScoreGenerator();
+        generator.setBufferedPropagation(true);
+        generator.addTagListener(new ITagListener<Element>() {
+            @Override
+            public void onEndTag(TagInfo<Element> info) {
+                expected.put(info.getTag(), new TagResult(info));
+            }
+        });
+        new ElementScoreGenerator(generator).visit(root);
+
+        final Map<Element, TagResult> results = new ConcurrentHashMap<Element, TagResult>();
+        final AtomicInteger generators = new AtomicInteger();
+        ParallelElementScoreGenerator parallel = new ParallelElementScoreGenerator(
+            fFactory,
+            fPool,
+            THRESHOLD) {
+            @Override
+            protected ScoreGenerator<Element> newScoreGenerator() {
+                generators.incrementAndGet();
+                ScoreGenerator<Element> generator = super.newScoreGenerator();
+                generator.addTagListener(new ITagListener<Element>() {
+                    @Override
+                    public void onEndTag(TagInfo<Element> info) {
+                        TagResult result = new TagResult(info);
+                        assertNull(results.put(info.getTag(), result));
+                    }
+                });
+                return generator;
+            }
+        };
+        parallel.visit(root);
+
+        assertTrue(message + ": no forks", generators.get() > 1);
+        assertEquals(message, expected.size(), results.size());
+        assertEquals(message, expected.size(), parallel.getNodeCount());
+        for (Map.Entry<Element, TagResult> entry : expected.entrySet()) {
+            TagResult x = entry.getValue();
+            TagResult y = results.get(entry.getKey());
+            assertNotNull(message, y);
+            assertEquals(message, x.fTagPos, y.fTagPos);
+            checkScores(message, x.fFullScore, y.fFullScore);
+        }
+        checkScores(message, generator.getMaxScore(), parallel.getMaxScore());
+    }
+
+    private void checkScores(
+        String message,
+        Channels expected,
+        Channels value) {
+        int n = expected.getChannelsNumber();
+        for (int i = 0; i < n; i++) {
+            double x = expected.getLevel(i);
+            double y = value.getLevel(i);
+            double error = Math.abs(x - y) / Math.max(1, Math.abs(x));
+            assertTrue(message + ": " + x + " != " + y, error <= TOLERANCE);
+        }
+    }
+
+    private Element newElement(Document doc, Random random) {
+        Element tag = doc.createElement(TAGS[random.nextInt(TAGS.length)]);
+        if (random.nextInt(3) == 0) {
+            tag.setAttribute("class", CLASSES[random.nextInt(CLASSES.length)]);
+        }
+        return tag;
+    }
+
+    private Element newRoot() throws Exception {
+        Document doc = DocumentBuilderFactory
+            .newInstance()
+            .newDocumentBuilder()
+            .newDocument();
+        Element root = doc.createElement("body");
+        doc.appendChild(root);
+        return root;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        fFactory = new ScoreGeneratorFactory<Element>(new ElementInfoProvider());
+        fPool = new ForkJoinPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fPool.shutdown();
+    }
+
+    /**
+     * A deep chain of tags with big side branches, so big subtrees are
+     * forked at many depths.
+     */
+    public void testDeepTree() throws Exception {
+        Element root = newRoot();
+        Document doc = root.getOwnerDocument();
+        Random random = new Random(1);
+        Element tag = root;
+        for (int i = 0; i < 3000; i++) {
+            Element child = doc.createElement(i % 2 == 0 ? "div" : "p");
+            child.appendChild(doc.createTextNode(TEXTS[i % TEXTS.length]));
+            tag.appendChild(child);
+            if (i % 100 == 0) {
+                Element branch = doc.createElement("ul");
+                tag.appendChild(branch);
+                for (int j = 0; j < THRESHOLD * 2; j++) {
+                    branch.appendChild(newElement(doc, random));
+                }
+            }
+            tag = child;
+        }
+        checkScores(root, "deep");
+    }
+
+    /**
+     * Random trees
+     */
+    public void testRandomTrees() throws Exception {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            Element root = newRoot();
+            do {
+                addChildren(root, random, 0);
+            } while (ParallelElementScoreGenerator.countTags(root) < THRESHOLD * 4);
+            checkScores(root, "seed " + seed);
+        }
+    }
+
+    /**
+     * Many big siblings scored in separate tasks
+     */
+    public void testWideTree() throws Exception {
+        Element root = newRoot();
+        Document doc = root.getOwnerDocument();
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            Element list = doc.createElement("ul");
+            root.appendChild(list);
+            for (int j = 0; j < 50; j++) {
+                Element item = doc.createElement("li");
+                item.appendChild(doc.createTextNode(TEXTS[j % TEXTS.length]));
+                item.appendChild(newElement(doc, random));
+                list.appendChild(item);
+            }
+        }
+        checkScores(root, "wide");
+    }
+
+}
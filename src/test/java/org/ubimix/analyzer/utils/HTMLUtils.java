@@ -16,6 +16,25 @@ import org.w3c.dom.Document;
  */
 public class HTMLUtils {
 
+    /**
+     * Cleans up the HTML document from the given reader and returns the
+     * resulting tree. This tree could be scored directly by a
+     * {@link TagNodeScoreGenerator}.
+     * 
+     * @param reader the reader of the HTML document; it is closed by this
+     *        method
+     * @return the root of the cleaned document
+     * @throws Exception
+     */
+    public static TagNode cleanHTML(Reader reader) throws Exception {
+        try {
+            HtmlCleaner cleaner = new HtmlCleaner(newCleanerProperties());
+            return cleaner.clean(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
     /**
      * @param reader
      * @return
@@ -23,14 +42,7 @@ public class HTMLUtils {
      */
     public static Document cleanupHTML(Reader reader) throws Exception {
         try {
-            CleanerProperties properties = new CleanerProperties();
-            properties.setTranslateSpecialEntities(true);
-            properties.setRecognizeUnicodeChars(true);
-            properties.setNamespacesAware(false);
-            properties.setAdvancedXmlEscape(true);
-            properties.setUseEmptyElementTags(true);
-            properties.setOmitUnknownTags(true);
-            properties.setTreatUnknownTagsAsContent(false);
+            CleanerProperties properties = newCleanerProperties();
             HtmlCleaner cleaner = new HtmlCleaner(properties);
             TagNode tag = cleaner.clean(reader);
 
@@ -59,4 +71,16 @@ public class HTMLUtils {
         }
     }
 
+    private static CleanerProperties newCleanerProperties() {
+        CleanerProperties properties = new CleanerProperties();
+        properties.setTranslateSpecialEntities(true);
+        properties.setRecognizeUnicodeChars(true);
+        properties.setNamespacesAware(false);
+        properties.setAdvancedXmlEscape(true);
+        properties.setUseEmptyElementTags(true);
+        properties.setOmitUnknownTags(true);
+        properties.setTreatUnknownTagsAsContent(false);
+        return properties;
+    }
+
 }
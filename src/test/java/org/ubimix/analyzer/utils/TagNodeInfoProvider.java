@@ -0,0 +1,39 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.utils;
+
+import java.util.Map;
+
+import org.htmlcleaner.TagNode;
+import org.ubimix.analyzer.scores.impl.AbstractTagScoreDetector.ITagIdProvider;
+import org.ubimix.analyzer.scores.impl.TagSymbols;
+
+/**
+ * This provider gives access to names and attributes of tags of trees built
+ * by the HtmlCleaner library, so these trees could be scored without
+ * conversion to DOM.
+ * 
+ * @author kotelnikov
+ * @see TagNodeScoreGenerator
+ */
+public class TagNodeInfoProvider implements ITagIdProvider<TagNode> {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterable<Map.Entry<String, String>> getTagAttributes(TagNode tag) {
+        Map<String, String> attributes = tag.getAttributes();
+        return attributes.entrySet();
+    }
+
+    @Override
+    public int getTagId(TagNode tag) {
+        return TagSymbols.getTagId(tag.getName());
+    }
+
+    @Override
+    public String getTagName(TagNode tag) {
+        return tag.getName();
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * 
+ */
+package org.ubimix.analyzer.utils;
+
+import java.util.List;
+
+import org.htmlcleaner.ContentNode;
+import org.htmlcleaner.TagNode;
+import org.ubimix.analyzer.scores.ScoreGenerator;
+import org.ubimix.analyzer.scores.ScoreGenerator.TagInfo;
+
+/**
+ * This object visits trees built by the HtmlCleaner library and reports their
+ * tags and texts to a score generator. It is an equivalent of the
+ * {@link org.ubimix.analyzer.server.ElementScoreGenerator} for
+ * {@link TagNode} trees: cleaned HTML is scored directly, without the
+ * conversion to DOM and the XML serialization. Trees are traversed without
+ * recursion; tags and texts are reported in the document order. Comments are
+ * ignored.
+ * 
+ * @author kotelnikov
+ * @see TagNodeInfoProvider
+ */
+public class TagNodeScoreGenerator {
+
+    /**
+     * Returns the text of the given child of a tag. The content of text nodes
+     * is returned as is, without copying.
+     * 
+     * @param child the child node to check
+     * @return the text content of the node or <code>null</code> if this node
+     *         is not a text
+     */
+    public static CharSequence getText(Object child) {
+        if (child instanceof ContentNode) {
+            return ((ContentNode) child).getContent();
+        }
+        return null;
+    }
+
+    private ScoreGenerator<TagNode> fGenerator;
+
+    /**
+     * The maximal depth of reported tags
+     */
+    private int fMaxDepth = Integer.MAX_VALUE;
+
+    /**
+     * Positions of the next visited children of tags in the stack
+     */
+    private int[] fPositions = new int[64];
+
+    /**
+     * The stack of visited tags
+     */
+    private TagNode[] fStack = new TagNode[64];
+
+    public TagNodeScoreGenerator(ScoreGenerator<TagNode> generator) {
+        fGenerator = generator;
+    }
+
+    public TagInfo<TagNode> beginTag(TagNode tag) {
+        return fGenerator.beginTag(tag);
+    }
+
+    public TagInfo<TagNode> endTag() {
+        return fGenerator.endTag();
+    }
+
+    /**
+     * @return the generator used to score tags
+     */
+    public ScoreGenerator<TagNode> getGenerator() {
+        return fGenerator;
+    }
+
+    /**
+     * @return the maximal depth of reported tags or 0 if the depth is not
+     *         limited
+     */
+    public int getMaxDepth() {
+        return fMaxDepth < Integer.MAX_VALUE ? fMaxDepth : 0;
+    }
+
+    public void onText(CharSequence content) {
+        fGenerator.onText(content);
+    }
+
+    /**
+     * Sets the maximal depth of reported tags. The root of a visited tree has
+     * the depth 1. Tags deeper than the limit are not reported; their texts
+     * are reported as texts of the deepest reported ancestor.
+     * 
+     * @param maxDepth the maximal depth; if this value is 0 or less then the
+     *        depth is not limited
+     */
+    public void setMaxDepth(int maxDepth) {
+        fMaxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Visits the given tree.
+     * 
+     * @param root the root of the tree
+     */
+    public void visit(TagNode root) {
+        TagNode[] stack = fStack;
+        int[] positions = fPositions;
+        int depth = 0;
+        try {
+            beginTag(root);
+            stack[depth] = root;
+            positions[depth] = 0;
+            depth++;
+            while (depth > 0) {
+                TagNode tag = stack[depth - 1];
+                List<?> children = tag.getChildren();
+                int pos = positions[depth - 1];
+                if (pos == children.size()) {
+                    stack[--depth] = null;
+                    if (depth < fMaxDepth) {
+                        endTag();
+                    }
+                    continue;
+                }
+                positions[depth - 1] = pos + 1;
+                Object child = children.get(pos);
+                if (child instanceof TagNode) {
+                    if (depth < fMaxDepth) {
+                        beginTag((TagNode) child);
+                    }
+                    if (depth == stack.length) {
+                        TagNode[] array = new TagNode[depth * 2];
+                        System.arraycopy(stack, 0, array, 0, depth);
+                        stack = array;
+                        int[] array2 = new int[depth * 2];
+                        System.arraycopy(positions, 0, array2, 0, depth);
+                        positions = array2;
+                    }
+                    stack[depth] = (TagNode) child;
+                    positions[depth] = 0;
+                    depth++;
+                } else {
+                    CharSequence content = getText(child);
+                    if (content != null) {
+                        onText(content);
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < depth; i++) {
+                stack[i] = null;
+            }
+            fStack = stack;
+            fPositions = positions;
+        }
+    }
+}